@@ -0,0 +1,209 @@
+package com.inkbottle.alipayrn;
+
+import android.app.Activity;
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
+import android.net.Uri;
+import android.os.PatternMatcher;
+
+import com.alipay.sdk.app.PayTask;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 支付宝安装状态和版本号的缓存
+ * 首次查询在支付线程中构造PayTask并调用getVersion()，之后直接读取内存中的结果；
+ * 收到支付宝包的安装、卸载、更新广播时清空缓存，下次查询重新探测。
+ */
+class AlipayAppProbe {
+    static final String ALIPAY_PACKAGE = "com.eg.android.AlipayGphone";
+
+    /**
+     * 探测结果
+     */
+    static final class Result {
+        final boolean installed;
+        final String version;      // 未安装或探测失败时为null
+        final long probedAtMillis;
+
+        Result(boolean installed, String version, long probedAtMillis) {
+            this.installed = installed;
+            this.version = version;
+            this.probedAtMillis = probedAtMillis;
+        }
+    }
+
+    interface Callback {
+        /**
+         * 在调用线程（命中缓存时）或支付线程中调用
+         */
+        void onResult(Result result);
+
+        void onError(String code, String message);
+    }
+
+    private final PaymentExecutor executor;
+    private final List<Callback> waiters = new ArrayList<>();
+    private volatile Result cached;
+    private boolean probing = false;
+    // 每次失效递增，探测过程中发生失效时丢弃该次结果
+    private long generation = 0;
+    private final AtomicLong hitCount = new AtomicLong();
+    private final AtomicLong probeCount = new AtomicLong();
+    private final AtomicLong invalidationCount = new AtomicLong();
+    private Context registeredContext;
+
+    private final BroadcastReceiver packageReceiver = new BroadcastReceiver() {
+        @Override
+        public void onReceive(Context context, Intent intent) {
+            Uri data = intent.getData();
+            if (data != null && ALIPAY_PACKAGE.equals(data.getSchemeSpecificPart())) {
+                AlipayLog.d("支付宝安装状态变化: {}", intent.getAction());
+                invalidate();
+            }
+        }
+    };
+
+    AlipayAppProbe(PaymentExecutor executor) {
+        this.executor = executor;
+    }
+
+    /**
+     * 注册支付宝包变化的广播监听
+     */
+    synchronized void register(Context context) {
+        if (registeredContext != null) {
+            return;
+        }
+        IntentFilter filter = new IntentFilter();
+        filter.addAction(Intent.ACTION_PACKAGE_ADDED);
+        filter.addAction(Intent.ACTION_PACKAGE_REMOVED);
+        filter.addAction(Intent.ACTION_PACKAGE_REPLACED);
+        filter.addDataScheme("package");
+        filter.addDataSchemeSpecificPart(ALIPAY_PACKAGE, PatternMatcher.PATTERN_LITERAL);
+        try {
+            Context appContext = context.getApplicationContext();
+            appContext.registerReceiver(packageReceiver, filter);
+            registeredContext = appContext;
+        } catch (Exception e) {
+            // 注册失败时缓存依然可用，只是不会自动失效
+            AlipayLog.w("注册支付宝安装状态监听失败: {}", e.getMessage());
+        }
+    }
+
+    synchronized void unregister() {
+        if (registeredContext == null) {
+            return;
+        }
+        try {
+            registeredContext.unregisterReceiver(packageReceiver);
+        } catch (Exception ignored) {
+            // 已被系统注销
+        }
+        registeredContext = null;
+    }
+
+    /**
+     * 查询安装状态和版本号，有缓存时直接返回，否则在支付线程中探测
+     * 同时发起的多次查询共享同一次探测
+     *
+     * @param activity 当前Activity，构造PayTask需要
+     */
+    void probe(final Activity activity, Callback callback) {
+        Result hit = cached;
+        if (hit != null) {
+            hitCount.incrementAndGet();
+            callback.onResult(hit);
+            return;
+        }
+        final long probeGeneration;
+        synchronized (this) {
+            waiters.add(callback);
+            if (probing) {
+                return;
+            }
+            probing = true;
+            probeGeneration = generation;
+        }
+
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                probeCount.incrementAndGet();
+                Result result;
+                boolean cacheable = true;
+                try {
+                    String version = new PayTask(activity).getVersion();
+                    boolean installed = version != null && !version.isEmpty();
+                    result = new Result(installed, installed ? version : null, System.currentTimeMillis());
+                } catch (Exception e) {
+                    // 异常视为未安装，但不缓存，下次查询重新探测
+                    AlipayLog.w("探测支付宝版本失败: {}", e.getMessage());
+                    result = new Result(false, null, System.currentTimeMillis());
+                    cacheable = false;
+                }
+                for (Callback cb : complete(cacheable ? result : null, probeGeneration)) {
+                    cb.onResult(result);
+                }
+            }
+        }, new PaymentExecutor.RejectionListener() {
+            @Override
+            public void onRejected(String reason) {
+                for (Callback cb : complete(null, probeGeneration)) {
+                    cb.onError("ERR_EXECUTOR_BUSY", "版本探测任务无法执行: " + reason);
+                }
+            }
+        });
+    }
+
+    /**
+     * 由其他已拿到版本号的流程（例如SDK预热）填充缓存，避免重复探测
+     */
+    synchronized void seed(String version) {
+        if (cached == null && version != null && !version.isEmpty()) {
+            cached = new Result(true, version, System.currentTimeMillis());
+        }
+    }
+
+    /**
+     * 清空缓存，下次查询重新探测
+     */
+    synchronized void invalidate() {
+        generation++;
+        cached = null;
+        invalidationCount.incrementAndGet();
+    }
+
+    /**
+     * @return 缓存的探测结果，尚未探测或已失效时为null
+     */
+    Result peek() {
+        return cached;
+    }
+
+    long getHitCount() {
+        return hitCount.get();
+    }
+
+    long getProbeCount() {
+        return probeCount.get();
+    }
+
+    long getInvalidationCount() {
+        return invalidationCount.get();
+    }
+
+    private synchronized List<Callback> complete(Result result, long probeGeneration) {
+        if (result != null && probeGeneration == generation) {
+            cached = result;
+        }
+        probing = false;
+        List<Callback> callbacks = new ArrayList<>(waiters);
+        waiters.clear();
+        return callbacks;
+    }
+}
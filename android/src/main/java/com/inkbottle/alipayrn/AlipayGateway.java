@@ -0,0 +1,53 @@
+package com.inkbottle.alipayrn;
+
+import java.util.Map;
+
+/**
+ * 支付宝SDK调用入口
+ * 模块通过它调用payV2/authV2：默认为直接调用SDK的{@link AlipaySdkGateway}，
+ * 没有支付宝环境时可换成{@link FakeAlipayGateway}压测整个支付流程。
+ * 构造任务与调用分开，分别对应延迟统计中的TASK_INIT和SDK_CALL阶段。
+ *
+ * @param <H> 构造任务所需的宿主，模块中为Activity
+ */
+interface AlipayGateway<H> {
+
+    /**
+     * 一次SDK调用，在支付线程中阻塞执行
+     */
+    interface Call {
+        /**
+         * @param info 订单字符串或授权参数
+         * @return SDK返回的原始结果（resultStatus、memo、result）
+         */
+        Map<String, String> invoke(String info);
+    }
+
+    /**
+     * H5支付链接转为App支付后的结果，在SDK线程中回调
+     */
+    interface H5Callback {
+        /**
+         * @param resultCode 支付结果状态码，与resultStatus相同
+         * @param returnUrl 商户的同步跳转地址，可能为空
+         */
+        void onResult(String resultCode, String returnUrl);
+    }
+
+    /**
+     * 构造支付任务（PayTask）
+     */
+    Call newPayCall(H host);
+
+    /**
+     * 构造授权任务（AuthTask）
+     */
+    Call newAuthCall(H host);
+
+    /**
+     * 拦截H5支付链接（PayTask.payInterceptorWithUrl），是支付宝H5收银台链接时改为拉起App支付
+     *
+     * @return 链接被拦截时返回true，之后通过callback返回支付结果；非支付链接返回false，不会回调
+     */
+    boolean interceptH5Url(H host, String url, H5Callback callback);
+}
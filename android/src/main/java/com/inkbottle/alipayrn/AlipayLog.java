@@ -0,0 +1,200 @@
+package com.inkbottle.alipayrn;
+
+import android.util.Log;
+
+import java.util.List;
+
+/**
+ * 模块内部日志
+ * 按级别过滤，低于当前级别的日志直接返回，不拼接字符串；
+ * 消息使用 "{}" 占位符，只有在需要输出时才格式化参数。
+ * 输出的日志同时写入固定容量的环形缓冲区，可通过getRecentLogs导出。
+ * 调试模式关闭时只输出WARN及以上级别，开启后输出全部级别。
+ */
+final class AlipayLog {
+    static final String TAG = "AlipayModule";
+
+    static final int DEBUG = Log.DEBUG;
+    static final int INFO = Log.INFO;
+    static final int WARN = Log.WARN;
+    static final int ERROR = Log.ERROR;
+
+    private static final int BUFFER_CAPACITY = 256;
+    private static final LogRingBuffer buffer = new LogRingBuffer(BUFFER_CAPACITY);
+    private static volatile int minLevel = WARN;
+
+    private AlipayLog() {
+    }
+
+    /**
+     * 切换调试模式，开启后输出DEBUG及以上级别
+     */
+    static void setDebugEnabled(boolean enabled) {
+        minLevel = enabled ? DEBUG : WARN;
+    }
+
+    static boolean isDebugEnabled() {
+        return minLevel <= DEBUG;
+    }
+
+    static boolean isLoggable(int level) {
+        return level >= minLevel;
+    }
+
+    static void d(String message) {
+        if (DEBUG >= minLevel) {
+            write(DEBUG, message);
+        }
+    }
+
+    static void d(String template, Object arg) {
+        if (DEBUG >= minLevel) {
+            write(DEBUG, format(template, arg, null, null, null));
+        }
+    }
+
+    static void d(String template, Object arg1, Object arg2) {
+        if (DEBUG >= minLevel) {
+            write(DEBUG, format(template, arg1, arg2, null, null));
+        }
+    }
+
+    static void d(String template, Object arg1, Object arg2, Object arg3) {
+        if (DEBUG >= minLevel) {
+            write(DEBUG, format(template, arg1, arg2, arg3, null));
+        }
+    }
+
+    static void d(String template, Object arg1, Object arg2, Object arg3, Object arg4) {
+        if (DEBUG >= minLevel) {
+            write(DEBUG, format(template, arg1, arg2, arg3, arg4));
+        }
+    }
+
+    static void i(String message) {
+        if (INFO >= minLevel) {
+            write(INFO, message);
+        }
+    }
+
+    static void w(String message) {
+        if (WARN >= minLevel) {
+            write(WARN, message);
+        }
+    }
+
+    static void w(String template, Object arg) {
+        if (WARN >= minLevel) {
+            write(WARN, format(template, arg, null, null, null));
+        }
+    }
+
+    static void w(String template, Object arg1, Object arg2) {
+        if (WARN >= minLevel) {
+            write(WARN, format(template, arg1, arg2, null, null));
+        }
+    }
+
+    static void e(String message) {
+        if (ERROR >= minLevel) {
+            write(ERROR, message);
+        }
+    }
+
+    static void e(String template, Object arg) {
+        if (ERROR >= minLevel) {
+            write(ERROR, format(template, arg, null, null, null));
+        }
+    }
+
+    /**
+     * 按指定级别输出已拼接好的消息，用于转发JS层的日志
+     */
+    static void log(int level, String message) {
+        if (level >= minLevel) {
+            write(level, message);
+        }
+    }
+
+    /**
+     * 按指定级别和时间输出消息，用于批量转发JS层缓存的日志
+     */
+    static void log(int level, String message, long timeMillis) {
+        if (level >= minLevel) {
+            buffer.add(timeMillis, level, message);
+            Log.println(level, TAG, message);
+        }
+    }
+
+    static List<LogRingBuffer.Record> recent() {
+        return buffer.snapshot();
+    }
+
+    static long getDroppedCount() {
+        return buffer.getDroppedCount();
+    }
+
+    static void clear() {
+        buffer.clear();
+    }
+
+    /**
+     * 将JS层传入的级别名称转为日志级别，无法识别时视为DEBUG
+     */
+    static int parseLevel(String level) {
+        if (level == null) {
+            return DEBUG;
+        }
+        switch (level.toLowerCase()) {
+            case "info":
+                return INFO;
+            case "warn":
+                return WARN;
+            case "error":
+                return ERROR;
+            default:
+                return DEBUG;
+        }
+    }
+
+    static String levelName(int level) {
+        switch (level) {
+            case DEBUG:
+                return "debug";
+            case INFO:
+                return "info";
+            case WARN:
+                return "warn";
+            case ERROR:
+                return "error";
+            default:
+                return "verbose";
+        }
+    }
+
+    private static void write(int level, String message) {
+        buffer.add(System.currentTimeMillis(), level, message);
+        Log.println(level, TAG, message);
+    }
+
+    /**
+     * 依次用参数替换模板中的 "{}"，多余的占位符原样保留
+     */
+    static String format(String template, Object arg1, Object arg2, Object arg3, Object arg4) {
+        StringBuilder sb = new StringBuilder(template.length() + 32);
+        int argIndex = 0;
+        int pos = 0;
+        while (true) {
+            int mark = template.indexOf("{}", pos);
+            if (mark < 0 || argIndex >= 4) {
+                break;
+            }
+            sb.append(template, pos, mark);
+            sb.append(argIndex == 0 ? arg1 : argIndex == 1 ? arg2 : argIndex == 2 ? arg3 : arg4);
+            argIndex++;
+            pos = mark + 2;
+        }
+        sb.append(template, pos, template.length());
+        return sb.toString();
+    }
+}
@@ -2,73 +2,126 @@ package com.inkbottle.alipayrn;
 
 import android.app.Activity;
 import android.content.Intent;
+import android.content.pm.ApplicationInfo;
+import android.content.pm.PackageInfo;
+import android.content.pm.PackageManager;
 import android.os.Handler;
 import android.os.Looper;
-import android.os.Message;
+import android.os.MessageQueue;
 import android.text.TextUtils;
-import android.util.Log;
 
 import androidx.annotation.NonNull;
-import androidx.annotation.Nullable;
 
-import com.alipay.sdk.app.PayTask;
 import com.alipay.sdk.app.EnvUtils;
-import com.alipay.sdk.app.AuthTask;
 import com.facebook.react.bridge.ActivityEventListener;
 import com.facebook.react.bridge.Arguments;
 import com.facebook.react.bridge.BaseActivityEventListener;
+import com.facebook.react.bridge.LifecycleEventListener;
 import com.facebook.react.bridge.Promise;
 import com.facebook.react.bridge.ReactApplicationContext;
-import com.facebook.react.bridge.ReactContextBaseJavaModule;
 import com.facebook.react.bridge.ReactMethod;
+import com.facebook.react.bridge.ReadableArray;
+import com.facebook.react.bridge.ReadableMap;
+import com.facebook.react.bridge.ReadableType;
+import com.facebook.react.bridge.WritableArray;
 import com.facebook.react.bridge.WritableMap;
 import com.facebook.react.modules.core.DeviceEventManagerModule;
 
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
 import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicLong;
 
 
-
-public class AlipayModule extends ReactContextBaseJavaModule {
+/**
+ * 支付宝支付模块
+ * 旧架构下AlipayModuleSpec继承ReactContextBaseJavaModule，新架构下继承codegen生成的TurboModule规范，
+ * 两者分别位于 src/oldarch 和 src/newarch，由build.gradle按newArchEnabled选择
+ */
+public class AlipayModule extends AlipayModuleSpec {
     private static final int ALIPAY_SDK_REQUEST_CODE = 10000; // 支付宝SDK回调请求码
-    private static final String TAG = "AlipayModule";
-    private static final int SDK_PAY_FLAG = 1;
-    private static final int SDK_AUTH_FLAG = 2;
+    // 在AndroidManifest的<application>中配置该meta-data为true，模块初始化后会在主线程空闲时自动预热SDK
+    private static final String JOURNAL_FILE_NAME = "alipay_payment_journal.bin";
+    private static final String TRACE_FILE_NAME = "alipay_trace.json";
+    private static final String META_AUTO_PREWARM = "com.inkbottle.alipayrn.AUTO_PREWARM";
+    // H5支付从交给SDK判断到拿到支付结果的最长等待时间
+    private static final long H5_INTERCEPT_TIMEOUT_MILLIS = 5 * 60_000;
+    // 拦截线程的排队上限，超出的链接直接放行
+    private static final int H5_QUEUE_CAPACITY = 4;
+    
+    // 所有模块实例共用的主线程分发器，排队中的任务只弱引用模块
+    private static final MainThreadDispatcher MAIN_THREAD = new MainThreadDispatcher(new Executor() {
+        private final Handler handler = new Handler(Looper.getMainLooper());
+        
+        @Override
+        public void execute(Runnable command) {
+            handler.post(command);
+        }
+    });
+    
+    // 待发送的JS事件，JS重新加载时模块会重建，队列和序号在进程内共用
+    private static final EventOutbox<WritableMap> EVENT_OUTBOX = new EventOutbox<>();
+    private static final EventOutbox.SequenceStamper<WritableMap> STAMP_SEQUENCE =
+            new EventOutbox.SequenceStamper<WritableMap>() {
+                @Override
+                public void stamp(WritableMap payload, long sequence) {
+                    payload.putDouble("sequence", sequence);
+                }
+            };
     
     private final ReactApplicationContext reactContext;
-    private boolean isPaymentInProgress = false;
-    private long lastPaymentTime = 0;
-    private boolean isSandboxMode = false;
+    // 交给工作线程、调度线程的任务通过它回到模块，模块销毁后这些任务不会阻止其被回收
+    private final WeakReference<AlipayModule> selfRef = new WeakReference<>(this);
+    private final PaymentExecutor paymentExecutor = new PaymentExecutor();
+    private final DeadlineScheduler deadlines = new DeadlineScheduler();
+    private final PaymentJournal journal;
+    // 支付和授权流程：去重、状态机、结果协调、超时、订单索引、授权缓存及SDK调用任务
+    private final PaymentFlow<Activity, Promise> payments;
+    private final AtomicLong h5Sequence = new AtomicLong();
+    private final PendingPromiseRegistry<Promise> h5Promises = new PendingPromiseRegistry<>();
+    // 等待版本探测、SDK预热和支付日志回调的Promise，回调中只携带id
+    private final AtomicLong requestSequence = new AtomicLong();
+    private final PendingPromiseRegistry<Promise> workerPromises = new PendingPromiseRegistry<>();
+    private final H5InterceptCache h5InterceptCache = new H5InterceptCache();
+    // H5链接拦截单独使用一个线程，不与阻塞中的payV2争用支付线程池
+    private final PaymentExecutor h5Executor = new PaymentExecutor("AlipayH5-worker-", 1, 1, H5_QUEUE_CAPACITY);
+    private final SdkPrewarmer sdkPrewarmer = new SdkPrewarmer(paymentExecutor);
+    private final AlipayAppProbe alipayAppProbe = new AlipayAppProbe(paymentExecutor);
+    private final DebugInfoSnapshot debugInfoSnapshot = new DebugInfoSnapshot();
+    private volatile Map<String, Object> staticDebugInfo;
+    private volatile boolean isSandboxMode = false;
+    // JS层是否已接入。模块创建（JS重新加载）后React实例虽已就绪，入口代码可能还未注册监听器，
+    // 此时发送的事件会丢失，因此暂存到第一次onHostResume或flushPendingEvents；之后只要实例就绪就直接发送
+    private volatile boolean jsAttached = false;
+    // 结果中是否包含原始的result字段，交易字段已单独解析，不需要时可省去
+    private volatile boolean includeRawResult = true;
     private boolean isDebugMode = false;
     
     // 活动监听器，用于处理支付宝回调
         private final ActivityEventListener activityEventListener = new BaseActivityEventListener() {
             @Override
             public void onActivityResult(Activity activity, int requestCode, int resultCode, Intent data) {
-                Log.d(TAG, "支付宝活动回调: requestCode=" + requestCode + ", resultCode=" + resultCode);
-                    // 获取当前Activity
-                 final Activity currentActivity = getCurrentActivity();
+                if (AlipayLog.isLoggable(AlipayLog.DEBUG)) {
+                    AlipayLog.d("支付宝活动回调: requestCode={}, resultCode={}", requestCode, resultCode);
+                }
     
                 // 检查是否是支付宝SDK的回调
                 if (requestCode == ALIPAY_SDK_REQUEST_CODE) {
                     if (data == null) {
-                        Log.e(TAG, "支付宝回调数据为空");
-                        
-                        // 处理空数据情况
-                        HashMap<String, String> errorResult = new HashMap<>();
-                        errorResult.put("resultStatus", "6002"); // 网络错误
-                        errorResult.put("memo", "支付宝返回数据为空");
-                        errorResult.put("result", "");
-                        
-                        // 发送事件通知
-                        WritableMap eventMap = Arguments.createMap();
-                        for (Map.Entry<String, String> entry : errorResult.entrySet()) {
-                            eventMap.putString(entry.getKey(), entry.getValue());
-                        }
-                        sendEvent("AlipayPaymentResult", eventMap);
-                        
-                        // 重置支付状态
-                        resetPaymentStateInternal();
+                        // 数据为空时不单独发送结果，等待payV2返回值作为本次支付的结果
+                        AlipayLog.e("支付宝回调数据为空，等待SDK返回结果");
                         return;
                     }
                     
@@ -77,61 +130,135 @@ public class AlipayModule extends ReactContextBaseJavaModule {
                     String resultStatus = data.getStringExtra("resultStatus");
                     String memo = data.getStringExtra("memo");
                     
-                    // 如果resultStatus为空，可能是旧版本SDK，尝试提取resultStatus
-                    if (resultStatus == null && resultData != null) {
-                        // 尝试从result中解析状态码
-                        if (resultData.contains("resultStatus={")) {
-                            int start = resultData.indexOf("resultStatus={") + 13;
-                            int end = resultData.indexOf("}", start);
-                            if (end > start) {
-                                resultStatus = resultData.substring(start, end);
-                            }
-                        }
-                        
-                        // 如果仍然为空，设置为未知错误
-                        if (resultStatus == null) {
-                            resultStatus = "6004"; // 未知错误
-                        }
-                    }
+                    // 如果resultStatus为空，可能是旧版本SDK，由解析器从result中的 "key={value};" 格式提取
+                    // 仍无法得到状态码时视为未知错误(6004)
+                    AlipayResult result = AlipayResultParser.fromIntentExtras(resultStatus, memo, resultData);
                     
-                    // 构建结果Map
-                    HashMap<String, String> result = new HashMap<>();
-                    result.put("resultStatus", resultStatus != null ? resultStatus : "6004");
-                    result.put("result", resultData != null ? resultData : "");
-                    result.put("memo", memo != null ? memo : "");
+                    // 关联到当前正在SDK中的支付，与payV2返回值合并后只发送一次
+                    payments.onActivityResult(result);
                     
-                    // 发送事件通知
-                    WritableMap eventMap = Arguments.createMap();
-                    for (Map.Entry<String, String> entry : result.entrySet()) {
-                        eventMap.putString(entry.getKey(), entry.getValue());
-                    }
-                    sendEvent("AlipayPaymentResult", eventMap);
-                    
-                    // 重置支付状态
-                    resetPaymentStateInternal();
-                    
-                    Log.d(TAG, "支付宝回调已处理: resultStatus=" + resultStatus);
+                    AlipayLog.d("支付宝回调已处理: resultStatus={}", result.resultStatus);
                 }
             }
         };
 
+    // 从支付宝返回前台、或JS重新加载后宿主恢复时发送暂存的事件
+    private final LifecycleEventListener lifecycleEventListener = new LifecycleEventListener() {
+        @Override
+        public void onHostResume() {
+            jsAttached = true;
+            drainEventOutbox();
+        }
+        
+        @Override
+        public void onHostPause() {
+        }
+        
+        @Override
+        public void onHostDestroy() {
+        }
+    };
+    
+    private final EventOutbox.Sink<WritableMap> eventSink = new EventOutbox.Sink<WritableMap>() {
+        @Override
+        public void emit(String name, WritableMap payload) {
+            reactContext
+                .getJSModule(DeviceEventManagerModule.RCTDeviceEventEmitter.class)
+                .emit(name, payload);
+        }
+    };
+
+    // 支付流程的回调，把结果转换为WritableMap并发送事件
+    private final PaymentFlow.Host<Activity, Promise> flowHost = new PaymentFlow.Host<Activity, Promise>() {
+        @Override
+        public Activity resolveHost(Activity queued) {
+            // 排队中的Activity可能因旋转等已被销毁，此时改用模块当前的Activity
+            return queued == null || queued.isFinishing() ? getCurrentActivity() : queued;
+        }
+        
+        @Override
+        public void onPaymentLaunched(String paymentId, String outTradeNo) {
+            WritableMap launched = Arguments.createMap();
+            launched.putString("paymentId", paymentId);
+            if (outTradeNo != null) {
+                launched.putString("outTradeNo", outTradeNo);
+            }
+            sendEvent("AlipayPaymentLaunched", launched);
+        }
+        
+        @Override
+        public void onPaymentResult(Promise promise, String paymentId, AlipayResult result) {
+            // 由解析后的结果一次性构建，事件使用其副本（同一个WritableMap不能被消费两次）
+            WritableMap promiseMap = createResultMap(result, paymentId);
+            sendEvent("AlipayPaymentResult", promiseMap.copy());
+            // 无论成功失败，都通过resolve返回结果
+            promise.resolve(promiseMap);
+        }
+        
+        @Override
+        public void resolvePayment(Promise promise, String paymentId, AlipayResult result, boolean fromCache) {
+            WritableMap map = createResultMap(result, paymentId);
+            if (fromCache) {
+                map.putBoolean("fromCache", true);
+            }
+            promise.resolve(map);
+        }
+        
+        @Override
+        public void onPaymentRecovered(String paymentId, AlipayResult result) {
+            WritableMap map = createResultMap(result, paymentId);
+            map.putBoolean("recovered", true);
+            sendEvent("AlipayPaymentResult", map);
+        }
+        
+        @Override
+        public void resolveAuth(Promise promise, Map<String, String> result, boolean fromCache) {
+            WritableMap map = Arguments.createMap();
+            for (Map.Entry<String, String> entry : result.entrySet()) {
+                map.putString(entry.getKey(), entry.getValue());
+            }
+            if (fromCache) {
+                map.putBoolean("fromCache", true);
+            }
+            promise.resolve(map);
+        }
+        
+        @Override
+        public void reject(Promise promise, String code, String message) {
+            promise.reject(code, message);
+        }
+    };
+
     public AlipayModule(ReactApplicationContext reactContext) {
         super(reactContext);
         this.reactContext = reactContext;
+        // 在后台回放待确认支付日志，getPendingPayments不需要再读文件
+        this.journal = new PaymentJournal(new File(reactContext.getNoBackupFilesDir(), JOURNAL_FILE_NAME));
+        this.journal.open();
+        this.payments = new PaymentFlow<>(flowHost, paymentExecutor, deadlines, journal, MAIN_THREAD,
+                AlipaySdkGateway.INSTANCE);
         
         // 不默认设置沙箱环境，需要开发者主动调用setSandboxMode设置
         this.isSandboxMode = false;
         
         // 注册活动监听器
         reactContext.addActivityEventListener(activityEventListener);
+        reactContext.addLifecycleEventListener(lifecycleEventListener);
+        
+        // 支付宝安装、卸载、更新时清空版本探测缓存
+        alipayAppProbe.register(reactContext);
+        
+        if (isAutoPrewarmEnabled(reactContext)) {
+            scheduleIdlePrewarm();
+        }
         
-        Log.d(TAG, "AlipayModule初始化成功");
+        AlipayLog.d("AlipayModule初始化成功");
     }
 
     @NonNull
     @Override
     public String getName() {
-        return "AlipayModule";
+        return NAME;
     }
 
     /**
@@ -142,8 +269,37 @@ public class AlipayModule extends ReactContextBaseJavaModule {
      */
     @ReactMethod
     public void pay(final String orderInfo, final Promise promise) {
-        Log.d(TAG, "发起支付宝支付请求，订单长度: " + orderInfo.length());
-
+        long span = PaymentTrace.begin("pay.bridge");
+        try {
+            startPayment(orderInfo, 0, false, promise);
+        } finally {
+            PaymentTrace.end(span, "pay.bridge", null);
+        }
+    }
+    
+    /**
+     * 带选项发起支付宝支付
+     * 
+     * @param orderInfo 支付宝订单信息字符串
+     * @param options 选项: timeoutMs（超时时间，超时后以ERR_PAYMENT_TIMEOUT失败，缺省不超时），
+     *                validate（拉起支付宝前先校验订单，不合法时以ERR_ORDER_*失败，缺省false）
+     * @param promise 回调Promise
+     */
+    @ReactMethod
+    public void payWithOptions(final String orderInfo, final ReadableMap options, final Promise promise) {
+        boolean validate = options != null && options.hasKey("validate") && !options.isNull("validate")
+                && options.getBoolean("validate");
+        long span = PaymentTrace.begin("pay.bridge");
+        try {
+            startPayment(orderInfo, readTimeoutMillis(options), validate, promise);
+        } finally {
+            PaymentTrace.end(span, "pay.bridge", null);
+        }
+    }
+    
+    private void startPayment(final String orderInfo, final long timeoutMillis, final boolean validate,
+                              final Promise promise) {
+        final long bridgeEntryNanos = System.nanoTime();
         // 获取当前Activity
         final Activity currentActivity = getCurrentActivity();
         if (currentActivity == null) {
@@ -156,93 +312,21 @@ public class AlipayModule extends ReactContextBaseJavaModule {
             promise.reject("ERR_EMPTY_ORDER", "支付参数不能为空");
             return;
         }
+        if (AlipayLog.isLoggable(AlipayLog.DEBUG)) {
+            AlipayLog.d("发起支付宝支付请求，订单长度: {}", orderInfo.length());
+        }
         
-        // 检查是否正在进行支付
-        if (isPaymentInProgress) {
-            long now = System.currentTimeMillis();
-            // 如果上次支付还不到3秒，则拒绝这次请求
-            if (now - lastPaymentTime < 3000) {
-                Log.d(TAG, "支付请求被拒绝: 上一次支付还在进行中");
-                promise.reject("PAY_IN_PROGRESS", "支付操作正在进行中，请稍后再试");
+        // 必然失败的订单（缺少签名、biz_content不合法、已过期）不再拉起支付宝
+        if (validate) {
+            OrderValidator.Result validation = OrderValidator.validate(orderInfo, System.currentTimeMillis());
+            if (!validation.isValid()) {
+                AlipayLog.w("订单预校验未通过: {}", validation.message);
+                promise.reject(validation.code, validation.message);
                 return;
-            } else {
-                // 如果超过3秒，认为上次支付已经完成但回调可能丢失，重置状态
-                Log.d(TAG, "重置支付状态: 上一次支付可能已超时");
-                isPaymentInProgress = false;
             }
         }
         
-            final Handler handler = new Handler(Looper.getMainLooper()) {
-            @Override
-            public void handleMessage(Message msg) {
-                // 标记支付已结束
-                resetPaymentStateInternal();
-                Log.d(TAG, "支付回调后自动重置支付状态");
-                
-                if (msg.what == SDK_PAY_FLAG) {
-                    @SuppressWarnings("unchecked")
-                    Map<String, String> result = (Map<String, String>) msg.obj;
-                    
-                    // 某些情况下支付结果可能通过onActivityResult返回
-                    // 所以需要检查是否已经处理过这个结果
-                    String resultStatus = result.get("resultStatus");
-                    
-                    // 为事件创建一个WritableMap
-                    WritableMap eventMap = Arguments.createMap();
-                    for (Map.Entry<String, String> entry : result.entrySet()) {
-                        eventMap.putString(entry.getKey(), entry.getValue());
-                    }
-                    
-                    // 发送支付结果事件
-                    sendEvent("AlipayPaymentResult", eventMap);
-                    
-                    // 为Promise创建另一个新的WritableMap
-                    WritableMap promiseMap = Arguments.createMap();
-                    for (Map.Entry<String, String> entry : result.entrySet()) {
-                        promiseMap.putString(entry.getKey(), entry.getValue());
-                    }
-                    
-                    // 无论成功失败，都通过resolve返回结果
-                    promise.resolve(promiseMap);
-                }
-            }
-        };
-        
-        // 在子线程中进行支付操作
-        new Thread(new Runnable() {
-            @Override
-            public void run() {
-                try {
-                    Log.d(TAG, "开始调用支付宝SDK");
-                    
-                    // 构造PayTask对象
-                    PayTask alipay = new PayTask(currentActivity);
-                    
-                    // 调用支付接口，获取支付结果
-                    Map<String, String> result = alipay.payV2(orderInfo, true);
-                    Log.d(TAG, "支付宝支付完成，结果: " + result.toString());
-                    
-                    Message msg = new Message();
-                    msg.what = SDK_PAY_FLAG;
-                    msg.obj = result;
-                    handler.sendMessage(msg);
-                } catch (Exception e) {
-                    Log.e(TAG, "支付过程异常: " + e.getMessage());
-                    resetPaymentStateInternal();
-                    
-                    // 构建错误信息
-                    HashMap<String, String> errorResult = new HashMap<>();
-                    errorResult.put("resultStatus", "4000");
-                    errorResult.put("memo", "支付过程出现异常: " + e.getMessage());
-                    
-                    // 返回错误信息
-                    Message msg = new Message();
-                    msg.what = SDK_PAY_FLAG;
-                    msg.obj = errorResult;
-                    handler.sendMessage(msg);
-                }
-            }
-        }).start();
+        payments.pay(currentActivity, orderInfo, timeoutMillis, promise, bridgeEntryNanos);
     }
     
     /**
@@ -253,59 +337,174 @@ public class AlipayModule extends ReactContextBaseJavaModule {
      */
     @ReactMethod
     public void auth(final String authInfo, final Promise promise) {
+        long span = PaymentTrace.begin("auth.bridge");
+        try {
+            startAuth(authInfo, 0, false, null, 0, promise);
+        } finally {
+            PaymentTrace.end(span, "auth.bridge", null);
+        }
+    }
+    
+    /**
+     * 带选项发起支付宝授权
+     * 
+     * @param authInfo 授权参数字符串
+     * @param options 选项: timeoutMs（超时时间，超时后以ERR_AUTH_TIMEOUT失败，缺省不超时），
+     *                cache（是否使用授权结果缓存，缺省false），cacheTtlMs（结果的缓存时间，缺省60秒），
+     *                userKey（当前用户的标识，缓存按用户区分，缺省使用授权参数中的target_id）
+     * @param promise 回调Promise
+     */
+    @ReactMethod
+    public void authWithOptions(final String authInfo, final ReadableMap options, final Promise promise) {
+        boolean useCache = options != null && options.hasKey("cache") && !options.isNull("cache")
+                && options.getBoolean("cache");
+        long cacheTtlMillis = options != null && options.hasKey("cacheTtlMs") && !options.isNull("cacheTtlMs")
+                ? (long) options.getDouble("cacheTtlMs") : AuthResultCache.DEFAULT_TTL_MILLIS;
+        String userKey = options != null && options.hasKey("userKey") && !options.isNull("userKey")
+                ? options.getString("userKey") : null;
+        long span = PaymentTrace.begin("auth.bridge");
+        try {
+            startAuth(authInfo, readTimeoutMillis(options), useCache, userKey, cacheTtlMillis, promise);
+        } finally {
+            PaymentTrace.end(span, "auth.bridge", null);
+        }
+    }
+    
+    private void startAuth(final String authInfo, final long timeoutMillis, final boolean useCache,
+                           final String userKey, final long cacheTtlMillis, final Promise promise) {
+        final long bridgeEntryNanos = System.nanoTime();
         if (TextUtils.isEmpty(authInfo)) {
             promise.reject("ERR_EMPTY_AUTH", "授权参数不能为空");
             return;
         }
         
+        // 命中缓存时不需要Activity，由流程先查缓存
+        payments.auth(getCurrentActivity(), authInfo, timeoutMillis, useCache, userKey, cacheTtlMillis, promise,
+                bridgeEntryNanos);
+    }
+    
+    /**
+     * 使授权结果缓存失效，例如用户退出登录或服务端换取auth_code后
+     * 
+     * @param scope 只移除该scope的结果（例如auth_user），为null时全部移除
+     * @param promise 回调Promise，返回移除的条数
+     */
+    @ReactMethod
+    public void invalidateAuthCache(final String scope, final Promise promise) {
+        int removed = payments.authCache.invalidate(TextUtils.isEmpty(scope) ? null : scope);
+        if (AlipayLog.isLoggable(AlipayLog.DEBUG)) {
+            AlipayLog.d("授权结果缓存已失效: scope={}, removed={}", scope, removed);
+        }
+        promise.resolve(removed);
+    }
+    
+    /**
+     * 用户退出登录时移除该用户的授权结果缓存
+     * 
+     * @param userKey 授权时传入的userKey，为null时移除全部结果
+     * @param promise 回调Promise，返回移除的条数
+     */
+    @ReactMethod
+    public void clearAuthCacheOnLogout(final String userKey, final Promise promise) {
+        int removed = payments.authCache.invalidateUser(TextUtils.isEmpty(userKey) ? null : userKey);
+        if (AlipayLog.isLoggable(AlipayLog.DEBUG)) {
+            AlipayLog.d("用户退出登录，授权结果缓存已移除: removed={}", removed);
+        }
+        promise.resolve(removed);
+    }
+    
+    /**
+     * 拦截WebView中的H5支付链接，是支付宝H5收银台链接时改为拉起支付宝App支付
+     * 可以在WebView每次跳转时调用：非http(s)链接和有效期内判定过的非支付链接直接返回，不切换线程；
+     * 其余链接在支付线程池中交给SDK（PayTask.payInterceptorWithUrl）判断。
+     * 被拦截的链接在支付完成后返回结果，WebView应加载returnUrl（不为空时）代替原链接；
+     * 5分钟内没有结果时以ERR_H5_INTERCEPT_TIMEOUT失败，此时支付结果未知，需向服务端查询。
+     * 拦截线程繁忙时不等待，直接返回未拦截（busy为true），WebView照常加载H5收银台。
+     * H5支付不经过支付状态机，不发送AlipayPaymentResult事件。
+     * 
+     * @param url WebView将要加载的链接
+     * @param promise 回调Promise，返回{intercepted, resultCode?, returnUrl?, fromCache?, busy?}
+     */
+    @ReactMethod
+    public void interceptH5Url(final String url, final Promise promise) {
+        if (TextUtils.isEmpty(url)) {
+            promise.reject("ERR_INVALID_URL", "链接不能为空");
+            return;
+        }
+        if (!H5InterceptCache.isCandidate(url)) {
+            promise.resolve(createH5InterceptResult(false, null, null));
+            return;
+        }
+        final String cacheKey = H5InterceptCache.keyOf(url);
+        if (h5InterceptCache.isKnownNotPayment(cacheKey)) {
+            WritableMap result = createH5InterceptResult(false, null, null);
+            result.putBoolean("fromCache", true);
+            promise.resolve(result);
+            return;
+        }
+        
         final Activity currentActivity = getCurrentActivity();
         if (currentActivity == null) {
             promise.reject("ERR_ACTIVITY_NOT_FOUND", "Activity不存在");
             return;
         }
         
-        final Handler handler = new Handler(Looper.getMainLooper()) {
-            @Override
-            public void handleMessage(Message msg) {
-                if (msg.what == SDK_AUTH_FLAG) {
-                    @SuppressWarnings("unchecked")
-                    Map<String, String> result = (Map<String, String>) msg.obj;
-                    
-                    WritableMap map = Arguments.createMap();
-                    for (Map.Entry<String, String> entry : result.entrySet()) {
-                        map.putString(entry.getKey(), entry.getValue());
-                    }
-                    
-                    promise.resolve(map);
-                }
-            }
-        };
-        
-        new Thread(new Runnable() {
-            @Override
-            public void run() {
-                try {
-                    AuthTask authTask = new AuthTask(currentActivity);
-                    Map<String, String> result = authTask.authV2(authInfo, true);
-                    
-                    Message msg = new Message();
-                    msg.what = SDK_AUTH_FLAG;
-                    msg.obj = result;
-                    handler.sendMessage(msg);
-                } catch (Exception e) {
-                    HashMap<String, String> errorResult = new HashMap<>();
-                    errorResult.put("resultStatus", "4000");
-                    errorResult.put("memo", "授权过程出现异常: " + e.getMessage());
-                    
-                    resetPaymentStateInternal();
-                    
-                    Message msg = new Message();
-                    msg.what = SDK_AUTH_FLAG;
-                    msg.obj = errorResult;
-                    handler.sendMessage(msg);
-                }
-            }
-        }).start();
+        final String interceptId = "h5_" + h5Sequence.incrementAndGet();
+        if (!h5Promises.register(interceptId, promise)) {
+            promise.reject("ERR_MODULE_INVALIDATED", "模块已销毁");
+            return;
+        }
+        deadlines.schedule(interceptId, H5_INTERCEPT_TIMEOUT_MILLIS, new PostToModule(selfRef,
+                new RejectH5Intercept(interceptId, "ERR_H5_INTERCEPT_TIMEOUT",
+                        "H5支付超时: " + H5_INTERCEPT_TIMEOUT_MILLIS + "ms内未收到支付宝返回结果")));
+        h5Executor.execute(new H5InterceptJob(this, currentActivity, interceptId, url, cacheKey),
+                new H5InterceptRejected(selfRef, interceptId));
+    }
+    
+    /**
+     * 内部方法：在主线程返回H5链接的拦截结果
+     */
+    private void completeH5Intercept(String interceptId, boolean intercepted, String resultCode, String returnUrl) {
+        deadlines.cancel(interceptId);
+        Promise promise = h5Promises.take(interceptId);
+        if (promise != null) {
+            promise.resolve(createH5InterceptResult(intercepted, resultCode, returnUrl));
+        }
+    }
+    
+    /**
+     * 内部方法：拦截线程繁忙时放行链接，由WebView照常加载
+     */
+    private void passH5Intercept(String interceptId) {
+        deadlines.cancel(interceptId);
+        Promise promise = h5Promises.take(interceptId);
+        if (promise != null) {
+            h5InterceptCache.recordBusy();
+            WritableMap result = createH5InterceptResult(false, null, null);
+            result.putBoolean("busy", true);
+            promise.resolve(result);
+        }
+    }
+    
+    /**
+     * 内部方法：未能拿到拦截结果时结束请求（超时、Activity已销毁、SDK异常）
+     */
+    private void rejectH5Intercept(String interceptId, String code, String message) {
+        deadlines.cancel(interceptId);
+        Promise promise = h5Promises.take(interceptId);
+        if (promise != null) {
+            promise.reject(code, message);
+        }
+    }
+    
+    private static WritableMap createH5InterceptResult(boolean intercepted, String resultCode, String returnUrl) {
+        WritableMap result = Arguments.createMap();
+        result.putBoolean("intercepted", intercepted);
+        if (intercepted) {
+            result.putString("resultCode", resultCode);
+            result.putString("returnUrl", returnUrl);
+        }
+        return result;
     }
     
     /**
@@ -321,18 +520,63 @@ public class AlipayModule extends ReactContextBaseJavaModule {
             
             if (enabled) {
                 EnvUtils.setEnv(EnvUtils.EnvEnum.SANDBOX);
-                Log.d(TAG, "已设置为沙箱环境");
+                AlipayLog.d("已设置为沙箱环境");
             } else {
                 EnvUtils.setEnv(EnvUtils.EnvEnum.ONLINE);
-                Log.d(TAG, "已设置为正式环境");
+                // 模拟SDK只允许在沙箱模式下使用
+                restoreSdkGateway();
+                AlipayLog.d("已设置为正式环境");
             }
             promise.resolve(enabled);
         } catch (Exception e) {
-            Log.e(TAG, "设置环境失败: " + e.getMessage());
+            AlipayLog.e("设置环境失败: {}", e.getMessage());
             promise.reject("ENV_SETTING_ERROR", "设置环境失败: " + e.getMessage());
         }
     }
     
+    /**
+     * 用本地模拟的支付宝SDK替换payV2/authV2，用于没有支付宝环境时压测支付流程，仅允许在沙箱模式下使用
+     * 切换回正式环境时自动恢复真实SDK
+     * 
+     * @param options 模拟脚本: latencyMs, jitterMs, resultStatuses（循环返回的状态码）, dropRate（丢失回调的概率）,
+     *                dropHoldMs（丢失回调时阻塞的时间）, seed；为null时恢复真实SDK
+     * @param promise 回调Promise，返回当前是否使用模拟SDK
+     */
+    @ReactMethod
+    public void useFakeGateway(final ReadableMap options, final Promise promise) {
+        if (options == null) {
+            restoreSdkGateway();
+            promise.resolve(false);
+            return;
+        }
+        if (!isSandboxMode) {
+            promise.reject("ERR_FAKE_GATEWAY_NOT_ALLOWED", "模拟SDK只能在沙箱模式下使用");
+            return;
+        }
+        try {
+            String[] resultStatuses = null;
+            if (options.hasKey("resultStatuses") && !options.isNull("resultStatuses")) {
+                ReadableArray statuses = options.getArray("resultStatuses");
+                resultStatuses = new String[statuses.size()];
+                for (int i = 0; i < statuses.size(); i++) {
+                    resultStatuses[i] = statuses.getString(i);
+                }
+            }
+            FakeAlipayGateway<Activity> fake = new FakeAlipayGateway<>(
+                    (long) readDouble(options, "latencyMs", 0),
+                    (long) readDouble(options, "jitterMs", 0),
+                    resultStatuses,
+                    readDouble(options, "dropRate", 0),
+                    (long) readDouble(options, "dropHoldMs", 0),
+                    (long) readDouble(options, "seed", System.nanoTime()));
+            releaseFakeGateway(payments.setGateway(fake));
+            AlipayLog.w("已切换为模拟支付宝SDK，支付和授权不会拉起支付宝");
+            promise.resolve(true);
+        } catch (Exception e) {
+            promise.reject("ERR_INVALID_FAKE_GATEWAY", "模拟SDK配置不合法: " + e.getMessage());
+        }
+    }
+    
     /**
      * 获取当前沙箱模式状态
      * 
@@ -343,6 +587,17 @@ public class AlipayModule extends ReactContextBaseJavaModule {
         promise.resolve(this.isSandboxMode);
     }
     
+    /**
+     * 同步获取当前沙箱模式状态
+     * 只读取缓存的字段，不涉及SDK调用，可以安全地在JS线程同步执行
+     * 
+     * @return 是否处于沙箱模式
+     */
+    @ReactMethod(isBlockingSynchronousMethod = true)
+    public boolean isSandboxEnabledSync() {
+        return this.isSandboxMode;
+    }
+    
     /**
      * 检查支付宝是否安装
      * 
@@ -350,18 +605,20 @@ public class AlipayModule extends ReactContextBaseJavaModule {
      */
     @ReactMethod
     public void isAlipayInstalled(final Promise promise) {
-        try {
-            final Activity currentActivity = getCurrentActivity();
-            if (currentActivity == null) {
-                promise.resolve(false);
-                return;
-            }
-            
-            PayTask payTask = new PayTask(currentActivity);
-            boolean isInstalled = payTask.getVersion() != null;
-            promise.resolve(isInstalled);
-        } catch (Exception e) {
+        AlipayAppProbe.Result cached = alipayAppProbe.peek();
+        if (cached != null) {
+            promise.resolve(cached.installed);
+            return;
+        }
+        final Activity currentActivity = getCurrentActivity();
+        if (currentActivity == null) {
             promise.resolve(false);
+            return;
+        }
+        
+        String requestId = registerWorkerPromise(promise);
+        if (requestId != null) {
+            alipayAppProbe.probe(currentActivity, new InstalledProbed(selfRef, requestId));
         }
     }
     
@@ -372,86 +629,497 @@ public class AlipayModule extends ReactContextBaseJavaModule {
      */
     @ReactMethod
     public void getAlipayVersion(final Promise promise) {
-        try {
-            final Activity currentActivity = getCurrentActivity();
-            if (currentActivity == null) {
-                promise.reject("ERR_ACTIVITY_NOT_FOUND", "Activity不存在");
-                return;
-            }
-            
-            PayTask payTask = new PayTask(currentActivity);
-            String version = payTask.getVersion();
-            promise.resolve(version);
-        } catch (Exception e) {
-            promise.reject("GET_VERSION_ERROR", e.getMessage());
+        AlipayAppProbe.Result cached = alipayAppProbe.peek();
+        if (cached != null) {
+            promise.resolve(cached.version);
+            return;
+        }
+        final Activity currentActivity = getCurrentActivity();
+        if (currentActivity == null) {
+            promise.reject("ERR_ACTIVITY_NOT_FOUND", "Activity不存在");
+            return;
+        }
+        
+        String requestId = registerWorkerPromise(promise);
+        if (requestId != null) {
+            alipayAppProbe.probe(currentActivity, new VersionProbed(selfRef, requestId));
         }
     }
     
     /**
-     * 重置支付状态
+     * 预热支付宝SDK
+     * 在支付线程中提前构造PayTask、查询版本并应用环境设置，减少首次支付的初始化耗时。
+     * 只会真正执行一次，重复调用直接返回首次预热的结果。
      * 
-     * @param promise 回调Promise
+     * @param promise 回调Promise，返回 { durationMs, alipayVersion, payTaskCreated, cached }
      */
     @ReactMethod
-    public void resetPaymentState(final Promise promise) {
-        Log.d(TAG, "手动重置支付状态");
-        resetPaymentStateInternal();
-        promise.resolve(true);
+    public void prewarm(final Promise promise) {
+        String requestId = registerWorkerPromise(promise);
+        if (requestId != null) {
+            sdkPrewarmer.prewarm(getCurrentActivity(), isSandboxMode, new Prewarmed(selfRef, requestId));
+        }
     }
     
     /**
-     * 发送事件到JS层
+     * 取消一笔进行中的支付
+     * 只结束模块内的等待并以ERR_PAYMENT_CANCELLED失败，无法关闭已经打开的支付宝界面；
+     * 之后SDK返回的结果会被忽略
      * 
-     * @param eventName 事件名称
-     * @param params 事件参数
+     * @param paymentId 支付ID，由发起支付时的AlipayPaymentLaunched事件给出
+     * @param promise 回调Promise，成功取消返回true，支付已结束或不存在返回false
      */
-    private void sendEvent(String eventName, WritableMap params) {
-        reactContext
-            .getJSModule(DeviceEventManagerModule.RCTDeviceEventEmitter.class)
-            .emit(eventName, params);
+    @ReactMethod
+    public void cancelPayment(final String paymentId, final Promise promise) {
+        if (TextUtils.isEmpty(paymentId)) {
+            promise.resolve(false);
+            return;
+        }
+        promise.resolve(payments.abort(paymentId, "ERR_PAYMENT_CANCELLED", "支付已被取消"));
     }
     
     /**
-     * 导出常量到JS层
+     * 获取已拉起支付宝但没有拿到结果的支付，包括之前进程中被杀死时未完成的支付
+     * 这些支付的结果需要向服务端查询，确认后调用acknowledgePendingPayments移除
+     * 
+     * @param promise 回调Promise，返回 [{ paymentId, outTradeNo, launchedAt, previousSession }]
      */
-    @Nullable
-    @Override
-    public Map<String, Object> getConstants() {
-        final Map<String, Object> constants = new HashMap<>();
-        constants.put("SUCCESS", "9000");    // 支付成功
-        constants.put("PROCESSING", "8000"); // 正在处理中
-        constants.put("FAILED", "4000");     // 支付失败
-        constants.put("CANCEL", "6001");     // 用户取消
-        constants.put("NETWORK_ERROR", "6002"); // 网络连接出错
-        constants.put("UNKNOWN", "6004");    // 未知错误
-        return constants;
-    }
-
-    @Override
-    public void invalidate() {
-        // 在组件卸载时移除监听器
-        reactContext.removeActivityEventListener(activityEventListener);
-        super.invalidate();
+    @ReactMethod
+    public void getPendingPayments(final Promise promise) {
+        String requestId = registerWorkerPromise(promise);
+        if (requestId != null && !journal.pendingPayments(new PendingPaymentsRead(selfRef, requestId))) {
+            rejectWorkerPromise(requestId, "ERR_JOURNAL_CLOSED", "支付日志已关闭");
+        }
     }
-
+    
     /**
-     * 启用或禁用调试模式，在调试模式下会输出更多日志
-     *
-     * @param enabled 是否启用调试模式
-     * @param promise 回调Promise
+     * 校验订单字符串，不拉起支付宝
+     * 检查必填参数、biz_content的JSON格式、timestamp格式，以及按timeout_express/time_expire判断订单是否已过期
+     * 
+     * @param orderInfo 支付宝订单信息字符串
+     * @param promise 回调Promise，返回 { valid, code, message, missingFields, expiresAt }
      */
     @ReactMethod
-    public void setDebugMode(final boolean enabled, final Promise promise) {
-        this.isDebugMode = enabled;
-        Log.d(TAG, "调试模式已" + (enabled ? "启用" : "禁用"));
-        promise.resolve(enabled);
+    public void validateOrder(final String orderInfo, final Promise promise) {
+        OrderValidator.Result validation = OrderValidator.validate(orderInfo, System.currentTimeMillis());
+        WritableMap result = Arguments.createMap();
+        result.putBoolean("valid", validation.isValid());
+        WritableArray missingFields = Arguments.createArray();
+        for (String field : validation.missingFields()) {
+            missingFields.pushString(field);
+        }
+        result.putArray("missingFields", missingFields);
+        if (validation.isValid()) {
+            result.putDouble("expiresAt", validation.expiresAtMillis);
+        } else {
+            result.putString("code", validation.code);
+            result.putString("message", validation.message);
+        }
+        promise.resolve(result);
     }
-
+    
     /**
-     * 记录调试日志
+     * 批量查询本地观察到的订单结果，一次桥接调用返回全部订单
+     * 只保留最近256个订单，更早的订单和其他设备上的支付返回UNKNOWN
      * 
-     * @param level 日志级别 ("debug", "info", "warn", "error")
-     * @param message 日志内容
+     * @param outTradeNos 商户订单号数组
+     * @param promise 回调Promise，返回以商户订单号为键的Map，
+     *                每项为 { state, paymentId, resultStatus, errorCode, tradeNo, totalAmount, updatedAt }
+     */
+    @ReactMethod
+    public void queryOrders(final ReadableArray outTradeNos, final Promise promise) {
+        List<String> keys = new ArrayList<>();
+        for (int i = 0; outTradeNos != null && i < outTradeNos.size(); i++) {
+            if (outTradeNos.getType(i) == ReadableType.String) {
+                keys.add(outTradeNos.getString(i));
+            }
+        }
+        List<OrderRecordIndex.OrderRecord> records = payments.orderIndex.query(keys);
+        
+        WritableMap result = Arguments.createMap();
+        for (int i = 0; i < keys.size(); i++) {
+            OrderRecordIndex.OrderRecord record = records.get(i);
+            WritableMap entry = Arguments.createMap();
+            if (record == null) {
+                entry.putString("state", "UNKNOWN");
+            } else {
+                entry.putString("state", record.state.name());
+                entry.putString("paymentId", record.paymentId);
+                if (record.state == OrderRecordIndex.State.COMPLETED) {
+                    entry.putString("resultStatus", String.valueOf(record.resultStatus));
+                }
+                if (record.errorCode != null) {
+                    entry.putString("errorCode", record.errorCode);
+                }
+                if (record.tradeNo != null) {
+                    entry.putString("tradeNo", record.tradeNo);
+                }
+                if (record.totalAmount != null) {
+                    entry.putString("totalAmount", record.totalAmount);
+                }
+                entry.putDouble("updatedAt", record.updatedAtMillis);
+            }
+            result.putMap(keys.get(i), entry);
+        }
+        promise.resolve(result);
+    }
+    
+    /**
+     * 将已通过服务端确认结果的支付从待确认列表中移除
+     * 
+     * @param paymentIds 支付ID数组
+     * @param promise 回调Promise，返回实际移除的数量
+     */
+    @ReactMethod
+    public void acknowledgePendingPayments(final ReadableArray paymentIds, final Promise promise) {
+        List<String> ids = new ArrayList<>();
+        for (int i = 0; paymentIds != null && i < paymentIds.size(); i++) {
+            if (paymentIds.getType(i) == ReadableType.String) {
+                ids.add(paymentIds.getString(i));
+            }
+        }
+        String requestId = registerWorkerPromise(promise);
+        if (requestId != null && !journal.acknowledge(ids, new PaymentsAcknowledged(selfRef, requestId))) {
+            rejectWorkerPromise(requestId, "ERR_JOURNAL_CLOSED", "支付日志已关闭");
+        }
+    }
+    
+    /**
+     * 重置支付状态
+     * 
+     * @param promise 回调Promise
+     */
+    @ReactMethod
+    public void resetPaymentState(final Promise promise) {
+        AlipayLog.d("手动重置支付状态");
+        payments.reset();
+        promise.resolve(true);
+    }
+    
+    /**
+     * 配置支付线程池
+     * 
+     * @param options 配置项: corePoolSize, maxPoolSize, queueCapacity, rejectionPolicy("abort" | "discardOldest")
+     * @param promise 回调Promise，返回生效后的配置
+     */
+    @ReactMethod
+    public void configureExecutor(final ReadableMap options, final Promise promise) {
+        try {
+            int corePoolSize = options.hasKey("corePoolSize")
+                    ? options.getInt("corePoolSize") : paymentExecutor.getCorePoolSize();
+            int maxPoolSize = options.hasKey("maxPoolSize")
+                    ? options.getInt("maxPoolSize") : Math.max(corePoolSize, paymentExecutor.getMaxPoolSize());
+            int queueCapacity = options.hasKey("queueCapacity")
+                    ? options.getInt("queueCapacity") : paymentExecutor.getQueueCapacity();
+            String rejectionPolicy = options.hasKey("rejectionPolicy")
+                    ? options.getString("rejectionPolicy") : paymentExecutor.getRejectionPolicy();
+            
+            paymentExecutor.configure(corePoolSize, maxPoolSize, queueCapacity, rejectionPolicy);
+            
+            WritableMap config = Arguments.createMap();
+            config.putInt("corePoolSize", paymentExecutor.getCorePoolSize());
+            config.putInt("maxPoolSize", paymentExecutor.getMaxPoolSize());
+            config.putInt("queueCapacity", paymentExecutor.getQueueCapacity());
+            config.putString("rejectionPolicy", paymentExecutor.getRejectionPolicy());
+            promise.resolve(config);
+        } catch (Exception e) {
+            AlipayLog.e("配置支付线程池失败: {}", e.getMessage());
+            promise.reject("ERR_INVALID_EXECUTOR_CONFIG", "配置支付线程池失败: " + e.getMessage());
+        }
+    }
+    
+    /**
+     * 配置订单结果缓存
+     * 
+     * @param options 配置项: capacity（缓存订单数，0表示不缓存）, ttlMs（结果有效期）
+     * @param promise 回调Promise，返回生效后的配置
+     */
+    @ReactMethod
+    public void configureOrderCache(final ReadableMap options, final Promise promise) {
+        try {
+            int capacity = options.hasKey("capacity")
+                    ? options.getInt("capacity") : payments.deduplicator.getCapacity();
+            long ttlMillis = options.hasKey("ttlMs")
+                    ? (long) options.getDouble("ttlMs") : payments.deduplicator.getTtlMillis();
+            payments.deduplicator.configure(capacity, ttlMillis);
+            if (options.hasKey("clear") && options.getBoolean("clear")) {
+                payments.deduplicator.clear();
+            }
+            
+            WritableMap config = Arguments.createMap();
+            config.putInt("capacity", payments.deduplicator.getCapacity());
+            config.putDouble("ttlMs", payments.deduplicator.getTtlMillis());
+            promise.resolve(config);
+        } catch (Exception e) {
+            AlipayLog.e("配置订单结果缓存失败: {}", e.getMessage());
+            promise.reject("ERR_INVALID_CACHE_CONFIG", "配置订单结果缓存失败: " + e.getMessage());
+        }
+    }
+    
+    /**
+     * 立即发送JS未就绪期间暂存的事件，JS层订阅AlipayPaymentResult后调用
+     * JS重新加载后、宿主恢复前的事件会暂存，订阅后调用可以立即取回
+     * 
+     * @param promise 回调Promise，返回本次发送的事件数
+     */
+    @ReactMethod
+    public void flushPendingEvents(final Promise promise) {
+        jsAttached = true;
+        promise.resolve(drainEventOutbox());
+    }
+    
+    /**
+     * 配置JS未就绪时暂存事件的队列
+     * 
+     * @param options 配置项: capacity（队列容量）, overflowPolicy（"dropOldest"丢弃最早的事件，"dropNewest"丢弃新事件）
+     * @param promise 回调Promise，返回生效后的配置
+     */
+    @ReactMethod
+    public void configureEventBuffer(final ReadableMap options, final Promise promise) {
+        try {
+            int capacity = options.hasKey("capacity")
+                    ? options.getInt("capacity") : EVENT_OUTBOX.getCapacity();
+            EventOutbox.OverflowPolicy policy = EVENT_OUTBOX.getOverflowPolicy();
+            if (options.hasKey("overflowPolicy")) {
+                String name = options.getString("overflowPolicy");
+                if ("dropOldest".equals(name)) {
+                    policy = EventOutbox.OverflowPolicy.DROP_OLDEST;
+                } else if ("dropNewest".equals(name)) {
+                    policy = EventOutbox.OverflowPolicy.DROP_NEWEST;
+                } else {
+                    throw new IllegalArgumentException("不支持的溢出策略: " + name);
+                }
+            }
+            EVENT_OUTBOX.configure(capacity, policy);
+            
+            WritableMap config = Arguments.createMap();
+            config.putInt("capacity", EVENT_OUTBOX.getCapacity());
+            config.putString("overflowPolicy",
+                    EVENT_OUTBOX.getOverflowPolicy() == EventOutbox.OverflowPolicy.DROP_NEWEST ? "dropNewest" : "dropOldest");
+            promise.resolve(config);
+        } catch (Exception e) {
+            AlipayLog.e("配置事件队列失败: {}", e.getMessage());
+            promise.reject("ERR_INVALID_EVENT_BUFFER_CONFIG", "配置事件队列失败: " + e.getMessage());
+        }
+    }
+    
+    /**
+     * 配置支付结果的内容
+     * 结果始终包含原生层分类好的status、success、processing、cancelled、message和已解析的交易字段
+     * 
+     * @param options 配置项: includeRawResult（是否包含原始的result字段，缺省true）
+     * @param promise 回调Promise，返回生效后的配置
+     */
+    @ReactMethod
+    public void configureResults(final ReadableMap options, final Promise promise) {
+        if (options != null && options.hasKey("includeRawResult") && !options.isNull("includeRawResult")) {
+            includeRawResult = options.getBoolean("includeRawResult");
+        }
+        WritableMap config = Arguments.createMap();
+        config.putBoolean("includeRawResult", includeRawResult);
+        promise.resolve(config);
+    }
+    
+    /**
+     * 获取支付/授权各阶段的延迟统计（毫秒）和结果状态计数
+     * 
+     * @param promise 回调Promise
+     */
+    @ReactMethod
+    public void getMetrics(final Promise promise) {
+        WritableMap result = Arguments.createMap();
+        result.putMap("pay", createOperationMetricsMap(payments.metrics.pay));
+        result.putMap("auth", createOperationMetricsMap(payments.metrics.auth));
+        WritableMap orderCache = Arguments.createMap();
+        orderCache.putDouble("hits", payments.deduplicator.getHitCount());
+        orderCache.putDouble("misses", payments.deduplicator.getMissCount());
+        orderCache.putDouble("coalesced", payments.deduplicator.getCoalescedCount());
+        orderCache.putDouble("expired", payments.deduplicator.getExpiredCount());
+        orderCache.putDouble("size", payments.deduplicator.size());
+        result.putMap("orderCache", orderCache);
+        WritableMap authCacheMetrics = Arguments.createMap();
+        authCacheMetrics.putDouble("roundTripsAvoided", payments.authCache.getHitCount());
+        authCacheMetrics.putDouble("misses", payments.authCache.getMissCount());
+        authCacheMetrics.putDouble("expired", payments.authCache.getExpiredCount());
+        authCacheMetrics.putDouble("invalidated", payments.authCache.getInvalidatedCount());
+        authCacheMetrics.putDouble("size", payments.authCache.size());
+        result.putMap("authCache", authCacheMetrics);
+        WritableMap events = Arguments.createMap();
+        events.putDouble("queued", EVENT_OUTBOX.getQueuedCount());
+        events.putDouble("delivered", EVENT_OUTBOX.getDeliveredCount());
+        events.putDouble("overflow", EVENT_OUTBOX.getOverflowCount());
+        events.putDouble("failedEmits", EVENT_OUTBOX.getFailedEmitCount());
+        events.putDouble("pending", EVENT_OUTBOX.size());
+        events.putDouble("lastSequence", EVENT_OUTBOX.getLastSequence());
+        result.putMap("events", events);
+        WritableMap h5Intercept = Arguments.createMap();
+        h5Intercept.putDouble("intercepted", h5InterceptCache.getInterceptedCount());
+        h5Intercept.putDouble("negativeHits", h5InterceptCache.getHitCount());
+        h5Intercept.putDouble("sdkChecks", h5InterceptCache.getMissCount());
+        h5Intercept.putDouble("size", h5InterceptCache.size());
+        h5Intercept.putDouble("busy", h5InterceptCache.getBusyCount());
+        result.putMap("h5Intercept", h5Intercept);
+        result.putDouble("timeouts", deadlines.getExpiredCount());
+        result.putDouble("since", payments.metrics.getResetTimeMillis());
+        promise.resolve(result);
+    }
+    
+    /**
+     * 清空延迟统计和结果状态计数
+     * 
+     * @param promise 回调Promise
+     */
+    @ReactMethod
+    public void resetMetrics(final Promise promise) {
+        payments.metrics.reset();
+        promise.resolve(true);
+    }
+    
+    private static WritableMap createOperationMetricsMap(PaymentMetrics.Operation operation) {
+        WritableMap phases = Arguments.createMap();
+        for (PaymentMetrics.Phase phase : PaymentMetrics.Phase.values()) {
+            LatencyHistogram histogram = operation.histogram(phase);
+            WritableMap phaseMap = Arguments.createMap();
+            phaseMap.putDouble("count", histogram.getCount());
+            phaseMap.putDouble("mean", histogram.getMeanMillis());
+            phaseMap.putDouble("p50", histogram.getPercentileMillis(50));
+            phaseMap.putDouble("p90", histogram.getPercentileMillis(90));
+            phaseMap.putDouble("p99", histogram.getPercentileMillis(99));
+            phaseMap.putDouble("max", histogram.getMaxMillis());
+            phases.putMap(phase.key, phaseMap);
+        }
+        
+        WritableMap statusCounts = Arguments.createMap();
+        for (int i = 0; i < PaymentMetrics.Operation.KNOWN_STATUS.length; i++) {
+            statusCounts.putDouble(String.valueOf(PaymentMetrics.Operation.KNOWN_STATUS[i]), operation.statusCount(i));
+        }
+        statusCounts.putDouble("other", operation.otherStatusCount());
+        
+        WritableMap map = Arguments.createMap();
+        map.putMap("phases", phases);
+        map.putMap("statusCounts", statusCounts);
+        return map;
+    }
+    
+    /**
+     * 发送事件到JS层
+     * 事件入队时附带递增的sequence，JS层已接入且运行时就绪时按顺序发送，否则暂存
+     * 
+     * @param eventName 事件名称
+     * @param params 事件参数
+     */
+    private void sendEvent(String eventName, WritableMap params) {
+        EVENT_OUTBOX.offer(eventName, params, STAMP_SEQUENCE);
+        drainEventOutbox();
+    }
+    
+    /**
+     * 内部方法：JS层已接入（宿主恢复过或调用过flushPendingEvents）且运行时就绪时发送队列中的事件
+     * 
+     * @return 本次发送的事件数
+     */
+    private int drainEventOutbox() {
+        if (!jsAttached || !reactContext.hasActiveReactInstance()) {
+            if (AlipayLog.isLoggable(AlipayLog.DEBUG)) {
+                AlipayLog.d("JS未接入或运行时未就绪，暂存事件: {}", EVENT_OUTBOX.size());
+            }
+            return 0;
+        }
+        long span = PaymentTrace.begin("event.emit");
+        try {
+            return EVENT_OUTBOX.drainTo(eventSink);
+        } finally {
+            PaymentTrace.end(span, "event.emit", null);
+        }
+    }
+    
+    /**
+     * 将解析后的支付结果转换为传给JS层的Map
+     * 
+     * @param result 解析后的支付结果
+     * @param paymentId 支付ID
+     * @return 包含resultStatus、memo、result及已解析交易字段的Map
+     */
+    private WritableMap createResultMap(AlipayResult result, String paymentId) {
+        final WritableMap map = Arguments.createMap();
+        ResultMarshaller.write(result, paymentId, includeRawResult, isChineseLocale(), new ResultWriter() {
+            @Override
+            public void putString(String key, String value) {
+                map.putString(key, value);
+            }
+            
+            @Override
+            public void putBoolean(String key, boolean value) {
+                map.putBoolean(key, value);
+            }
+        });
+        return map;
+    }
+    
+    private static boolean isChineseLocale() {
+        return "zh".equals(Locale.getDefault().getLanguage());
+    }
+    
+    /**
+     * 导出常量到JS层
+     */
+    @Override
+    protected Map<String, Object> getTypedExportedConstants() {
+        final Map<String, Object> constants = new HashMap<>();
+        constants.put("SUCCESS", "9000");    // 支付成功
+        constants.put("PROCESSING", "8000"); // 正在处理中
+        constants.put("FAILED", "4000");     // 支付失败
+        constants.put("REPEAT_REQUEST", "5000"); // 重复请求
+        constants.put("CANCEL", "6001");     // 用户取消
+        constants.put("NETWORK_ERROR", "6002"); // 网络连接出错
+        constants.put("UNKNOWN", "6004");    // 未知错误
+        return constants;
+    }
+
+    @Override
+    public void invalidate() {
+        // 在组件卸载时移除监听器
+        reactContext.removeActivityEventListener(activityEventListener);
+        reactContext.removeLifecycleEventListener(lifecycleEventListener);
+        // JS重新加载期间的事件留在进程共用的队列中，由新模块在宿主恢复后发送
+        jsAttached = false;
+        alipayAppProbe.unregister();
+        deadlines.cancelAll();
+        releaseFakeGateway(payments.getGateway());
+        // 尚未完成的支付和授权统一失败，Promise不会遗留在工作线程或消息队列中
+        payments.invalidate();
+        for (Promise promise : h5Promises.drain()) {
+            promise.reject("ERR_MODULE_INVALIDATED", "模块已销毁");
+        }
+        for (Promise promise : workerPromises.drain()) {
+            promise.reject("ERR_MODULE_INVALIDATED", "模块已销毁");
+        }
+        journal.close();
+        // 关闭支付线程池，排队中的任务会被拒绝
+        paymentExecutor.shutdown();
+        h5Executor.shutdown();
+        super.invalidate();
+    }
+
+    /**
+     * 启用或禁用调试模式，在调试模式下会输出更多日志
+     *
+     * @param enabled 是否启用调试模式
+     * @param promise 回调Promise
+     */
+    @ReactMethod
+    public void setDebugMode(final boolean enabled, final Promise promise) {
+        this.isDebugMode = enabled;
+        AlipayLog.setDebugEnabled(enabled);
+        AlipayLog.i(enabled ? "调试模式已启用" : "调试模式已禁用");
+        promise.resolve(enabled);
+    }
+
+    /**
+     * 记录调试日志
+     * 
+     * @param level 日志级别 ("debug", "info", "warn", "error")
+     * @param message 日志内容
      * @param promise 回调Promise
      */
     @ReactMethod
@@ -461,101 +1129,721 @@ public class AlipayModule extends ReactContextBaseJavaModule {
             return;
         }
         
-        switch (level.toLowerCase()) {
-            case "debug":
-                Log.d(TAG, message);
-                break;
-            case "info":
-                Log.i(TAG, message);
-                break;
-            case "warn":
-                Log.w(TAG, message);
-                break;
-            case "error":
-                Log.e(TAG, message);
-                break;
-            default:
-                Log.d(TAG, message);
+        AlipayLog.log(AlipayLog.parseLevel(level), message);
+        promise.resolve(true);
+    }
+
+    /**
+     * 批量记录调试日志，一次桥接调用写入多条
+     * 
+     * @param entries 日志记录数组，每项为 { level, message, timestamp }，timestamp缺省时使用当前时间
+     * @param promise 回调Promise，返回实际写入的条数；调试模式关闭时返回0
+     */
+    @ReactMethod
+    public void logDebugInfoBatch(final ReadableArray entries, final Promise promise) {
+        if (!this.isDebugMode || entries == null) {
+            promise.resolve(0);
+            return;
         }
         
-        promise.resolve(true);
+        int written = 0;
+        int size = entries.size();
+        long now = System.currentTimeMillis();
+        for (int i = 0; i < size; i++) {
+            if (entries.getType(i) != ReadableType.Map) {
+                continue;
+            }
+            ReadableMap entry = entries.getMap(i);
+            if (!entry.hasKey("message") || entry.isNull("message")) {
+                continue;
+            }
+            String level = entry.hasKey("level") && !entry.isNull("level") ? entry.getString("level") : null;
+            long timestamp = entry.hasKey("timestamp") && !entry.isNull("timestamp")
+                    ? (long) entry.getDouble("timestamp") : now;
+            AlipayLog.log(AlipayLog.parseLevel(level), entry.getString("message"), timestamp);
+            written++;
+        }
+        promise.resolve(written);
+    }
+
+    /**
+     * 导出最近的日志记录（环形缓冲区，最多保留256条）
+     * 调试模式关闭时只记录WARN及以上级别
+     * 
+     * @param promise 回调Promise，返回 { logs: [{ timestamp, level, message }], dropped }
+     */
+    @ReactMethod
+    public void getRecentLogs(final Promise promise) {
+        WritableArray logs = Arguments.createArray();
+        for (LogRingBuffer.Record record : AlipayLog.recent()) {
+            WritableMap entry = Arguments.createMap();
+            entry.putDouble("timestamp", record.timeMillis);
+            entry.putString("level", AlipayLog.levelName(record.level));
+            entry.putString("message", record.message);
+            logs.pushMap(entry);
+        }
+        WritableMap result = Arguments.createMap();
+        result.putArray("logs", logs);
+        result.putDouble("dropped", AlipayLog.getDroppedCount());
+        promise.resolve(result);
+    }
+
+    /**
+     * 开启或关闭支付流程跟踪
+     * 开启后各线程中的支付/授权阶段写入android.os.Trace和内存缓冲区（最多4096个区间），
+     * 开启时清空之前的记录；关闭时不产生任何开销
+     * 
+     * @param enabled 是否开启
+     * @param promise 回调Promise
+     */
+    @ReactMethod
+    public void setTraceEnabled(final boolean enabled, final Promise promise) {
+        PaymentTrace.setEnabled(enabled);
+        AlipayLog.d("支付流程跟踪: {}", enabled);
+        promise.resolve(enabled);
+    }
+
+    /**
+     * 将记录的跟踪区间写为Chrome Trace Event JSON，可在Perfetto（ui.perfetto.dev）或chrome://tracing中打开
+     * 
+     * @param promise 回调Promise，返回 { path, spans, dropped }
+     */
+    @ReactMethod
+    public void dumpTrace(final Promise promise) {
+        File file = new File(reactContext.getCacheDir(), TRACE_FILE_NAME);
+        try {
+            int spans;
+            Writer out = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file), "UTF-8"));
+            try {
+                spans = PaymentTrace.writeChromeTrace(out, android.os.Process.myPid());
+            } finally {
+                out.close();
+            }
+            WritableMap result = Arguments.createMap();
+            result.putString("path", file.getAbsolutePath());
+            result.putInt("spans", spans);
+            result.putDouble("dropped", PaymentTrace.getDroppedCount());
+            promise.resolve(result);
+        } catch (IOException e) {
+            AlipayLog.e("写入跟踪文件失败: {}", e.getMessage());
+            promise.reject("ERR_TRACE_WRITE_FAILED", "写入跟踪文件失败: " + e.getMessage());
+        }
     }
 
     /**
      * 获取调试信息，包括设备信息、支付宝SDK版本等
+     * 设备和应用信息只在首次调用时计算，之后只重新采集支付状态等可变字段
      * 
      * @param promise 回调Promise
      */
     @ReactMethod
     public void getDebugInfo(final Promise promise) {
+        withAlipayProbe(promise, RESOLVE_DEBUG_INFO);
+    }
+    
+    private void resolveDebugInfo(Promise promise) {
         try {
-            final Activity currentActivity = getCurrentActivity();
-            
-            // 创建调试信息对象
+            long version = debugInfoSnapshot.update(collectDebugInfo());
             WritableMap debugInfo = Arguments.createMap();
+            for (Map.Entry<String, Object> entry : debugInfoSnapshot.values().entrySet()) {
+                putDebugValue(debugInfo, entry.getKey(), entry.getValue());
+            }
+            debugInfo.putDouble("snapshotVersion", version);
+            promise.resolve(debugInfo);
+        } catch (Exception e) {
+            promise.reject("GET_DEBUG_INFO_ERROR", "获取调试信息失败: " + e.getMessage());
+        }
+    }
+    
+    /**
+     * 增量获取调试信息，只返回指定版本之后变化过的字段
+     * 
+     * @param sinceVersion 上次getDebugInfo/getDebugInfoDelta返回的snapshotVersion，传0返回全部字段
+     * @param promise 回调Promise，返回 { snapshotVersion, changed, removed }
+     */
+    @ReactMethod
+    public void getDebugInfoDelta(final double sinceVersion, final Promise promise) {
+        withAlipayProbe(promise, new ResolveDebugInfoDelta((long) sinceVersion));
+    }
+    
+    private void resolveDebugInfoDelta(long sinceVersion, Promise promise) {
+        try {
+            debugInfoSnapshot.update(collectDebugInfo());
+            DebugInfoSnapshot.Delta delta = debugInfoSnapshot.since(sinceVersion);
+            WritableMap changed = Arguments.createMap();
+            for (Map.Entry<String, Object> entry : delta.changed.entrySet()) {
+                putDebugValue(changed, entry.getKey(), entry.getValue());
+            }
+            WritableArray removed = Arguments.createArray();
+            for (String key : delta.removed) {
+                removed.pushString(key);
+            }
+            WritableMap result = Arguments.createMap();
+            result.putDouble("snapshotVersion", delta.version);
+            result.putMap("changed", changed);
+            result.putArray("removed", removed);
+            promise.resolve(result);
+        } catch (Exception e) {
+            promise.reject("GET_DEBUG_INFO_ERROR", "获取调试信息失败: " + e.getMessage());
+        }
+    }
+    
+    /**
+     * 内部方法：版本探测结果已缓存时直接执行，否则先在支付线程中探测
+     * 探测失败不影响调试信息的返回
+     */
+    private void withAlipayProbe(Promise promise, ProbeFollowUp then) {
+        Activity currentActivity = getCurrentActivity();
+        if (alipayAppProbe.peek() != null || currentActivity == null) {
+            then.run(this, promise);
+            return;
+        }
+        String requestId = registerWorkerPromise(promise);
+        if (requestId != null) {
+            alipayAppProbe.probe(currentActivity, new ProbedThen(selfRef, requestId, then));
+        }
+    }
+    
+    /**
+     * 内部方法：登记交给工作线程回调的Promise
+     * 
+     * @return 登记的id，模块已销毁时直接reject并返回null
+     */
+    private String registerWorkerPromise(Promise promise) {
+        String requestId = "req_" + requestSequence.incrementAndGet();
+        if (!workerPromises.register(requestId, promise)) {
+            promise.reject("ERR_MODULE_INVALIDATED", "模块已销毁");
+            return null;
+        }
+        return requestId;
+    }
+    
+    private void rejectWorkerPromise(String requestId, String code, String message) {
+        Promise promise = workerPromises.take(requestId);
+        if (promise != null) {
+            promise.reject(code, message);
+        }
+    }
+    
+    /**
+     * 内部方法：采集当前全部调试字段
+     */
+    private Map<String, Object> collectDebugInfo() {
+        Map<String, Object> info = new LinkedHashMap<>(getStaticDebugInfo());
+        
+        // 支付宝状态信息
+        info.put("sandboxMode", isSandboxMode);
+        PaymentStateMachine.Snapshot state = payments.paymentState.snapshot();
+        info.put("paymentInProgress", !state.isIdle());
+        info.put("lastPaymentTime", (double) state.startTime);
+        info.put("paymentState", state.state.name());
+        info.put("paymentId", state.paymentId);
+        info.put("sdkCallsInFlight", (double) payments.sdkCalls.size());
+        info.put("duplicateResultsSuppressed",
+                (double) (payments.resultCoordinator.getDuplicateCount()
+                        + payments.resultCoordinator.getUncorrelatedCount()));
+        SdkPrewarmer.Result prewarmResult = sdkPrewarmer.getResult();
+        info.put("fakeGateway", payments.getGateway() instanceof FakeAlipayGateway);
+        info.put("sdkPrewarmed", prewarmResult != null);
+        info.put("prewarmDurationMs", prewarmResult != null ? prewarmResult.durationNanos / 1_000_000.0 : null);
+        
+        // 支付宝SDK相关信息，只读取缓存
+        AlipayAppProbe.Result probe = alipayAppProbe.peek();
+        if (probe != null) {
+            info.put("alipayInstalled", probe.installed);
+            info.put("alipayVersion", probe.version != null ? probe.version : "未安装");
+        }
+        info.put("alipayProbeCacheHits", (double) alipayAppProbe.getHitCount());
+        info.put("alipayProbeCount", (double) alipayAppProbe.getProbeCount());
+        return info;
+    }
+    
+    /**
+     * 内部方法：设备和应用信息在进程内不会变化，首次使用时计算一次
+     */
+    private Map<String, Object> getStaticDebugInfo() {
+        Map<String, Object> info = staticDebugInfo;
+        if (info != null) {
+            return info;
+        }
+        info = new LinkedHashMap<>();
+        
+        // 设备信息
+        info.put("device", android.os.Build.DEVICE);
+        info.put("model", android.os.Build.MODEL);
+        info.put("manufacturer", android.os.Build.MANUFACTURER);
+        info.put("androidVersion", android.os.Build.VERSION.RELEASE);
+        info.put("androidSDKInt", android.os.Build.VERSION.SDK_INT);
+        
+        // 应用信息，只查询一次PackageInfo
+        try {
+            String packageName = reactContext.getPackageName();
+            PackageInfo packageInfo = reactContext.getPackageManager().getPackageInfo(packageName, 0);
+            int appVersionCode;
+            if (android.os.Build.VERSION.SDK_INT >= android.os.Build.VERSION_CODES.P) {
+                appVersionCode = (int) packageInfo.getLongVersionCode();
+            } else {
+                appVersionCode = packageInfo.versionCode;
+            }
             
-            // 设备信息
-            debugInfo.putString("device", android.os.Build.DEVICE);
-            debugInfo.putString("model", android.os.Build.MODEL);
-            debugInfo.putString("manufacturer", android.os.Build.MANUFACTURER);
-            debugInfo.putString("androidVersion", android.os.Build.VERSION.RELEASE);
-            debugInfo.putInt("androidSDKInt", android.os.Build.VERSION.SDK_INT);
-            
-            // 应用信息
-            if (currentActivity != null) {
-                try {
-                    String packageName = currentActivity.getPackageName();
-                    String appVersionName = currentActivity.getPackageManager()
-                            .getPackageInfo(packageName, 0).versionName;
-                    int appVersionCode;
-                    if (android.os.Build.VERSION.SDK_INT >= android.os.Build.VERSION_CODES.P) {
-                        appVersionCode = (int) currentActivity.getPackageManager()
-                                .getPackageInfo(packageName, 0).getLongVersionCode();
-                    } else {
-                        appVersionCode = currentActivity.getPackageManager()
-                                .getPackageInfo(packageName, 0).versionCode;
-                    }
-                    
-                    debugInfo.putString("packageName", packageName);
-                    debugInfo.putString("appVersionName", appVersionName);
-                    debugInfo.putInt("appVersionCode", appVersionCode);
-                } catch (Exception e) {
-                    debugInfo.putString("appInfoError", e.getMessage());
+            info.put("packageName", packageName);
+            info.put("appVersionName", packageInfo.versionName);
+            info.put("appVersionCode", appVersionCode);
+        } catch (Exception e) {
+            info.put("appInfoError", e.getMessage());
+        }
+        
+        info = Collections.unmodifiableMap(info);
+        staticDebugInfo = info;
+        return info;
+    }
+    
+    /**
+     * 内部方法：按类型写入调试字段，Integer保持为int，其他数值写为double
+     */
+    private static void putDebugValue(WritableMap map, String key, Object value) {
+        if (value instanceof String) {
+            map.putString(key, (String) value);
+        } else if (value instanceof Boolean) {
+            map.putBoolean(key, (Boolean) value);
+        } else if (value instanceof Integer) {
+            map.putInt(key, (Integer) value);
+        } else if (value instanceof Number) {
+            map.putDouble(key, ((Number) value).doubleValue());
+        }
+    }
+    
+    /**
+     * 内部方法：读取是否配置了初始化后自动预热
+     */
+    private static boolean isAutoPrewarmEnabled(ReactApplicationContext context) {
+        try {
+            ApplicationInfo info = context.getPackageManager()
+                    .getApplicationInfo(context.getPackageName(), PackageManager.GET_META_DATA);
+            return info.metaData != null && info.metaData.getBoolean(META_AUTO_PREWARM, false);
+        } catch (Exception e) {
+            return false;
+        }
+    }
+    
+    /**
+     * 内部方法：在主线程第一次空闲时预热SDK，避免与应用启动争抢主线程
+     * 预热本身在支付线程中执行，这里只负责在空闲时提交
+     */
+    private void scheduleIdlePrewarm() {
+        MAIN_THREAD.post(selfRef, INSTALL_IDLE_PREWARM);
+    }
+    
+    // 静态实例，消息队列中只弱引用模块
+    private static final MainThreadDispatcher.Action<AlipayModule> INSTALL_IDLE_PREWARM =
+            new MainThreadDispatcher.Action<AlipayModule>() {
+                @Override
+                public void run(AlipayModule module) {
+                    final WeakReference<AlipayModule> moduleRef = module.selfRef;
+                    Looper.myQueue().addIdleHandler(new MessageQueue.IdleHandler() {
+                        @Override
+                        public boolean queueIdle() {
+                            AlipayModule current = moduleRef.get();
+                            if (current != null) {
+                                current.prewarmOnIdle();
+                            }
+                            return false;
+                        }
+                    });
                 }
+            };
+    
+    private void prewarmOnIdle() {
+        sdkPrewarmer.prewarm(getCurrentActivity(), isSandboxMode, new IdlePrewarmed(selfRef));
+    }
+    
+    /**
+     * 内部方法：恢复真实SDK，放行模拟SDK中阻塞的调用
+     */
+    private void restoreSdkGateway() {
+        releaseFakeGateway(payments.setGateway(AlipaySdkGateway.INSTANCE));
+    }
+    
+    private static void releaseFakeGateway(AlipayGateway<Activity> gateway) {
+        if (gateway instanceof FakeAlipayGateway) {
+            ((FakeAlipayGateway<Activity>) gateway).releaseDropped();
+        }
+    }
+    
+    private static double readDouble(ReadableMap options, String key, double defaultValue) {
+        return options.hasKey(key) && !options.isNull(key) ? options.getDouble(key) : defaultValue;
+    }
+    
+    /**
+     * 内部方法：读取选项中的timeoutMs，缺省或不合法时返回0（不超时）
+     */
+    private static long readTimeoutMillis(ReadableMap options) {
+        if (options == null || !options.hasKey("timeoutMs") || options.isNull("timeoutMs")) {
+            return 0;
+        }
+        double timeoutMs = options.getDouble("timeoutMs");
+        return timeoutMs > 0 ? (long) timeoutMs : 0;
+    }
+    
+    /**
+     * 排队中的Activity可能因旋转等已被销毁，此时改用模块当前的Activity
+     */
+    private static Activity resolveActivity(WeakReference<Activity> activityRef,
+                                            WeakReference<AlipayModule> moduleRef) {
+        Activity activity = activityRef.get();
+        if (activity == null || activity.isFinishing()) {
+            AlipayModule module = moduleRef.get();
+            activity = module != null ? module.getCurrentActivity() : null;
+        }
+        return activity;
+    }
+    
+    /**
+     * 在拦截线程中交给SDK判断H5链接，被拦截时等待SDK回调支付结果
+     */
+    private static final class H5InterceptJob implements Runnable {
+        private final WeakReference<AlipayModule> moduleRef;
+        private final WeakReference<Activity> activityRef;
+        private final H5InterceptCache interceptCache;
+        private final AlipayGateway<Activity> gateway;
+        private final String interceptId;
+        private final String url;
+        private final String cacheKey;
+        
+        H5InterceptJob(AlipayModule module, Activity activity, String interceptId, String url, String cacheKey) {
+            this.moduleRef = module.selfRef;
+            this.activityRef = new WeakReference<>(activity);
+            this.interceptCache = module.h5InterceptCache;
+            this.gateway = module.payments.getGateway();
+            this.interceptId = interceptId;
+            this.url = url;
+            this.cacheKey = cacheKey;
+        }
+        
+        @Override
+        public void run() {
+            Activity activity = resolveActivity(activityRef, moduleRef);
+            if (activity == null) {
+                MAIN_THREAD.post(moduleRef, new RejectH5Intercept(interceptId, "ERR_ACTIVITY_NOT_FOUND",
+                        "Activity已销毁，未能判断链接"));
+                return;
             }
-            
-            // 支付宝状态信息
-            debugInfo.putBoolean("sandboxMode", isSandboxMode);
-            debugInfo.putBoolean("paymentInProgress", isPaymentInProgress);
-            debugInfo.putDouble("lastPaymentTime", lastPaymentTime);
-            
-            // 支付宝SDK相关信息
-            if (currentActivity != null) {
+            boolean intercepted;
+            try {
+                long span = PaymentTrace.begin("h5.intercept");
                 try {
-                    PayTask payTask = new PayTask(currentActivity);
-                    String version = payTask.getVersion();
-                    boolean isAlipayInstalled = version != null && !version.isEmpty();
-                    
-                    debugInfo.putBoolean("alipayInstalled", isAlipayInstalled);
-                    debugInfo.putString("alipayVersion", version != null ? version : "未安装");
-                } catch (Exception e) {
-                    debugInfo.putString("alipayError", e.getMessage());
+                    intercepted = gateway.interceptH5Url(activity, url, new AlipayGateway.H5Callback() {
+                        @Override
+                        public void onResult(String resultCode, String returnUrl) {
+                            MAIN_THREAD.post(moduleRef,
+                                    new DeliverH5Intercept(interceptId, true, resultCode, returnUrl));
+                        }
+                    });
+                } finally {
+                    PaymentTrace.end(span, "h5.intercept", interceptId);
                 }
+            } catch (Exception e) {
+                AlipayLog.e("H5链接拦截异常: {}", e.getMessage());
+                MAIN_THREAD.post(moduleRef, new RejectH5Intercept(interceptId, "ERR_H5_INTERCEPT_FAILED",
+                        "H5链接拦截异常: " + e.getMessage()));
+                return;
+            }
+            interceptCache.record(cacheKey, intercepted);
+            if (!intercepted) {
+                MAIN_THREAD.post(moduleRef, new DeliverH5Intercept(interceptId, false, null, null));
             }
-            
-            promise.resolve(debugInfo);
-        } catch (Exception e) {
-            promise.reject("GET_DEBUG_INFO_ERROR", "获取调试信息失败: " + e.getMessage());
         }
     }
-
+    
+    private static final class DeliverH5Intercept implements MainThreadDispatcher.Action<AlipayModule> {
+        private final String interceptId;
+        private final boolean intercepted;
+        private final String resultCode;
+        private final String returnUrl;
+        
+        DeliverH5Intercept(String interceptId, boolean intercepted, String resultCode, String returnUrl) {
+            this.interceptId = interceptId;
+            this.intercepted = intercepted;
+            this.resultCode = resultCode;
+            this.returnUrl = returnUrl;
+        }
+        
+        @Override
+        public void run(AlipayModule module) {
+            module.completeH5Intercept(interceptId, intercepted, resultCode, returnUrl);
+        }
+    }
+    
+    private static final class RejectH5Intercept implements MainThreadDispatcher.Action<AlipayModule> {
+        private final String interceptId;
+        private final String code;
+        private final String message;
+        
+        RejectH5Intercept(String interceptId, String code, String message) {
+            this.interceptId = interceptId;
+            this.code = code;
+            this.message = message;
+        }
+        
+        @Override
+        public void run(AlipayModule module) {
+            module.rejectH5Intercept(interceptId, code, message);
+        }
+    }
+    
+    /**
+     * 超时回调：从调度线程切回主线程执行
+     */
+    private static final class PostToModule implements Runnable {
+        private final WeakReference<AlipayModule> moduleRef;
+        private final MainThreadDispatcher.Action<AlipayModule> action;
+        
+        PostToModule(WeakReference<AlipayModule> moduleRef, MainThreadDispatcher.Action<AlipayModule> action) {
+            this.moduleRef = moduleRef;
+            this.action = action;
+        }
+        
+        @Override
+        public void run() {
+            MAIN_THREAD.post(moduleRef, action);
+        }
+    }
+    
+    private static final class H5InterceptRejected implements PaymentExecutor.RejectionListener {
+        private final WeakReference<AlipayModule> moduleRef;
+        private final String interceptId;
+        
+        H5InterceptRejected(WeakReference<AlipayModule> moduleRef, String interceptId) {
+            this.moduleRef = moduleRef;
+            this.interceptId = interceptId;
+        }
+        
+        @Override
+        public void onRejected(String reason) {
+            AlipayModule module = moduleRef.get();
+            if (module != null) {
+                AlipayLog.w("链接拦截任务无法执行，直接放行: {}", reason);
+                module.passH5Intercept(interceptId);
+            }
+        }
+    }
+    
     /**
-     * 内部方法：重置支付状态所有变量
-     * 在支付完成/错误/取消等所有情况后都会调用
+     * 版本探测、SDK预热和支付日志在工作线程中的回调：只弱引用模块，Promise留在登记表中，回调时按id取出
+     * 模块销毁后Promise已在invalidate中失败，迟到的回调直接忽略，也不会阻止模块及其Activity被回收
      */
-    private void resetPaymentStateInternal() {
-        isPaymentInProgress = false;
-        lastPaymentTime = 0;
-        Log.d(TAG, "支付状态已重置");
+    private abstract static class WorkerCallback {
+        final WeakReference<AlipayModule> moduleRef;
+        final String requestId;
+        
+        WorkerCallback(WeakReference<AlipayModule> moduleRef, String requestId) {
+            this.moduleRef = moduleRef;
+            this.requestId = requestId;
+        }
+        
+        /**
+         * @return 模块已销毁或Promise已被取出时返回null
+         */
+        final Promise take() {
+            AlipayModule module = moduleRef.get();
+            return module != null ? module.workerPromises.take(requestId) : null;
+        }
+    }
+    
+    private static final class InstalledProbed extends WorkerCallback implements AlipayAppProbe.Callback {
+        InstalledProbed(WeakReference<AlipayModule> moduleRef, String requestId) {
+            super(moduleRef, requestId);
+        }
+        
+        @Override
+        public void onResult(AlipayAppProbe.Result result) {
+            Promise promise = take();
+            if (promise != null) {
+                promise.resolve(result.installed);
+            }
+        }
+        
+        @Override
+        public void onError(String code, String message) {
+            Promise promise = take();
+            if (promise != null) {
+                promise.resolve(false);
+            }
+        }
+    }
+    
+    private static final class VersionProbed extends WorkerCallback implements AlipayAppProbe.Callback {
+        VersionProbed(WeakReference<AlipayModule> moduleRef, String requestId) {
+            super(moduleRef, requestId);
+        }
+        
+        @Override
+        public void onResult(AlipayAppProbe.Result result) {
+            Promise promise = take();
+            if (promise != null) {
+                promise.resolve(result.version);
+            }
+        }
+        
+        @Override
+        public void onError(String code, String message) {
+            Promise promise = take();
+            if (promise != null) {
+                promise.reject("GET_VERSION_ERROR", message);
+            }
+        }
+    }
+    
+    /**
+     * 版本探测完成后执行的操作，执行时才取得模块和Promise
+     */
+    private interface ProbeFollowUp {
+        void run(AlipayModule module, Promise promise);
+    }
+    
+    private static final ProbeFollowUp RESOLVE_DEBUG_INFO = new ProbeFollowUp() {
+        @Override
+        public void run(AlipayModule module, Promise promise) {
+            module.resolveDebugInfo(promise);
+        }
+    };
+    
+    private static final class ResolveDebugInfoDelta implements ProbeFollowUp {
+        private final long sinceVersion;
+        
+        ResolveDebugInfoDelta(long sinceVersion) {
+            this.sinceVersion = sinceVersion;
+        }
+        
+        @Override
+        public void run(AlipayModule module, Promise promise) {
+            module.resolveDebugInfoDelta(sinceVersion, promise);
+        }
+    }
+    
+    private static final class ProbedThen extends WorkerCallback implements AlipayAppProbe.Callback {
+        private final ProbeFollowUp then;
+        
+        ProbedThen(WeakReference<AlipayModule> moduleRef, String requestId, ProbeFollowUp then) {
+            super(moduleRef, requestId);
+            this.then = then;
+        }
+        
+        @Override
+        public void onResult(AlipayAppProbe.Result result) {
+            runThen();
+        }
+        
+        @Override
+        public void onError(String code, String message) {
+            runThen();
+        }
+        
+        private void runThen() {
+            AlipayModule module = moduleRef.get();
+            Promise promise = module != null ? module.workerPromises.take(requestId) : null;
+            if (promise != null) {
+                then.run(module, promise);
+            }
+        }
+    }
+    
+    private static final class Prewarmed extends WorkerCallback implements SdkPrewarmer.Callback {
+        Prewarmed(WeakReference<AlipayModule> moduleRef, String requestId) {
+            super(moduleRef, requestId);
+        }
+        
+        @Override
+        public void onComplete(SdkPrewarmer.Result result, boolean cached) {
+            AlipayModule module = moduleRef.get();
+            if (module == null) {
+                return;
+            }
+            module.alipayAppProbe.seed(result.alipayVersion);
+            Promise promise = module.workerPromises.take(requestId);
+            if (promise != null) {
+                WritableMap map = Arguments.createMap();
+                map.putDouble("durationMs", result.durationNanos / 1_000_000.0);
+                map.putString("alipayVersion", result.alipayVersion);
+                map.putBoolean("payTaskCreated", result.payTaskCreated);
+                map.putBoolean("cached", cached);
+                promise.resolve(map);
+            }
+        }
+        
+        @Override
+        public void onError(String code, String message) {
+            Promise promise = take();
+            if (promise != null) {
+                promise.reject(code, message);
+            }
+        }
+    }
+    
+    /**
+     * 空闲时自动预热的回调，没有等待的Promise
+     */
+    private static final class IdlePrewarmed implements SdkPrewarmer.Callback {
+        private final WeakReference<AlipayModule> moduleRef;
+        
+        IdlePrewarmed(WeakReference<AlipayModule> moduleRef) {
+            this.moduleRef = moduleRef;
+        }
+        
+        @Override
+        public void onComplete(SdkPrewarmer.Result result, boolean cached) {
+            AlipayModule module = moduleRef.get();
+            if (module != null) {
+                module.alipayAppProbe.seed(result.alipayVersion);
+            }
+            AlipayLog.d("自动预热完成: payTaskCreated={}", result.payTaskCreated);
+        }
+        
+        @Override
+        public void onError(String code, String message) {
+            AlipayLog.w("自动预热失败: {}", message);
+        }
+    }
+    
+    private static final class PendingPaymentsRead extends WorkerCallback
+            implements PaymentJournal.Callback<List<PaymentJournal.PendingPayment>> {
+        PendingPaymentsRead(WeakReference<AlipayModule> moduleRef, String requestId) {
+            super(moduleRef, requestId);
+        }
+        
+        @Override
+        public void onResult(List<PaymentJournal.PendingPayment> payments) {
+            Promise promise = take();
+            if (promise == null) {
+                return;
+            }
+            WritableArray array = Arguments.createArray();
+            for (PaymentJournal.PendingPayment payment : payments) {
+                WritableMap map = Arguments.createMap();
+                map.putString("paymentId", payment.paymentId);
+                if (!payment.outTradeNo.isEmpty()) {
+                    map.putString("outTradeNo", payment.outTradeNo);
+                }
+                map.putDouble("launchedAt", payment.launchedAtMillis);
+                map.putBoolean("previousSession", payment.previousSession);
+                array.pushMap(map);
+            }
+            promise.resolve(array);
+        }
+    }
+    
+    private static final class PaymentsAcknowledged extends WorkerCallback
+            implements PaymentJournal.Callback<Integer> {
+        PaymentsAcknowledged(WeakReference<AlipayModule> moduleRef, String requestId) {
+            super(moduleRef, requestId);
+        }
+        
+        @Override
+        public void onResult(Integer removed) {
+            Promise promise = take();
+            if (promise != null) {
+                promise.resolve(removed);
+            }
+        }
     }
-} 
\ No newline at end of file
+}
@@ -1,28 +1,53 @@
 package com.inkbottle.alipayrn;
 
 import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
 
-import com.facebook.react.ReactPackage;
+import com.facebook.react.TurboReactPackage;
 import com.facebook.react.bridge.NativeModule;
 import com.facebook.react.bridge.ReactApplicationContext;
-import com.facebook.react.uimanager.ViewManager;
+import com.facebook.react.module.model.ReactModuleInfo;
+import com.facebook.react.module.model.ReactModuleInfoProvider;
 
-import java.util.ArrayList;
-import java.util.Collections;
-import java.util.List;
+import java.util.HashMap;
+import java.util.Map;
 
-public class AlipayPackage implements ReactPackage {
-    @NonNull
+/**
+ * 支付宝模块包
+ * 基于TurboReactPackage，新架构下以TurboModule注册，旧架构下按原有桥接模块注册。
+ * 模块在JS首次访问时才创建，应用启动时不会加载AlipayModule及支付宝SDK的类。
+ */
+public class AlipayPackage extends TurboReactPackage {
+    // 使用字符串常量而不是AlipayModule.class，避免注册模块信息时提前加载AlipayModule
+    private static final String MODULE_NAME = "AlipayModule";
+    private static final String MODULE_CLASS_NAME = "com.inkbottle.alipayrn.AlipayModule";
+
+    @Nullable
     @Override
-    public List<NativeModule> createNativeModules(@NonNull ReactApplicationContext reactContext) {
-        List<NativeModule> modules = new ArrayList<>();
-        modules.add(new AlipayModule(reactContext));
-        return modules;
+    public NativeModule getModule(@NonNull String name, @NonNull ReactApplicationContext reactContext) {
+        if (MODULE_NAME.equals(name)) {
+            return new AlipayModule(reactContext);
+        }
+        return null;
     }
 
-    @NonNull
     @Override
-    public List<ViewManager> createViewManagers(@NonNull ReactApplicationContext reactContext) {
-        return Collections.emptyList();
+    public ReactModuleInfoProvider getReactModuleInfoProvider() {
+        return new ReactModuleInfoProvider() {
+            @Override
+            public Map<String, ReactModuleInfo> getReactModuleInfos() {
+                final Map<String, ReactModuleInfo> moduleInfos = new HashMap<>();
+                moduleInfos.put(MODULE_NAME, new ReactModuleInfo(
+                        MODULE_NAME,
+                        MODULE_CLASS_NAME,
+                        false, // canOverrideExistingModule
+                        false, // needsEagerInit
+                        true,  // hasConstants
+                        false, // isCxxModule
+                        BuildConfig.IS_NEW_ARCHITECTURE_ENABLED // isTurboModule
+                ));
+                return moduleInfos;
+            }
+        };
     }
-} 
\ No newline at end of file
+}
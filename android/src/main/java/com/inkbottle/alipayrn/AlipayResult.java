@@ -0,0 +1,110 @@
+package com.inkbottle.alipayrn;
+
+/**
+ * 解析后的支付结果
+ * 状态码以int保存，result中的交易字段在解析时一并提取，避免JS层再解析一次JSON
+ */
+final class AlipayResult {
+    static final int STATUS_SUCCESS = 9000;       // 支付成功
+    static final int STATUS_PROCESSING = 8000;    // 正在处理中
+    static final int STATUS_FAILED = 4000;        // 支付失败
+    static final int STATUS_REPEAT_REQUEST = 5000; // 重复请求
+    static final int STATUS_CANCEL = 6001;        // 用户取消
+    static final int STATUS_NETWORK_ERROR = 6002; // 网络连接出错
+    static final int STATUS_UNKNOWN = 6004;       // 未知错误
+
+    final int resultStatus;
+    final String memo;
+    final String result;       // 原始的result字段，通常为alipay_trade_app_pay_response的JSON
+    final String outTradeNo;   // 商户订单号，未解析到时为null
+    final String tradeNo;      // 支付宝交易号，未解析到时为null
+    final String totalAmount;  // 订单金额，未解析到时为null
+
+    AlipayResult(int resultStatus, String memo, String result,
+                 String outTradeNo, String tradeNo, String totalAmount) {
+        this.resultStatus = resultStatus;
+        this.memo = memo != null ? memo : "";
+        this.result = result != null ? result : "";
+        this.outTradeNo = outTradeNo;
+        this.tradeNo = tradeNo;
+        this.totalAmount = totalAmount;
+    }
+
+    /**
+     * 构造不含交易数据的错误结果
+     */
+    static AlipayResult error(int resultStatus, String memo) {
+        return new AlipayResult(resultStatus, memo, "", null, null, null);
+    }
+
+    /**
+     * 状态码的字符串形式，与JS层及getConstants()中的常量保持一致
+     * 常见状态码返回常量字符串，不产生新的分配
+     */
+    String statusString() {
+        switch (resultStatus) {
+            case STATUS_SUCCESS:
+                return "9000";
+            case STATUS_PROCESSING:
+                return "8000";
+            case STATUS_FAILED:
+                return "4000";
+            case STATUS_REPEAT_REQUEST:
+                return "5000";
+            case STATUS_CANCEL:
+                return "6001";
+            case STATUS_NETWORK_ERROR:
+                return "6002";
+            case STATUS_UNKNOWN:
+                return "6004";
+            default:
+                return Integer.toString(resultStatus);
+        }
+    }
+
+    /**
+     * 状态名称，与getConstants()中的常量名一致，未知的状态码归为UNKNOWN
+     */
+    String statusName() {
+        switch (resultStatus) {
+            case STATUS_SUCCESS:
+                return "SUCCESS";
+            case STATUS_PROCESSING:
+                return "PROCESSING";
+            case STATUS_FAILED:
+                return "FAILED";
+            case STATUS_REPEAT_REQUEST:
+                return "REPEAT_REQUEST";
+            case STATUS_CANCEL:
+                return "CANCEL";
+            case STATUS_NETWORK_ERROR:
+                return "NETWORK_ERROR";
+            default:
+                return "UNKNOWN";
+        }
+    }
+
+    /**
+     * 面向用户的结果提示
+     *
+     * @param chinese 是否使用中文，否则使用英文
+     */
+    String message(boolean chinese) {
+        switch (resultStatus) {
+            case STATUS_SUCCESS:
+                return chinese ? "支付成功" : "Payment succeeded";
+            case STATUS_PROCESSING:
+                return chinese ? "支付结果确认中" : "Payment is being processed";
+            case STATUS_FAILED:
+                return chinese ? "支付失败" : "Payment failed";
+            case STATUS_REPEAT_REQUEST:
+                return chinese ? "重复请求" : "Duplicate request";
+            case STATUS_CANCEL:
+                return chinese ? "用户取消支付" : "Payment cancelled";
+            case STATUS_NETWORK_ERROR:
+                return chinese ? "网络连接错误" : "Network error";
+            default:
+                return chinese ? "未知错误" : "Unknown error";
+        }
+    }
+}
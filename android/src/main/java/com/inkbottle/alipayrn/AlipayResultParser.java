@@ -0,0 +1,352 @@
+package com.inkbottle.alipayrn;
+
+import java.util.Map;
+
+/**
+ * 支付宝结果解析器
+ * 单次遍历解析 "resultStatus={9000};memo={...};result={...}" 格式的结果字符串，
+ * 以及result中 alipay_trade_app_pay_response 的交易字段，不依赖Android或JSON库。
+ */
+final class AlipayResultParser {
+    private static final String KEY_RESULT_STATUS = "resultStatus";
+    private static final String KEY_MEMO = "memo";
+    private static final String KEY_RESULT = "result";
+    private static final String RESPONSE_KEY = "\"alipay_trade_app_pay_response\"";
+
+    private AlipayResultParser() {
+    }
+
+    /**
+     * 解析payV2返回的Map
+     */
+    static AlipayResult fromMap(Map<String, String> raw) {
+        if (raw == null) {
+            return AlipayResult.error(AlipayResult.STATUS_UNKNOWN, "支付宝未返回结果");
+        }
+        return build(raw.get(KEY_RESULT_STATUS), raw.get(KEY_MEMO), raw.get(KEY_RESULT));
+    }
+
+    /**
+     * 解析onActivityResult中的字段
+     * resultStatus为空时（旧版本SDK），从result中的 "key={value};" 格式提取
+     */
+    static AlipayResult fromIntentExtras(String resultStatus, String memo, String resultData) {
+        if (resultStatus == null && resultData != null) {
+            String[] fields = new String[3];
+            if (parseKeyValueFormat(resultData, fields)) {
+                return build(fields[0], memo != null ? memo : fields[1], fields[2]);
+            }
+        }
+        return build(resultStatus, memo, resultData);
+    }
+
+    /**
+     * 解析完整的 "resultStatus={...};memo={...};result={...}" 字符串
+     */
+    static AlipayResult fromResultString(String raw) {
+        String[] fields = new String[3];
+        if (raw == null || !parseKeyValueFormat(raw, fields)) {
+            return AlipayResult.error(AlipayResult.STATUS_UNKNOWN, "无法解析支付结果");
+        }
+        return build(fields[0], fields[1], fields[2]);
+    }
+
+    private static AlipayResult build(String status, String memo, String result) {
+        int code = parseStatus(status);
+        String outTradeNo = null;
+        String tradeNo = null;
+        String totalAmount = null;
+        if (result != null && result.length() > 0) {
+            String[] trade = new String[3];
+            parseTradeResponse(result, trade);
+            outTradeNo = trade[0];
+            tradeNo = trade[1];
+            totalAmount = trade[2];
+        }
+        return new AlipayResult(code, memo, result, outTradeNo, tradeNo, totalAmount);
+    }
+
+    /**
+     * 将状态码字符串转为int，不合法时视为未知错误
+     */
+    static int parseStatus(String status) {
+        if (status == null) {
+            return AlipayResult.STATUS_UNKNOWN;
+        }
+        int len = status.length();
+        if (len == 0 || len > 9) {
+            return AlipayResult.STATUS_UNKNOWN;
+        }
+        int code = 0;
+        for (int i = 0; i < len; i++) {
+            char c = status.charAt(i);
+            if (c < '0' || c > '9') {
+                return AlipayResult.STATUS_UNKNOWN;
+            }
+            code = code * 10 + (c - '0');
+        }
+        return code;
+    }
+
+    /**
+     * 单次遍历解析 "key={value};key={value}" 格式
+     * value中可能包含花括号和分号（例如JSON），因此只有在 "}" 之后紧跟 ";key={" 或字符串结尾时才视为结束
+     *
+     * @param out 长度为3的数组，依次写入resultStatus、memo、result
+     * @return 是否至少解析出一个字段
+     */
+    static boolean parseKeyValueFormat(String s, String[] out) {
+        int len = s.length();
+        int pos = 0;
+        boolean found = false;
+        while (pos < len) {
+            int keyEnd = keyEndAt(s, pos);
+            if (keyEnd < 0) {
+                return found;
+            }
+            int valueStart = keyEnd + 2; // 跳过 "={"
+            int valueEnd = -1;
+            for (int j = valueStart; j < len; j++) {
+                if (s.charAt(j) == '}' && (j == len - 1
+                        || (s.charAt(j + 1) == ';' && keyEndAt(s, j + 2) >= 0))) {
+                    valueEnd = j;
+                    break;
+                }
+            }
+            if (valueEnd < 0) {
+                return found;
+            }
+            int slot = slotOf(s, pos, keyEnd);
+            if (slot >= 0) {
+                out[slot] = s.substring(valueStart, valueEnd);
+                found = true;
+            }
+            pos = valueEnd + 2; // 跳过 "};"
+        }
+        return found;
+    }
+
+    /**
+     * 从pos开始匹配一个由字母、数字或下划线组成且后跟 "={" 的key
+     *
+     * @return key结束位置（即 '=' 的下标），不匹配时返回-1
+     */
+    private static int keyEndAt(String s, int pos) {
+        int len = s.length();
+        int i = pos;
+        while (i < len) {
+            char c = s.charAt(i);
+            if ((c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9') || c == '_') {
+                i++;
+            } else {
+                break;
+            }
+        }
+        if (i == pos || i + 1 >= len || s.charAt(i) != '=' || s.charAt(i + 1) != '{') {
+            return -1;
+        }
+        return i;
+    }
+
+    private static int slotOf(String s, int start, int end) {
+        int len = end - start;
+        if (len == KEY_RESULT_STATUS.length() && s.startsWith(KEY_RESULT_STATUS, start)) {
+            return 0;
+        }
+        if (len == KEY_MEMO.length() && s.startsWith(KEY_MEMO, start)) {
+            return 1;
+        }
+        if (len == KEY_RESULT.length() && s.startsWith(KEY_RESULT, start)) {
+            return 2;
+        }
+        return -1;
+    }
+
+    /**
+     * 从result的JSON中提取 alipay_trade_app_pay_response 下的交易字段
+     * 只扫描该对象的第一层，字符串值支持转义，嵌套对象和数组会被跳过
+     *
+     * @param out 长度为3的数组，依次写入out_trade_no、trade_no、total_amount
+     */
+    static void parseTradeResponse(String json, String[] out) {
+        int keyPos = json.indexOf(RESPONSE_KEY);
+        if (keyPos < 0) {
+            return;
+        }
+        int len = json.length();
+        int i = skipWhitespace(json, keyPos + RESPONSE_KEY.length());
+        if (i >= len || json.charAt(i) != ':') {
+            return;
+        }
+        i = skipWhitespace(json, i + 1);
+        if (i >= len || json.charAt(i) != '{') {
+            return;
+        }
+        i++;
+        while (i < len) {
+            i = skipWhitespace(json, i);
+            if (i >= len || json.charAt(i) == '}') {
+                return;
+            }
+            if (json.charAt(i) == ',') {
+                i++;
+                continue;
+            }
+            if (json.charAt(i) != '"') {
+                return;
+            }
+            int keyStart = i + 1;
+            int keyEnd = stringEnd(json, keyStart);
+            if (keyEnd < 0) {
+                return;
+            }
+            i = skipWhitespace(json, keyEnd + 1);
+            if (i >= len || json.charAt(i) != ':') {
+                return;
+            }
+            i = skipWhitespace(json, i + 1);
+            if (i >= len) {
+                return;
+            }
+            int slot = tradeSlotOf(json, keyStart, keyEnd);
+            char c = json.charAt(i);
+            if (c == '"') {
+                int valueEnd = stringEnd(json, i + 1);
+                if (valueEnd < 0) {
+                    return;
+                }
+                if (slot >= 0) {
+                    out[slot] = unescape(json, i + 1, valueEnd);
+                }
+                i = valueEnd + 1;
+            } else if (c == '{' || c == '[') {
+                i = skipNested(json, i);
+                if (i < 0) {
+                    return;
+                }
+            } else {
+                int valueStart = i;
+                while (i < len && json.charAt(i) != ',' && json.charAt(i) != '}') {
+                    i++;
+                }
+                if (slot >= 0) {
+                    out[slot] = json.substring(valueStart, i).trim();
+                }
+            }
+        }
+    }
+
+    private static int tradeSlotOf(String s, int start, int end) {
+        int len = end - start;
+        if (len == 12 && s.startsWith("out_trade_no", start)) {
+            return 0;
+        }
+        if (len == 8 && s.startsWith("trade_no", start)) {
+            return 1;
+        }
+        if (len == 12 && s.startsWith("total_amount", start)) {
+            return 2;
+        }
+        return -1;
+    }
+
+    private static int skipWhitespace(String s, int i) {
+        int len = s.length();
+        while (i < len && Character.isWhitespace(s.charAt(i))) {
+            i++;
+        }
+        return i;
+    }
+
+    /**
+     * @param start 字符串内容的起始位置（开引号之后）
+     * @return 闭引号的位置，未闭合时返回-1
+     */
+    private static int stringEnd(String s, int start) {
+        int len = s.length();
+        for (int i = start; i < len; i++) {
+            char c = s.charAt(i);
+            if (c == '\\') {
+                i++;
+            } else if (c == '"') {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * 跳过一个对象或数组
+     *
+     * @return 结束括号之后的位置，未闭合时返回-1
+     */
+    private static int skipNested(String s, int i) {
+        int len = s.length();
+        int depth = 0;
+        while (i < len) {
+            char c = s.charAt(i);
+            if (c == '"') {
+                i = stringEnd(s, i + 1);
+                if (i < 0) {
+                    return -1;
+                }
+            } else if (c == '{' || c == '[') {
+                depth++;
+            } else if (c == '}' || c == ']') {
+                depth--;
+                if (depth == 0) {
+                    return i + 1;
+                }
+            }
+            i++;
+        }
+        return -1;
+    }
+
+    private static String unescape(String s, int start, int end) {
+        if (s.indexOf('\\', start) < 0 || s.indexOf('\\', start) >= end) {
+            return s.substring(start, end);
+        }
+        StringBuilder sb = new StringBuilder(end - start);
+        for (int i = start; i < end; i++) {
+            char c = s.charAt(i);
+            if (c != '\\' || i + 1 >= end) {
+                sb.append(c);
+                continue;
+            }
+            char next = s.charAt(++i);
+            switch (next) {
+                case 'n':
+                    sb.append('\n');
+                    break;
+                case 't':
+                    sb.append('\t');
+                    break;
+                case 'r':
+                    sb.append('\r');
+                    break;
+                case 'b':
+                    sb.append('\b');
+                    break;
+                case 'f':
+                    sb.append('\f');
+                    break;
+                case 'u':
+                    if (i + 4 < end) {
+                        try {
+                            sb.append((char) Integer.parseInt(s.substring(i + 1, i + 5), 16));
+                            i += 4;
+                            break;
+                        } catch (NumberFormatException ignored) {
+                            // 非法的转义，原样保留
+                        }
+                    }
+                    sb.append('\\').append(next);
+                    break;
+                default:
+                    sb.append(next);
+            }
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,52 @@
+package com.inkbottle.alipayrn;
+
+import android.app.Activity;
+
+import com.alipay.sdk.app.AuthTask;
+import com.alipay.sdk.app.H5PayCallback;
+import com.alipay.sdk.app.PayTask;
+import com.alipay.sdk.util.H5PayResultModel;
+
+import java.util.Map;
+
+/**
+ * 直接调用支付宝SDK的默认实现
+ */
+final class AlipaySdkGateway implements AlipayGateway<Activity> {
+    static final AlipaySdkGateway INSTANCE = new AlipaySdkGateway();
+
+    private AlipaySdkGateway() {
+    }
+
+    @Override
+    public Call newPayCall(Activity activity) {
+        final PayTask task = new PayTask(activity);
+        return new Call() {
+            @Override
+            public Map<String, String> invoke(String orderInfo) {
+                return task.payV2(orderInfo, true);
+            }
+        };
+    }
+
+    @Override
+    public Call newAuthCall(Activity activity) {
+        final AuthTask task = new AuthTask(activity);
+        return new Call() {
+            @Override
+            public Map<String, String> invoke(String authInfo) {
+                return task.authV2(authInfo, true);
+            }
+        };
+    }
+
+    @Override
+    public boolean interceptH5Url(Activity activity, String url, final H5Callback callback) {
+        return new PayTask(activity).payInterceptorWithUrl(url, true, new H5PayCallback() {
+            @Override
+            public void onPayResult(H5PayResultModel model) {
+                callback.onResult(model.getResultCode(), model.getReturnUrl());
+            }
+        });
+    }
+}
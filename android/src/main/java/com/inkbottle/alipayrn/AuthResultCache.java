@@ -0,0 +1,246 @@
+package com.inkbottle.alipayrn;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 授权结果缓存
+ * 按授权范围（app_id、pid、scope、auth_type）和用户缓存成功的authV2结果，有效期内再次授权直接返回缓存，不再拉起支付宝。
+ * 用户由调用方传入的userKey（例如已登录用户的ID）区分，没有userKey时使用授权参数中的target_id，
+ * 不同用户的结果互不命中；用户退出登录时应调用{@link #invalidateUser(String)}。
+ * 注意auth_code只能在服务端换取一次令牌，依赖auth_code的场景应使用较短的有效期或在换取后调用invalidate。
+ */
+final class AuthResultCache {
+    static final int DEFAULT_CAPACITY = 16;
+    static final long DEFAULT_TTL_MILLIS = 60_000;
+
+    private static final String[] SCOPE_KEYS = {"app_id", "pid", "scope", "auth_type"};
+
+    private static final class Entry {
+        final String scope;
+        final String user;
+        final Map<String, String> result;
+        final long expiresAtNanos;
+
+        Entry(String scope, String user, Map<String, String> result, long expiresAtNanos) {
+            this.scope = scope;
+            this.user = user;
+            this.result = result;
+            this.expiresAtNanos = expiresAtNanos;
+        }
+    }
+
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<String, Entry>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+            return size() > DEFAULT_CAPACITY;
+        }
+    };
+    // 每次invalidate加一，发起授权时记录，返回时不一致说明期间被失效过，结果不再写入缓存
+    private long generation = 0;
+
+    private long hitCount = 0;
+    private long missCount = 0;
+    private long expiredCount = 0;
+    private long invalidatedCount = 0;
+
+    /**
+     * 计算授权参数的缓存键
+     *
+     * @param userKey 调用方的用户标识，为null或空时使用授权参数中的target_id
+     * @return 授权参数中没有app_id、或既没有userKey也没有target_id时返回null，表示不缓存
+     */
+    static String keyOf(String authInfo, String userKey) {
+        Map<String, String> params = parseParams(authInfo);
+        if (params.get("app_id") == null) {
+            return null;
+        }
+        String user = userOf(params, userKey);
+        if (user == null) {
+            return null;
+        }
+        StringBuilder key = new StringBuilder();
+        for (String name : SCOPE_KEYS) {
+            String value = params.get(name);
+            key.append(value != null ? value : "").append('|');
+        }
+        return key.append(user).toString();
+    }
+
+    /**
+     * 取出缓存键中的用户部分，授权参数中的值经过URL编码，不含分隔符，userKey中可以含有分隔符
+     */
+    private static String userOfKey(String key) {
+        int start = 0;
+        for (int i = 0; i < SCOPE_KEYS.length; i++) {
+            start = key.indexOf('|', start) + 1;
+        }
+        return key.substring(start);
+    }
+
+    /**
+     * @return 缓存键中的用户部分，userKey和target_id之间以前缀区分
+     */
+    private static String userOf(Map<String, String> params, String userKey) {
+        if (userKey != null && !userKey.isEmpty()) {
+            return "u:" + userKey;
+        }
+        String targetId = params.get("target_id");
+        return targetId != null && !targetId.isEmpty() ? "t:" + targetId : null;
+    }
+
+    /**
+     * 查询未过期的授权结果
+     *
+     * @return 缓存的结果（只读），没有或已过期时返回null
+     */
+    synchronized Map<String, String> lookup(String key) {
+        Entry entry = entries.get(key);
+        if (entry != null && entry.expiresAtNanos - System.nanoTime() <= 0) {
+            entries.remove(key);
+            expiredCount++;
+            entry = null;
+        }
+        if (entry == null) {
+            missCount++;
+            return null;
+        }
+        hitCount++;
+        return entry.result;
+    }
+
+    synchronized long generation() {
+        return generation;
+    }
+
+    /**
+     * 缓存授权结果，只缓存resultStatus为9000且result_code为200的结果
+     *
+     * @param generation 发起授权时{@link #generation()}的值
+     * @return 是否写入了缓存
+     */
+    synchronized boolean put(String key, long generation, Map<String, String> result, long ttlMillis) {
+        if (generation != this.generation || ttlMillis <= 0 || !isSuccess(result)) {
+            return false;
+        }
+        String scope = unquote(parseParams(result.get("result")).get("scope"));
+        String user = userOfKey(key);
+        entries.put(key, new Entry(scope, user, Collections.unmodifiableMap(new HashMap<>(result)),
+                System.nanoTime() + ttlMillis * 1_000_000L));
+        return true;
+    }
+
+    /**
+     * 使缓存失效
+     *
+     * @param scope 只移除该scope的结果（例如auth_user），为null时全部移除
+     * @return 移除的条数
+     */
+    synchronized int invalidate(String scope) {
+        generation++;
+        int removed = 0;
+        Iterator<Entry> iterator = entries.values().iterator();
+        while (iterator.hasNext()) {
+            Entry entry = iterator.next();
+            if (scope == null || scope.equals(entry.scope)) {
+                iterator.remove();
+                removed++;
+            }
+        }
+        invalidatedCount += removed;
+        return removed;
+    }
+
+    /**
+     * 使某个用户的授权结果失效，用户退出登录时调用
+     *
+     * @param userKey 授权时传入的userKey，为null时全部移除
+     * @return 移除的条数
+     */
+    synchronized int invalidateUser(String userKey) {
+        if (userKey == null) {
+            return invalidate(null);
+        }
+        generation++;
+        String user = "u:" + userKey;
+        int removed = 0;
+        Iterator<Entry> iterator = entries.values().iterator();
+        while (iterator.hasNext()) {
+            if (user.equals(iterator.next().user)) {
+                iterator.remove();
+                removed++;
+            }
+        }
+        invalidatedCount += removed;
+        return removed;
+    }
+
+    synchronized int size() {
+        return entries.size();
+    }
+
+    /**
+     * 命中缓存、因此省去的SDK调用次数
+     */
+    synchronized long getHitCount() {
+        return hitCount;
+    }
+
+    synchronized long getMissCount() {
+        return missCount;
+    }
+
+    synchronized long getExpiredCount() {
+        return expiredCount;
+    }
+
+    synchronized long getInvalidatedCount() {
+        return invalidatedCount;
+    }
+
+    private static boolean isSuccess(Map<String, String> result) {
+        if (!"9000".equals(result.get("resultStatus"))) {
+            return false;
+        }
+        Map<String, String> fields = parseParams(result.get("result"));
+        return "200".equals(unquote(fields.get("result_code")));
+    }
+
+    /**
+     * authV2返回的result中的值可能带双引号，例如result_code="200"
+     */
+    private static String unquote(String value) {
+        if (value != null && value.length() >= 2 && value.charAt(0) == '"'
+                && value.charAt(value.length() - 1) == '"') {
+            return value.substring(1, value.length() - 1);
+        }
+        return value;
+    }
+
+    /**
+     * 解析key=value&key=value格式的参数，值保持原样不做URL解码
+     */
+    private static Map<String, String> parseParams(String query) {
+        HashMap<String, String> params = new HashMap<>();
+        if (query == null) {
+            return params;
+        }
+        int start = 0;
+        int length = query.length();
+        while (start < length) {
+            int end = query.indexOf('&', start);
+            if (end < 0) {
+                end = length;
+            }
+            int eq = query.indexOf('=', start);
+            if (eq > start && eq < end) {
+                params.put(query.substring(start, eq), query.substring(eq + 1, end));
+            }
+            start = end + 1;
+        }
+        return params;
+    }
+}
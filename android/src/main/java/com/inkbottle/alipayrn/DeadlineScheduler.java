@@ -0,0 +1,101 @@
+package com.inkbottle.alipayrn;
+
+import java.util.HashMap;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 支付/授权的超时调度
+ * 所有模块实例共用一个调度线程，空闲时自动退出；每个实例只管理自己登记的截止时间。
+ * 到期回调与cancel互斥，同一个id的回调最多执行一次。
+ */
+final class DeadlineScheduler {
+    private static final long KEEP_ALIVE_SECONDS = 30;
+
+    private static final ScheduledThreadPoolExecutor SHARED = createExecutor();
+
+    private final HashMap<String, ScheduledFuture<?>> deadlines = new HashMap<>();
+    private final AtomicLong expiredCount = new AtomicLong();
+
+    /**
+     * 登记一个截止时间
+     *
+     * @param id 支付ID等唯一标识，同一id重复登记时替换之前的截止时间
+     * @param delayMillis 超时时间，小于等于0时不登记
+     * @param onExpire 到期回调，在调度线程中执行
+     */
+    void schedule(final String id, long delayMillis, final Runnable onExpire) {
+        if (delayMillis <= 0) {
+            return;
+        }
+        synchronized (this) {
+            ScheduledFuture<?> future = SHARED.schedule(new Runnable() {
+                @Override
+                public void run() {
+                    synchronized (DeadlineScheduler.this) {
+                        if (deadlines.remove(id) == null) {
+                            return;
+                        }
+                    }
+                    expiredCount.incrementAndGet();
+                    onExpire.run();
+                }
+            }, delayMillis, TimeUnit.MILLISECONDS);
+            ScheduledFuture<?> previous = deadlines.put(id, future);
+            if (previous != null) {
+                previous.cancel(false);
+            }
+        }
+    }
+
+    /**
+     * 取消截止时间，例如已经拿到结果
+     *
+     * @return 截止时间尚未到达并被取消时返回true
+     */
+    synchronized boolean cancel(String id) {
+        ScheduledFuture<?> future = deadlines.remove(id);
+        if (future == null) {
+            return false;
+        }
+        future.cancel(false);
+        return true;
+    }
+
+    /**
+     * 取消本实例登记的全部截止时间，不影响共用的调度线程
+     */
+    synchronized void cancelAll() {
+        for (ScheduledFuture<?> future : deadlines.values()) {
+            future.cancel(false);
+        }
+        deadlines.clear();
+    }
+
+    synchronized int getPendingCount() {
+        return deadlines.size();
+    }
+
+    long getExpiredCount() {
+        return expiredCount.get();
+    }
+
+    private static ScheduledThreadPoolExecutor createExecutor() {
+        ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor(1, new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, "AlipayPayment-deadline");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        // 取消的任务立即移出队列，避免大量已完成的支付占用内存直到原定的截止时间
+        executor.setRemoveOnCancelPolicy(true);
+        executor.setKeepAliveTime(KEEP_ALIVE_SECONDS, TimeUnit.SECONDS);
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+}
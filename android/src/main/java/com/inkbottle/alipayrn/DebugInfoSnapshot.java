@@ -0,0 +1,121 @@
+package com.inkbottle.alipayrn;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 调试信息快照
+ * 保存上一次上报的各字段值及其最后变化时的版本号，每次更新只在有字段变化时递增版本，
+ * 轮询方带上已知版本即可只取回之后变化过的字段。
+ */
+final class DebugInfoSnapshot {
+
+    /**
+     * 增量结果
+     */
+    static final class Delta {
+        final long version;
+        final Map<String, Object> changed;  // 变化后的值
+        final List<String> removed;         // 已不再上报的字段
+
+        Delta(long version, Map<String, Object> changed, List<String> removed) {
+            this.version = version;
+            this.changed = changed;
+            this.removed = removed;
+        }
+    }
+
+    private final LinkedHashMap<String, Object> values = new LinkedHashMap<>();
+    private final HashMap<String, Long> changedAt = new HashMap<>();
+    // 已移除字段及其移除时的版本
+    private final HashMap<String, Long> removedAt = new HashMap<>();
+    private long version = 0;
+
+    /**
+     * 用当前值更新快照
+     *
+     * @param current 当前全部字段，值为String、Boolean或Number
+     * @return 更新后的版本号
+     */
+    synchronized long update(Map<String, Object> current) {
+        long next = version + 1;
+        boolean changed = false;
+        for (Map.Entry<String, Object> entry : current.entrySet()) {
+            String key = entry.getKey();
+            Object value = entry.getValue();
+            if (value == null) {
+                continue;
+            }
+            Object prev = values.put(key, value);
+            if (prev == null || !prev.equals(value)) {
+                changedAt.put(key, next);
+                removedAt.remove(key);
+                changed = true;
+            }
+        }
+        if (values.size() > countNonNull(current)) {
+            List<String> gone = new ArrayList<>();
+            for (String key : values.keySet()) {
+                if (current.get(key) == null) {
+                    gone.add(key);
+                }
+            }
+            for (String key : gone) {
+                values.remove(key);
+                changedAt.remove(key);
+                removedAt.put(key, next);
+            }
+            changed = true;
+        }
+        if (changed) {
+            version = next;
+        }
+        return version;
+    }
+
+    /**
+     * @return 当前全部字段的副本
+     */
+    synchronized Map<String, Object> values() {
+        return new LinkedHashMap<>(values);
+    }
+
+    synchronized long version() {
+        return version;
+    }
+
+    /**
+     * 取回sinceVersion之后变化过的字段
+     *
+     * @param sinceVersion 调用方已知的版本，传0取回全部字段
+     */
+    synchronized Delta since(long sinceVersion) {
+        Map<String, Object> changed = new LinkedHashMap<>();
+        for (Map.Entry<String, Object> entry : values.entrySet()) {
+            Long at = changedAt.get(entry.getKey());
+            if (at != null && at > sinceVersion) {
+                changed.put(entry.getKey(), entry.getValue());
+            }
+        }
+        List<String> removed = new ArrayList<>();
+        for (Map.Entry<String, Long> entry : removedAt.entrySet()) {
+            if (entry.getValue() > sinceVersion) {
+                removed.add(entry.getKey());
+            }
+        }
+        return new Delta(version, changed, removed);
+    }
+
+    private static int countNonNull(Map<String, Object> map) {
+        int count = 0;
+        for (Object value : map.values()) {
+            if (value != null) {
+                count++;
+            }
+        }
+        return count;
+    }
+}
@@ -0,0 +1,154 @@
+package com.inkbottle.alipayrn;
+
+import java.util.ArrayDeque;
+
+/**
+ * 待发送到JS层的事件队列
+ * 每个事件在入队时分配递增的序号，JS运行时就绪时按顺序发送；JS重新加载或从支付宝返回期间未就绪时保留在队列中，
+ * 就绪后（回到前台、JS层订阅事件）再发送。队列有界，满时按溢出策略丢弃。
+ * JS层按序号跳过已处理过的事件。
+ *
+ * @param <P> 事件参数，模块中为WritableMap
+ */
+final class EventOutbox<P> {
+    static final int DEFAULT_CAPACITY = 32;
+
+    enum OverflowPolicy {
+        DROP_OLDEST,  // 丢弃最早的事件，保留最新结果
+        DROP_NEWEST   // 丢弃新到的事件，保留最早的结果
+    }
+
+    /**
+     * 实际发送事件的出口
+     */
+    interface Sink<P> {
+        /**
+         * @throws Exception 发送失败时抛出，事件保留在队首等待下次发送
+         */
+        void emit(String name, P payload) throws Exception;
+    }
+
+    /**
+     * 把入队时分配的序号写入事件参数
+     */
+    interface SequenceStamper<P> {
+        void stamp(P payload, long sequence);
+    }
+
+    private static final class Event<P> {
+        final String name;
+        final P payload;
+
+        Event(String name, P payload) {
+            this.name = name;
+            this.payload = payload;
+        }
+    }
+
+    private final ArrayDeque<Event<P>> queue = new ArrayDeque<>();
+    private int capacity = DEFAULT_CAPACITY;
+    private OverflowPolicy overflowPolicy = OverflowPolicy.DROP_OLDEST;
+    private long sequence = 0;
+
+    private long queuedCount = 0;
+    private long deliveredCount = 0;
+    private long overflowCount = 0;
+    private long failedEmitCount = 0;
+
+    /**
+     * 分配下一个序号（从1开始）写入事件后入队
+     * 序号和入队在同一把锁内完成，不同线程发送的事件在队列中的顺序与序号一致，
+     * JS层按序号跳过已处理事件时不会误丢首次到达的事件
+     *
+     * @return 事件被丢弃（DROP_NEWEST且队列已满）时返回false
+     */
+    synchronized boolean offer(String name, P payload, SequenceStamper<? super P> stamper) {
+        stamper.stamp(payload, ++sequence);
+        queuedCount++;
+        if (queue.size() >= capacity) {
+            overflowCount++;
+            if (overflowPolicy == OverflowPolicy.DROP_NEWEST) {
+                AlipayLog.w("事件队列已满，丢弃新事件: {}", name);
+                return false;
+            }
+            Event<P> dropped = queue.pollFirst();
+            AlipayLog.w("事件队列已满，丢弃最早的事件: {}", dropped.name);
+        }
+        queue.addLast(new Event<>(name, payload));
+        return true;
+    }
+
+    /**
+     * 按顺序发送队列中的事件，发送失败时停止，失败的事件留在队首
+     *
+     * @return 本次发送的事件数
+     */
+    synchronized int drainTo(Sink<P> sink) {
+        int sent = 0;
+        Event<P> event;
+        while ((event = queue.peekFirst()) != null) {
+            try {
+                sink.emit(event.name, event.payload);
+            } catch (Exception e) {
+                failedEmitCount++;
+                AlipayLog.w("发送事件失败，等待JS就绪后重试: {}", e.getMessage());
+                break;
+            }
+            queue.pollFirst();
+            deliveredCount++;
+            sent++;
+        }
+        return sent;
+    }
+
+    /**
+     * 调整队列容量和溢出策略，容量缩小时按溢出策略立即丢弃多出的事件
+     */
+    synchronized void configure(int capacity, OverflowPolicy overflowPolicy) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("事件队列容量必须大于0: " + capacity);
+        }
+        this.capacity = capacity;
+        this.overflowPolicy = overflowPolicy;
+        while (queue.size() > capacity) {
+            if (overflowPolicy == OverflowPolicy.DROP_NEWEST) {
+                queue.pollLast();
+            } else {
+                queue.pollFirst();
+            }
+            overflowCount++;
+        }
+    }
+
+    synchronized int size() {
+        return queue.size();
+    }
+
+    synchronized int getCapacity() {
+        return capacity;
+    }
+
+    synchronized OverflowPolicy getOverflowPolicy() {
+        return overflowPolicy;
+    }
+
+    synchronized long getLastSequence() {
+        return sequence;
+    }
+
+    synchronized long getQueuedCount() {
+        return queuedCount;
+    }
+
+    synchronized long getDeliveredCount() {
+        return deliveredCount;
+    }
+
+    synchronized long getOverflowCount() {
+        return overflowCount;
+    }
+
+    synchronized long getFailedEmitCount() {
+        return failedEmitCount;
+    }
+}
@@ -0,0 +1,173 @@
+package com.inkbottle.alipayrn;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 本地模拟的支付宝SDK，不拉起支付宝、不访问网络
+ * 按脚本返回结果：每次调用阻塞latency±jitter毫秒，结果状态码按顺序循环取自resultStatuses；
+ * 以dropRate的概率模拟"丢失回调"，调用一直阻塞到dropHold毫秒后或{@link #releaseDropped()}才返回6004，
+ * 用于验证超时和Promise只完成一次。
+ *
+ * @param <H> 宿主类型，模拟实现不使用
+ */
+final class FakeAlipayGateway<H> implements AlipayGateway<H> {
+    static final String[] DEFAULT_RESULT_STATUSES = {"9000"};
+    static final long DEFAULT_DROP_HOLD_MILLIS = 30_000;
+
+    private final long latencyMillis;
+    private final long jitterMillis;
+    private final String[] resultStatuses;
+    private final double dropRate;
+    private final long dropHoldMillis;
+    private final Random random;
+    private final CountDownLatch released = new CountDownLatch(1);
+
+    private final AtomicLong sequence = new AtomicLong();
+    private final AtomicLong payCount = new AtomicLong();
+    private final AtomicLong authCount = new AtomicLong();
+    private final AtomicLong droppedCount = new AtomicLong();
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicInteger maxInFlight = new AtomicInteger();
+
+    /**
+     * @param latencyMillis 每次调用的基础耗时
+     * @param jitterMillis 在基础耗时上随机增减的范围
+     * @param resultStatuses 循环返回的resultStatus，为空时全部返回9000
+     * @param dropRate 丢失回调的概率，0～1
+     * @param dropHoldMillis 丢失回调时阻塞的时间，小于等于0时使用默认值
+     * @param seed 随机种子，相同的脚本和种子得到相同的耗时和丢失序列
+     */
+    FakeAlipayGateway(long latencyMillis, long jitterMillis, String[] resultStatuses, double dropRate,
+                      long dropHoldMillis, long seed) {
+        if (latencyMillis < 0 || jitterMillis < 0 || dropRate < 0 || dropRate > 1) {
+            throw new IllegalArgumentException("模拟参数不合法: latency=" + latencyMillis
+                    + ", jitter=" + jitterMillis + ", dropRate=" + dropRate);
+        }
+        this.latencyMillis = latencyMillis;
+        this.jitterMillis = jitterMillis;
+        this.resultStatuses = resultStatuses != null && resultStatuses.length > 0
+                ? resultStatuses.clone() : DEFAULT_RESULT_STATUSES;
+        this.dropRate = dropRate;
+        this.dropHoldMillis = dropHoldMillis > 0 ? dropHoldMillis : DEFAULT_DROP_HOLD_MILLIS;
+        this.random = new Random(seed);
+    }
+
+    @Override
+    public Call newPayCall(H host) {
+        return new Call() {
+            @Override
+            public Map<String, String> invoke(String orderInfo) {
+                payCount.incrementAndGet();
+                return simulate(orderInfo, false);
+            }
+        };
+    }
+
+    @Override
+    public Call newAuthCall(H host) {
+        return new Call() {
+            @Override
+            public Map<String, String> invoke(String authInfo) {
+                authCount.incrementAndGet();
+                return simulate(authInfo, true);
+            }
+        };
+    }
+
+    /**
+     * 模拟实现没有H5收银台，所有链接都视为非支付链接
+     */
+    @Override
+    public boolean interceptH5Url(H host, String url, H5Callback callback) {
+        return false;
+    }
+
+    /**
+     * 放行所有正在模拟丢失回调的调用，例如切换回真实SDK或模块销毁时
+     */
+    void releaseDropped() {
+        released.countDown();
+    }
+
+    long getPayCount() {
+        return payCount.get();
+    }
+
+    long getAuthCount() {
+        return authCount.get();
+    }
+
+    long getDroppedCount() {
+        return droppedCount.get();
+    }
+
+    int getInFlight() {
+        return inFlight.get();
+    }
+
+    int getMaxInFlight() {
+        return maxInFlight.get();
+    }
+
+    private Map<String, String> simulate(String info, boolean auth) {
+        long n = sequence.getAndIncrement();
+        String status = resultStatuses[(int) (n % resultStatuses.length)];
+        boolean drop;
+        long sleepMillis;
+        synchronized (random) {
+            drop = random.nextDouble() < dropRate;
+            sleepMillis = latencyMillis + (jitterMillis > 0
+                    ? (long) ((random.nextDouble() * 2 - 1) * jitterMillis) : 0);
+        }
+
+        int current = inFlight.incrementAndGet();
+        int max;
+        while (current > (max = maxInFlight.get()) && !maxInFlight.compareAndSet(max, current)) {
+            // 重试直到记录下最大并发
+        }
+        try {
+            if (drop) {
+                droppedCount.incrementAndGet();
+                released.await(dropHoldMillis, TimeUnit.MILLISECONDS);
+                return result("6004", "模拟的支付宝未返回结果", "");
+            }
+            if (sleepMillis > 0) {
+                Thread.sleep(sleepMillis);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return result("6004", "模拟调用被中断", "");
+        } finally {
+            inFlight.decrementAndGet();
+        }
+
+        if (!"9000".equals(status)) {
+            return result(status, "模拟结果", "");
+        }
+        return auth
+                ? result(status, "", "success=true&result_code=200&auth_code=FAKE_AUTH_" + n
+                        + "&user_id=2088000000000000")
+                : result(status, "", "{\"alipay_trade_app_pay_response\":{\"code\":\"10000\",\"msg\":\"Success\","
+                        + "\"out_trade_no\":\"" + outTradeNoOf(info, n) + "\","
+                        + "\"trade_no\":\"FAKE" + n + "\",\"total_amount\":\"0.01\"}}");
+    }
+
+    private static String outTradeNoOf(String orderInfo, long n) {
+        String outTradeNo = PaymentDeduplicator.findOutTradeNo(orderInfo);
+        return outTradeNo != null ? outTradeNo : "FAKE_ORDER_" + n;
+    }
+
+    private static Map<String, String> result(String resultStatus, String memo, String result) {
+        Map<String, String> map = new HashMap<>();
+        map.put("resultStatus", resultStatus);
+        map.put("memo", memo);
+        map.put("result", result);
+        return map;
+    }
+}
@@ -0,0 +1,97 @@
+package com.inkbottle.alipayrn;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * H5支付链接拦截的否定结果缓存
+ * WebView每次跳转都可以调用interceptH5Url，绝大多数链接不是支付宝H5收银台，
+ * 记住SDK判定为非支付的链接，有效期内再次出现时直接返回，不再构造PayTask、不再切换到工作线程。
+ * 只缓存否定结果：支付链接每次都交给SDK处理。
+ */
+final class H5InterceptCache {
+    static final int DEFAULT_CAPACITY = 128;
+    static final long DEFAULT_TTL_MILLIS = 10 * 60_000;
+
+    private final LinkedHashMap<String, Long> notPayment = new LinkedHashMap<String, Long>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Long> eldest) {
+            return size() > DEFAULT_CAPACITY;
+        }
+    };
+
+    private long hitCount = 0;
+    private long missCount = 0;
+    private long interceptedCount = 0;
+    private long busyCount = 0;
+
+    /**
+     * 计算缓存键，去掉#之后的片段，同一页面内的锚点跳转视为同一链接
+     */
+    static String keyOf(String url) {
+        int hash = url.indexOf('#');
+        return hash >= 0 ? url.substring(0, hash) : url;
+    }
+
+    /**
+     * 只有http(s)链接可能是H5收银台，其余协议不需要交给SDK判断
+     */
+    static boolean isCandidate(String url) {
+        return url.regionMatches(true, 0, "https://", 0, 8) || url.regionMatches(true, 0, "http://", 0, 7);
+    }
+
+    /**
+     * 查询链接是否在有效期内被判定为非支付链接
+     */
+    synchronized boolean isKnownNotPayment(String key) {
+        Long expiresAtNanos = notPayment.get(key);
+        if (expiresAtNanos != null && expiresAtNanos - System.nanoTime() > 0) {
+            hitCount++;
+            return true;
+        }
+        if (expiresAtNanos != null) {
+            notPayment.remove(key);
+        }
+        missCount++;
+        return false;
+    }
+
+    /**
+     * 记录SDK的判定结果，非支付链接写入缓存，支付链接只计数
+     */
+    synchronized void record(String key, boolean intercepted) {
+        if (intercepted) {
+            interceptedCount++;
+            notPayment.remove(key);
+        } else {
+            notPayment.put(key, System.nanoTime() + DEFAULT_TTL_MILLIS * 1_000_000L);
+        }
+    }
+
+    /**
+     * 拦截线程繁忙、未交给SDK判断而直接放行的链接，不写入缓存
+     */
+    synchronized void recordBusy() {
+        busyCount++;
+    }
+
+    synchronized int size() {
+        return notPayment.size();
+    }
+
+    synchronized long getHitCount() {
+        return hitCount;
+    }
+
+    synchronized long getMissCount() {
+        return missCount;
+    }
+
+    synchronized long getInterceptedCount() {
+        return interceptedCount;
+    }
+
+    synchronized long getBusyCount() {
+        return busyCount;
+    }
+}
@@ -0,0 +1,107 @@
+package com.inkbottle.alipayrn;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * 固定分桶的延迟直方图
+ * 记录只做几次原子自增，不加锁、不分配对象；百分位按所在分桶的上界估算
+ */
+final class LatencyHistogram {
+    /**
+     * 分桶上界（微秒），最后一个桶收集超过上界的所有样本
+     */
+    static final long[] BUCKET_BOUNDS_US = {
+            50, 100, 250, 500,
+            1_000, 2_500, 5_000, 10_000, 25_000, 50_000, 100_000, 250_000, 500_000,
+            1_000_000, 2_500_000, 5_000_000, 10_000_000, 30_000_000, 60_000_000, 120_000_000
+    };
+
+    private final AtomicLongArray buckets = new AtomicLongArray(BUCKET_BOUNDS_US.length + 1);
+    private final AtomicLong count = new AtomicLong();
+    private final AtomicLong sumUs = new AtomicLong();
+    private final AtomicLong maxUs = new AtomicLong();
+
+    /**
+     * 记录一次耗时
+     *
+     * @param durationNanos 耗时（纳秒），负数按0处理
+     */
+    void record(long durationNanos) {
+        long us = durationNanos > 0 ? durationNanos / 1_000 : 0;
+        buckets.incrementAndGet(bucketIndex(us));
+        count.incrementAndGet();
+        sumUs.addAndGet(us);
+        long prevMax;
+        while (us > (prevMax = maxUs.get())) {
+            if (maxUs.compareAndSet(prevMax, us)) {
+                break;
+            }
+        }
+    }
+
+    long getCount() {
+        return count.get();
+    }
+
+    double getMeanMillis() {
+        long n = count.get();
+        return n == 0 ? 0 : sumUs.get() / 1_000.0 / n;
+    }
+
+    double getMaxMillis() {
+        return maxUs.get() / 1_000.0;
+    }
+
+    /**
+     * @param percentile 0~100
+     * @return 百分位耗时（毫秒），没有样本时返回0
+     */
+    double getPercentileMillis(double percentile) {
+        long n = count.get();
+        if (n == 0) {
+            return 0;
+        }
+        long rank = (long) Math.ceil(percentile / 100.0 * n);
+        if (rank < 1) {
+            rank = 1;
+        }
+        long seen = 0;
+        for (int i = 0; i < BUCKET_BOUNDS_US.length; i++) {
+            seen += buckets.get(i);
+            if (seen >= rank) {
+                return Math.min(BUCKET_BOUNDS_US[i], maxUs.get()) / 1_000.0;
+            }
+        }
+        return getMaxMillis();
+    }
+
+    /**
+     * @return 各分桶的样本数，下标与 {@link #BUCKET_BOUNDS_US} 对应，最后一项为溢出桶
+     */
+    long[] getBucketCounts() {
+        long[] snapshot = new long[buckets.length()];
+        for (int i = 0; i < snapshot.length; i++) {
+            snapshot[i] = buckets.get(i);
+        }
+        return snapshot;
+    }
+
+    void reset() {
+        for (int i = 0; i < buckets.length(); i++) {
+            buckets.set(i, 0);
+        }
+        count.set(0);
+        sumUs.set(0);
+        maxUs.set(0);
+    }
+
+    private static int bucketIndex(long us) {
+        for (int i = 0; i < BUCKET_BOUNDS_US.length; i++) {
+            if (us <= BUCKET_BOUNDS_US[i]) {
+                return i;
+            }
+        }
+        return BUCKET_BOUNDS_US.length;
+    }
+}
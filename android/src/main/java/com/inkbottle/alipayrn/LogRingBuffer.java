@@ -0,0 +1,88 @@
+package com.inkbottle.alipayrn;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 固定容量的日志环形缓冲区
+ * 预先分配数组，写满后覆盖最旧的记录，写入时不产生额外分配
+ */
+final class LogRingBuffer {
+
+    /**
+     * 导出时使用的日志记录
+     */
+    static final class Record {
+        final long timeMillis;
+        final int level;
+        final String message;
+
+        Record(long timeMillis, int level, String message) {
+            this.timeMillis = timeMillis;
+            this.level = level;
+            this.message = message;
+        }
+    }
+
+    private final long[] times;
+    private final int[] levels;
+    private final String[] messages;
+    private int next = 0;   // 下一条记录的写入位置
+    private int size = 0;
+    private long dropped = 0; // 被覆盖的记录数
+
+    LogRingBuffer(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("capacity必须大于0");
+        }
+        times = new long[capacity];
+        levels = new int[capacity];
+        messages = new String[capacity];
+    }
+
+    synchronized void add(long timeMillis, int level, String message) {
+        times[next] = timeMillis;
+        levels[next] = level;
+        messages[next] = message;
+        next = (next + 1) % messages.length;
+        if (size < messages.length) {
+            size++;
+        } else {
+            dropped++;
+        }
+    }
+
+    /**
+     * @return 按写入顺序排列的全部记录
+     */
+    synchronized List<Record> snapshot() {
+        List<Record> records = new ArrayList<>(size);
+        int start = (next - size + messages.length) % messages.length;
+        for (int i = 0; i < size; i++) {
+            int index = (start + i) % messages.length;
+            records.add(new Record(times[index], levels[index], messages[index]));
+        }
+        return records;
+    }
+
+    synchronized void clear() {
+        for (int i = 0; i < messages.length; i++) {
+            messages[i] = null;
+        }
+        next = 0;
+        size = 0;
+        dropped = 0;
+    }
+
+    synchronized int size() {
+        return size;
+    }
+
+    synchronized long getDroppedCount() {
+        return dropped;
+    }
+
+    int capacity() {
+        return messages.length;
+    }
+}
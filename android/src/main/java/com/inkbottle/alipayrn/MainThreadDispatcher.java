@@ -0,0 +1,67 @@
+package com.inkbottle.alipayrn;
+
+import java.lang.ref.WeakReference;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 切回主线程执行的分发器
+ * 排队中的任务只通过弱引用持有目标（模块实例），目标被回收后任务直接丢弃，
+ * 工作线程、调度线程和主线程消息队列都不会因为一次支付而延长模块及其Activity的生命周期。
+ * 任务本身应为静态类，只携带paymentId、结果等值对象。
+ */
+final class MainThreadDispatcher {
+
+    /**
+     * 在主线程对目标执行的任务
+     */
+    interface Action<T> {
+        void run(T target);
+    }
+
+    private final Executor executor;
+    private final AtomicLong droppedCount = new AtomicLong();
+
+    /**
+     * @param executor 实际执行任务的线程，模块中为主线程Handler
+     */
+    MainThreadDispatcher(Executor executor) {
+        this.executor = executor;
+    }
+
+    /**
+     * 提交任务，执行时目标已被回收则丢弃
+     */
+    <T> void post(final WeakReference<T> target, final Action<? super T> action) {
+        executor.execute(new Dispatch<>(target, action, droppedCount));
+    }
+
+    /**
+     * 因目标已被回收而丢弃的任务数
+     */
+    long getDroppedCount() {
+        return droppedCount.get();
+    }
+
+    private static final class Dispatch<T> implements Runnable {
+        private final WeakReference<T> target;
+        private final Action<? super T> action;
+        private final AtomicLong droppedCount;
+
+        Dispatch(WeakReference<T> target, Action<? super T> action, AtomicLong droppedCount) {
+            this.target = target;
+            this.action = action;
+            this.droppedCount = droppedCount;
+        }
+
+        @Override
+        public void run() {
+            T current = target.get();
+            if (current == null) {
+                droppedCount.incrementAndGet();
+                return;
+            }
+            action.run(current);
+        }
+    }
+}
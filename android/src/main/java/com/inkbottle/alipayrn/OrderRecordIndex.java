@@ -0,0 +1,155 @@
+package com.inkbottle.alipayrn;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 最近支付的本地记录，按商户订单号（out_trade_no）索引
+ * 商户订单号在发起时从订单字符串中解析，拿到结果后以结果中的为准。
+ * 超过容量时淘汰最久未更新的订单，用于网络恢复后批量查询本地观察到的支付结果。
+ */
+final class OrderRecordIndex {
+    static final int DEFAULT_CAPACITY = 256;
+
+    enum State {
+        PENDING,    // 已拉起支付宝，尚未拿到结果
+        COMPLETED,  // 已拿到支付宝返回的结果
+        ABORTED     // 未拿到结果就结束（超时、取消、任务被拒绝）
+    }
+
+    /**
+     * 不可变的订单记录，每次状态变化替换为新对象
+     */
+    static final class OrderRecord {
+        final String outTradeNo;
+        final String paymentId;
+        final State state;
+        final int resultStatus;     // 仅COMPLETED时有效
+        final String errorCode;     // 仅ABORTED时有效
+        final String tradeNo;       // 支付宝交易号，未解析到时为null
+        final String totalAmount;
+        final long updatedAtMillis;
+
+        OrderRecord(String outTradeNo, String paymentId, State state, int resultStatus, String errorCode,
+                    String tradeNo, String totalAmount, long updatedAtMillis) {
+            this.outTradeNo = outTradeNo;
+            this.paymentId = paymentId;
+            this.state = state;
+            this.resultStatus = resultStatus;
+            this.errorCode = errorCode;
+            this.tradeNo = tradeNo;
+            this.totalAmount = totalAmount;
+            this.updatedAtMillis = updatedAtMillis;
+        }
+    }
+
+    private final int capacity;
+    private final LinkedHashMap<String, OrderRecord> byOutTradeNo;
+    // 进行中的支付对应的商户订单号，拿到结果或结束后移除
+    private final HashMap<String, String> outTradeNoByPaymentId = new HashMap<>();
+
+    OrderRecordIndex() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    OrderRecordIndex(final int capacity) {
+        this.capacity = capacity;
+        this.byOutTradeNo = new LinkedHashMap<String, OrderRecord>(16, 0.75f, false) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, OrderRecord> eldest) {
+                return size() > capacity;
+            }
+        };
+    }
+
+    /**
+     * 记录已拉起支付宝的支付
+     *
+     * @param outTradeNo 从订单字符串中解析的商户订单号，解析失败时为null，等拿到结果后再记录
+     */
+    synchronized void launched(String paymentId, String outTradeNo) {
+        if (outTradeNo == null) {
+            return;
+        }
+        outTradeNoByPaymentId.put(paymentId, outTradeNo);
+        put(new OrderRecord(outTradeNo, paymentId, State.PENDING, 0, null, null, null,
+                System.currentTimeMillis()));
+    }
+
+    /**
+     * 记录支付宝返回的结果
+     *
+     * @param paymentId 支付ID，无法关联时为null，此时只能依靠结果中的商户订单号
+     */
+    synchronized void completed(String paymentId, AlipayResult result) {
+        String launchedOutTradeNo = paymentId != null ? outTradeNoByPaymentId.remove(paymentId) : null;
+        String outTradeNo = result.outTradeNo != null ? result.outTradeNo : launchedOutTradeNo;
+        if (outTradeNo == null) {
+            return;
+        }
+        put(new OrderRecord(outTradeNo, paymentId, State.COMPLETED, result.resultStatus, null,
+                result.tradeNo, result.totalAmount, System.currentTimeMillis()));
+    }
+
+    /**
+     * 记录未拿到结果就结束的支付，之后迟到的结果仍会通过completed覆盖
+     */
+    synchronized void aborted(String paymentId, String errorCode) {
+        String outTradeNo = outTradeNoByPaymentId.get(paymentId);
+        if (outTradeNo == null) {
+            return;
+        }
+        OrderRecord current = byOutTradeNo.get(outTradeNo);
+        if (current != null && current.state == State.COMPLETED) {
+            return;
+        }
+        put(new OrderRecord(outTradeNo, paymentId, State.ABORTED, 0, errorCode, null, null,
+                System.currentTimeMillis()));
+    }
+
+    /**
+     * 批量查询
+     *
+     * @return 与outTradeNos一一对应，没有记录的位置为null
+     */
+    synchronized List<OrderRecord> query(List<String> outTradeNos) {
+        List<OrderRecord> records = new ArrayList<>(outTradeNos.size());
+        for (String outTradeNo : outTradeNos) {
+            records.add(outTradeNo != null ? byOutTradeNo.get(outTradeNo) : null);
+        }
+        return records;
+    }
+
+    synchronized int size() {
+        return byOutTradeNo.size();
+    }
+
+    int getCapacity() {
+        return capacity;
+    }
+
+    private void put(OrderRecord record) {
+        // 先移除再插入，使最近更新的订单排在最后，淘汰时优先移除最久未更新的
+        byOutTradeNo.remove(record.outTradeNo);
+        byOutTradeNo.put(record.outTradeNo, record);
+        // 被淘汰的进行中订单不再需要映射，避免outTradeNoByPaymentId无限增长
+        if (outTradeNoByPaymentId.size() > capacity) {
+            outTradeNoByPaymentId.keySet().retainAll(activePaymentIds());
+        }
+    }
+
+    private Set<String> activePaymentIds() {
+        Set<String> ids = new HashSet<>();
+        for (OrderRecord record : byOutTradeNo.values()) {
+            if (record.state != State.COMPLETED && record.paymentId != null) {
+                ids.add(record.paymentId);
+            }
+        }
+        return ids;
+    }
+}
@@ -0,0 +1,570 @@
+package com.inkbottle.alipayrn;
+
+import java.io.UnsupportedEncodingException;
+import java.net.URLDecoder;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 订单字符串校验
+ * 单次遍历 "key=value&key=value" 形式的订单字符串，检查支付宝要求的必填参数是否存在，
+ * 与JS层 validateOrderInfo 使用相同的必填字段列表。
+ * {@link #validate} 在同一次遍历中取出timestamp和biz_content，进一步检查biz_content的JSON格式和订单是否已过期，
+ * 用于在拉起支付宝之前拒绝必然失败的订单。
+ */
+final class OrderValidator {
+    static final String[] REQUIRED_FIELDS = {
+            "app_id", "method", "format", "charset", "sign_type", "sign", "timestamp", "version"
+    };
+
+    static final String ERR_MISSING_FIELD = "ERR_ORDER_MISSING_FIELD";
+    static final String ERR_BAD_ENCODING = "ERR_ORDER_BAD_ENCODING";
+    static final String ERR_BAD_BIZ_CONTENT = "ERR_ORDER_BAD_BIZ_CONTENT";
+    static final String ERR_BAD_TIMESTAMP = "ERR_ORDER_BAD_TIMESTAMP";
+    static final String ERR_BAD_TIMEOUT = "ERR_ORDER_BAD_TIMEOUT";
+    static final String ERR_EXPIRED = "ERR_ORDER_EXPIRED";
+
+    // 订单最长有效期，也是未指定timeout_express时的默认值
+    static final long MAX_TIMEOUT_MILLIS = 15L * 24 * 60 * 60 * 1000;
+    // 设备时钟可能与支付宝服务器有偏差，过期判断留出余量
+    static final long CLOCK_SKEW_MILLIS = 5L * 60 * 1000;
+
+    private static final int ALL_PRESENT = (1 << REQUIRED_FIELDS.length) - 1;
+    private static final int TIMESTAMP_BIT = 1 << 6; // REQUIRED_FIELDS[6]
+    private static final String BIZ_CONTENT = "biz_content";
+    // 订单中的时间均为北京时间
+    private static final long BEIJING_OFFSET_MILLIS = 8L * 60 * 60 * 1000;
+    private static final long DAY_MILLIS = 24L * 60 * 60 * 1000;
+    private static final int MAX_JSON_DEPTH = 32;
+
+    /**
+     * 校验结果
+     */
+    static final class Result {
+        final String code;          // 错误码，校验通过时为null
+        final String message;
+        final int missingMask;      // 缺失字段的位掩码，见missingFieldMask
+        final long expiresAtMillis; // 订单失效时间，校验通过时有效
+
+        private Result(String code, String message, int missingMask, long expiresAtMillis) {
+            this.code = code;
+            this.message = message;
+            this.missingMask = missingMask;
+            this.expiresAtMillis = expiresAtMillis;
+        }
+
+        boolean isValid() {
+            return code == null;
+        }
+
+        List<String> missingFields() {
+            return fieldsOf(missingMask);
+        }
+
+        private static Result error(String code, String message) {
+            return new Result(code, message, 0, -1);
+        }
+    }
+
+    private OrderValidator() {
+    }
+
+    /**
+     * @param orderInfo 订单字符串
+     * @return 缺失字段的位掩码，第i位对应 {@link #REQUIRED_FIELDS}[i]；0表示全部存在
+     */
+    static int missingFieldMask(String orderInfo) {
+        if (orderInfo == null || orderInfo.length() == 0) {
+            return ALL_PRESENT;
+        }
+        int present = 0;
+        int len = orderInfo.length();
+        int keyStart = 0;
+        while (keyStart < len) {
+            int amp = orderInfo.indexOf('&', keyStart);
+            int segmentEnd = amp < 0 ? len : amp;
+            int eq = orderInfo.indexOf('=', keyStart);
+            if (eq > keyStart && eq < segmentEnd) {
+                present |= fieldBit(orderInfo, keyStart, eq);
+                if (present == ALL_PRESENT) {
+                    return 0;
+                }
+            }
+            keyStart = segmentEnd + 1;
+        }
+        return ALL_PRESENT & ~present;
+    }
+
+    /**
+     * @return 订单字符串是否包含全部必填参数
+     */
+    static boolean hasRequiredFields(String orderInfo) {
+        return missingFieldMask(orderInfo) == 0;
+    }
+
+    private static int fieldBit(String s, int start, int end) {
+        int len = end - start;
+        for (int i = 0; i < REQUIRED_FIELDS.length; i++) {
+            String field = REQUIRED_FIELDS[i];
+            if (field.length() == len && s.startsWith(field, start)) {
+                return 1 << i;
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * 完整校验订单字符串：必填参数、biz_content的JSON格式、timestamp格式，
+     * 以及按timestamp加timeout_express（或biz_content中的time_expire）计算的订单是否已过期
+     *
+     * @param nowMillis 当前时间，用于判断是否过期
+     */
+    static Result validate(String orderInfo, long nowMillis) {
+        if (orderInfo == null || orderInfo.length() == 0) {
+            return new Result(ERR_MISSING_FIELD, "订单字符串为空", ALL_PRESENT, -1);
+        }
+        int present = 0;
+        int timestampStart = -1;
+        int timestampEnd = -1;
+        int bizStart = -1;
+        int bizEnd = -1;
+        int len = orderInfo.length();
+        int keyStart = 0;
+        while (keyStart < len) {
+            int amp = orderInfo.indexOf('&', keyStart);
+            int segmentEnd = amp < 0 ? len : amp;
+            int eq = orderInfo.indexOf('=', keyStart);
+            if (eq > keyStart && eq < segmentEnd) {
+                int bit = fieldBit(orderInfo, keyStart, eq);
+                present |= bit;
+                if (bit == TIMESTAMP_BIT) {
+                    timestampStart = eq + 1;
+                    timestampEnd = segmentEnd;
+                } else if (bit == 0 && eq - keyStart == BIZ_CONTENT.length()
+                        && orderInfo.startsWith(BIZ_CONTENT, keyStart)) {
+                    bizStart = eq + 1;
+                    bizEnd = segmentEnd;
+                }
+            }
+            keyStart = segmentEnd + 1;
+        }
+        if (present != ALL_PRESENT) {
+            int missing = ALL_PRESENT & ~present;
+            return new Result(ERR_MISSING_FIELD, "订单缺少必填参数: " + fieldsOf(missing), missing, -1);
+        }
+
+        String timestamp = decode(orderInfo, timestampStart, timestampEnd);
+        if (timestamp == null) {
+            return Result.error(ERR_BAD_ENCODING, "timestamp的URL编码不合法");
+        }
+        long issuedAtMillis = parseBeijingTime(timestamp);
+        if (issuedAtMillis < 0) {
+            return Result.error(ERR_BAD_TIMESTAMP, "timestamp格式不合法，应为yyyy-MM-dd HH:mm:ss: " + timestamp);
+        }
+
+        if (bizStart < 0) {
+            return Result.error(ERR_BAD_BIZ_CONTENT, "订单缺少biz_content");
+        }
+        String bizContent = decode(orderInfo, bizStart, bizEnd);
+        if (bizContent == null) {
+            return Result.error(ERR_BAD_ENCODING, "biz_content的URL编码不合法");
+        }
+        BizContentScanner biz = new BizContentScanner(bizContent);
+        if (!biz.scan()) {
+            return Result.error(ERR_BAD_BIZ_CONTENT, "biz_content不是合法的JSON对象，位置: " + biz.pos);
+        }
+
+        long expiresAtMillis;
+        if (biz.timeExpire != null) {
+            expiresAtMillis = parseBeijingTime(biz.timeExpire);
+            if (expiresAtMillis < 0) {
+                return Result.error(ERR_BAD_TIMEOUT, "time_expire格式不合法: " + biz.timeExpire);
+            }
+        } else if (biz.timeoutExpress != null) {
+            expiresAtMillis = expiryOf(biz.timeoutExpress, issuedAtMillis);
+            if (expiresAtMillis < 0) {
+                return Result.error(ERR_BAD_TIMEOUT, "timeout_express不合法，取值范围1m～15d: " + biz.timeoutExpress);
+            }
+        } else {
+            expiresAtMillis = issuedAtMillis + MAX_TIMEOUT_MILLIS;
+        }
+        if (expiresAtMillis + CLOCK_SKEW_MILLIS <= nowMillis) {
+            return Result.error(ERR_EXPIRED, "订单已过期: timestamp=" + timestamp
+                    + (biz.timeExpire != null ? ", time_expire=" + biz.timeExpire
+                    : biz.timeoutExpress != null ? ", timeout_express=" + biz.timeoutExpress : ""));
+        }
+        return new Result(null, null, 0, expiresAtMillis);
+    }
+
+    /**
+     * 取出biz_content顶层的out_trade_no
+     * 只解码biz_content参数并按JSON解析，subject等其他字段中出现的"out_trade_no"字样不会被误认
+     *
+     * @return 没有biz_content、编码或JSON不合法、顶层没有out_trade_no时返回null
+     */
+    static String findOutTradeNo(String orderInfo) {
+        if (orderInfo == null) {
+            return null;
+        }
+        int len = orderInfo.length();
+        int keyStart = 0;
+        while (keyStart < len) {
+            int amp = orderInfo.indexOf('&', keyStart);
+            int segmentEnd = amp < 0 ? len : amp;
+            int eq = orderInfo.indexOf('=', keyStart);
+            if (eq - keyStart == BIZ_CONTENT.length() && eq < segmentEnd
+                    && orderInfo.startsWith(BIZ_CONTENT, keyStart)) {
+                String bizContent = decode(orderInfo, eq + 1, segmentEnd);
+                if (bizContent == null) {
+                    return null;
+                }
+                BizContentScanner biz = new BizContentScanner(bizContent);
+                return biz.scan() && biz.outTradeNo != null && biz.outTradeNo.length() > 0 ? biz.outTradeNo : null;
+            }
+            keyStart = segmentEnd + 1;
+        }
+        return null;
+    }
+
+    /**
+     * @return 位掩码对应的字段名
+     */
+    static List<String> fieldsOf(int mask) {
+        List<String> fields = new ArrayList<>();
+        for (int i = 0; i < REQUIRED_FIELDS.length; i++) {
+            if ((mask & (1 << i)) != 0) {
+                fields.add(REQUIRED_FIELDS[i]);
+            }
+        }
+        return fields;
+    }
+
+    /**
+     * 解码订单参数值，没有转义字符时直接截取
+     *
+     * @return 编码不合法时返回null
+     */
+    private static String decode(String s, int start, int end) {
+        String value = s.substring(start, end);
+        if (value.indexOf('%') < 0 && value.indexOf('+') < 0) {
+            return value;
+        }
+        try {
+            return URLDecoder.decode(value, "UTF-8");
+        } catch (IllegalArgumentException | UnsupportedEncodingException e) {
+            return null;
+        }
+    }
+
+    /**
+     * 解析北京时间 "yyyy-MM-dd HH:mm:ss"
+     *
+     * @return 毫秒时间戳，格式不合法时返回-1
+     */
+    static long parseBeijingTime(String s) {
+        if (s.length() != 19 || s.charAt(4) != '-' || s.charAt(7) != '-' || s.charAt(10) != ' '
+                || s.charAt(13) != ':' || s.charAt(16) != ':') {
+            return -1;
+        }
+        int year = digits(s, 0, 4);
+        int month = digits(s, 5, 7);
+        int day = digits(s, 8, 10);
+        int hour = digits(s, 11, 13);
+        int minute = digits(s, 14, 16);
+        int second = digits(s, 17, 19);
+        if (year < 1970 || month < 1 || month > 12 || day < 1 || day > daysInMonth(year, month)
+                || hour > 23 || minute > 59 || second > 59) {
+            return -1;
+        }
+        long seconds = epochDay(year, month, day) * 86400L + hour * 3600L + minute * 60L + second;
+        return seconds * 1000 - BEIJING_OFFSET_MILLIS;
+    }
+
+    /**
+     * 按timeout_express计算失效时间，取值为1m～15d的整数加单位m/h/d，或1c（当天结束）
+     *
+     * @return 失效时间，不合法时返回-1
+     */
+    private static long expiryOf(String timeoutExpress, long issuedAtMillis) {
+        int len = timeoutExpress.length();
+        if (len < 2 || len > 6) {
+            return -1;
+        }
+        int amount = digits(timeoutExpress, 0, len - 1);
+        if (amount < 1) {
+            return -1;
+        }
+        long unitMillis;
+        switch (timeoutExpress.charAt(len - 1)) {
+            case 'm':
+                unitMillis = 60_000L;
+                break;
+            case 'h':
+                unitMillis = 60 * 60_000L;
+                break;
+            case 'd':
+                unitMillis = DAY_MILLIS;
+                break;
+            case 'c':
+                if (amount != 1) {
+                    return -1;
+                }
+                // 下单当天的北京时间24点
+                long localMillis = issuedAtMillis + BEIJING_OFFSET_MILLIS;
+                return (localMillis / DAY_MILLIS + 1) * DAY_MILLIS - BEIJING_OFFSET_MILLIS;
+            default:
+                return -1;
+        }
+        long timeoutMillis = amount * unitMillis;
+        return timeoutMillis > MAX_TIMEOUT_MILLIS ? -1 : issuedAtMillis + timeoutMillis;
+    }
+
+    /**
+     * @return 非数字时返回-1
+     */
+    private static int digits(String s, int start, int end) {
+        int value = 0;
+        for (int i = start; i < end; i++) {
+            char c = s.charAt(i);
+            if (c < '0' || c > '9') {
+                return -1;
+            }
+            value = value * 10 + (c - '0');
+        }
+        return value;
+    }
+
+    private static int daysInMonth(int year, int month) {
+        if (month == 2) {
+            boolean leap = (year % 4 == 0 && year % 100 != 0) || year % 400 == 0;
+            return leap ? 29 : 28;
+        }
+        return month == 4 || month == 6 || month == 9 || month == 11 ? 30 : 31;
+    }
+
+    /**
+     * 公历日期距1970-01-01的天数
+     */
+    private static long epochDay(int year, int month, int day) {
+        int y = month <= 2 ? year - 1 : year;
+        int era = y / 400;
+        int yearOfEra = y - era * 400;
+        int dayOfYear = (153 * (month + (month > 2 ? -3 : 9)) + 2) / 5 + day - 1;
+        int dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 + dayOfYear;
+        return era * 146097L + dayOfEra - 719468;
+    }
+
+    /**
+     * biz_content的JSON格式检查，不构建对象，
+     * 顺带取出顶层的timeout_express、time_expire和out_trade_no
+     */
+    private static final class BizContentScanner {
+        private final String s;
+        int pos = 0;
+        String timeoutExpress;
+        String timeExpire;
+        String outTradeNo;
+
+        BizContentScanner(String s) {
+            this.s = s;
+        }
+
+        boolean scan() {
+            skipWhitespace();
+            if (!object(0)) {
+                return false;
+            }
+            skipWhitespace();
+            return pos == s.length();
+        }
+
+        private boolean object(int depth) {
+            if (depth > MAX_JSON_DEPTH || !consume('{')) {
+                return false;
+            }
+            skipWhitespace();
+            if (consume('}')) {
+                return true;
+            }
+            while (true) {
+                skipWhitespace();
+                int keyStart = pos + 1;
+                if (!string()) {
+                    return false;
+                }
+                int keyEnd = pos - 1;
+                skipWhitespace();
+                if (!consume(':')) {
+                    return false;
+                }
+                skipWhitespace();
+                int valueStart = pos;
+                if (!value(depth)) {
+                    return false;
+                }
+                if (depth == 0 && s.charAt(valueStart) == '"') {
+                    capture(keyStart, keyEnd, valueStart + 1, pos - 1);
+                }
+                skipWhitespace();
+                if (consume('}')) {
+                    return true;
+                }
+                if (!consume(',')) {
+                    return false;
+                }
+            }
+        }
+
+        private boolean array(int depth) {
+            if (depth > MAX_JSON_DEPTH || !consume('[')) {
+                return false;
+            }
+            skipWhitespace();
+            if (consume(']')) {
+                return true;
+            }
+            while (true) {
+                skipWhitespace();
+                if (!value(depth)) {
+                    return false;
+                }
+                skipWhitespace();
+                if (consume(']')) {
+                    return true;
+                }
+                if (!consume(',')) {
+                    return false;
+                }
+            }
+        }
+
+        private boolean value(int depth) {
+            if (pos >= s.length()) {
+                return false;
+            }
+            char c = s.charAt(pos);
+            switch (c) {
+                case '{':
+                    return object(depth + 1);
+                case '[':
+                    return array(depth + 1);
+                case '"':
+                    return string();
+                case 't':
+                    return literal("true");
+                case 'f':
+                    return literal("false");
+                case 'n':
+                    return literal("null");
+                default:
+                    return number();
+            }
+        }
+
+        private boolean string() {
+            if (!consume('"')) {
+                return false;
+            }
+            while (pos < s.length()) {
+                char c = s.charAt(pos++);
+                if (c == '"') {
+                    return true;
+                }
+                if (c == '\\') {
+                    if (pos >= s.length()) {
+                        return false;
+                    }
+                    char escaped = s.charAt(pos++);
+                    if (escaped == 'u') {
+                        if (pos + 4 > s.length()) {
+                            return false;
+                        }
+                        for (int i = 0; i < 4; i++) {
+                            if (Character.digit(s.charAt(pos++), 16) < 0) {
+                                return false;
+                            }
+                        }
+                    } else if ("\"\\/bfnrt".indexOf(escaped) < 0) {
+                        return false;
+                    }
+                } else if (c < 0x20) {
+                    return false;
+                }
+            }
+            return false;
+        }
+
+        private boolean number() {
+            int start = pos;
+            consume('-');
+            int intStart = pos;
+            while (pos < s.length() && Character.isDigit(s.charAt(pos))) {
+                pos++;
+            }
+            if (pos == intStart || (s.charAt(intStart) == '0' && pos - intStart > 1)) {
+                return false;
+            }
+            if (consume('.') && !skipDigits()) {
+                return false;
+            }
+            if (pos < s.length() && (s.charAt(pos) == 'e' || s.charAt(pos) == 'E')) {
+                pos++;
+                if (!consume('+')) {
+                    consume('-');
+                }
+                if (!skipDigits()) {
+                    return false;
+                }
+            }
+            return pos > start;
+        }
+
+        private boolean skipDigits() {
+            int start = pos;
+            while (pos < s.length() && Character.isDigit(s.charAt(pos))) {
+                pos++;
+            }
+            return pos > start;
+        }
+
+        private boolean literal(String word) {
+            if (!s.startsWith(word, pos)) {
+                return false;
+            }
+            pos += word.length();
+            return true;
+        }
+
+        private boolean consume(char c) {
+            if (pos < s.length() && s.charAt(pos) == c) {
+                pos++;
+                return true;
+            }
+            return false;
+        }
+
+        private void skipWhitespace() {
+            while (pos < s.length()) {
+                char c = s.charAt(pos);
+                if (c != ' ' && c != '\t' && c != '\n' && c != '\r') {
+                    return;
+                }
+                pos++;
+            }
+        }
+
+        /**
+         * 这几个字段的值不含转义字符，直接截取
+         */
+        private void capture(int keyStart, int keyEnd, int valueStart, int valueEnd) {
+            int keyLength = keyEnd - keyStart;
+            if (keyLength == 15 && s.startsWith("timeout_express", keyStart)) {
+                timeoutExpress = s.substring(valueStart, valueEnd);
+            } else if (keyLength == 11 && s.startsWith("time_expire", keyStart)) {
+                timeExpire = s.substring(valueStart, valueEnd);
+            } else if (keyLength == 12 && s.startsWith("out_trade_no", keyStart)) {
+                outTradeNo = s.substring(valueStart, valueEnd);
+            }
+        }
+    }
+}
@@ -0,0 +1,235 @@
+package com.inkbottle.alipayrn;
+
+import java.io.UnsupportedEncodingException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 订单幂等层
+ * 同一订单（优先按biz_content中的out_trade_no，取不到时按完整订单字符串的摘要）的并发请求合并到进行中的那一笔支付上，
+ * 已得到确定结果的订单在有限时间内直接返回缓存的结果，不再重新拉起支付宝。
+ * 只缓存9000（成功）和8000（处理中）：用户取消或失败后重试需要重新拉起支付宝。
+ *
+ * @param <P> 结果的接收方，模块中为React Native的Promise
+ */
+final class PaymentDeduplicator<P> {
+    static final int DEFAULT_CAPACITY = 32;
+    static final long DEFAULT_TTL_MILLIS = 60_000;
+
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    /**
+     * 缓存的结果
+     */
+    static final class CachedResult {
+        final AlipayResult result;
+        final String paymentId;   // 产生该结果的支付ID
+        final long expiresAtNanos;
+
+        CachedResult(AlipayResult result, String paymentId, long expiresAtNanos) {
+            this.result = result;
+            this.paymentId = paymentId;
+            this.expiresAtNanos = expiresAtNanos;
+        }
+    }
+
+    private static final class InFlight<P> {
+        final String key;
+        final List<P> followers = new ArrayList<>(1);
+
+        InFlight(String key) {
+            this.key = key;
+        }
+    }
+
+    private final LinkedHashMap<String, CachedResult> completed = new LinkedHashMap<>(16, 0.75f, true);
+    private final HashMap<String, InFlight<P>> inFlightByKey = new HashMap<>();
+    private final HashMap<String, InFlight<P>> inFlightByPaymentId = new HashMap<>();
+    private int capacity = DEFAULT_CAPACITY;
+    private long ttlNanos = DEFAULT_TTL_MILLIS * 1_000_000L;
+
+    private long hitCount = 0;
+    private long missCount = 0;
+    private long coalescedCount = 0;
+    private long expiredCount = 0;
+
+    /**
+     * 计算订单的幂等键
+     * 能从biz_content中找到out_trade_no时使用商户订单号，这样重新签名（时间戳不同）的同一订单也能命中；
+     * 否则使用完整订单字符串的摘要
+     *
+     * @param outTradeNo 调用方已经用{@link #findOutTradeNo(String)}取出的商户订单号，没有时为null，
+     *                   由调用方传入以免每次支付重复解码和扫描biz_content
+     */
+    static String keyOf(String orderInfo, String outTradeNo) {
+        return outTradeNo != null ? "otn:" + outTradeNo : "order:" + digestOf(orderInfo);
+    }
+
+    /**
+     * 查询已完成的结果
+     *
+     * @return 未过期的缓存结果，没有时返回null
+     */
+    synchronized CachedResult lookup(String key) {
+        CachedResult cached = completed.get(key);
+        if (cached != null && cached.expiresAtNanos - System.nanoTime() <= 0) {
+            completed.remove(key);
+            expiredCount++;
+            cached = null;
+        }
+        if (cached != null) {
+            hitCount++;
+        } else {
+            missCount++;
+        }
+        return cached;
+    }
+
+    /**
+     * 尝试加入同一订单正在进行的支付
+     *
+     * @return 成功加入时返回true，结果会在该支付完成时通过complete返回
+     */
+    synchronized boolean attach(String key, P receiver) {
+        InFlight<P> inFlight = inFlightByKey.get(key);
+        if (inFlight == null) {
+            return false;
+        }
+        inFlight.followers.add(receiver);
+        coalescedCount++;
+        return true;
+    }
+
+    /**
+     * 登记一笔新发起的支付
+     */
+    synchronized void begin(String key, String paymentId) {
+        InFlight<P> inFlight = new InFlight<>(key);
+        inFlightByKey.put(key, inFlight);
+        inFlightByPaymentId.put(paymentId, inFlight);
+    }
+
+    /**
+     * 支付完成，按需缓存结果
+     *
+     * @return 合并到这笔支付上的其他接收方
+     */
+    synchronized List<P> complete(String paymentId, AlipayResult result) {
+        InFlight<P> inFlight = remove(paymentId);
+        if (inFlight == null) {
+            return Collections.emptyList();
+        }
+        if (isCacheable(result) && capacity > 0) {
+            completed.put(inFlight.key, new CachedResult(result, paymentId, System.nanoTime() + ttlNanos));
+            evictOverflow();
+        }
+        return inFlight.followers;
+    }
+
+    /**
+     * 支付未得到结果就结束（任务被拒绝、超时或取消），不缓存
+     *
+     * @return 合并到这笔支付上的其他接收方，调用方需要reject
+     */
+    synchronized List<P> abort(String paymentId) {
+        InFlight<P> inFlight = remove(paymentId);
+        return inFlight != null ? inFlight.followers : Collections.<P>emptyList();
+    }
+
+    /**
+     * 修改缓存容量和有效期，容量为0时不缓存结果（仍会合并进行中的请求）
+     */
+    synchronized void configure(int capacity, long ttlMillis) {
+        if (capacity < 0 || ttlMillis < 0) {
+            throw new IllegalArgumentException("capacity和ttl不能为负数");
+        }
+        this.capacity = capacity;
+        this.ttlNanos = ttlMillis * 1_000_000L;
+        evictOverflow();
+    }
+
+    synchronized void clear() {
+        completed.clear();
+    }
+
+    synchronized int size() {
+        return completed.size();
+    }
+
+    synchronized int getCapacity() {
+        return capacity;
+    }
+
+    synchronized long getTtlMillis() {
+        return ttlNanos / 1_000_000L;
+    }
+
+    synchronized long getHitCount() {
+        return hitCount;
+    }
+
+    synchronized long getMissCount() {
+        return missCount;
+    }
+
+    synchronized long getCoalescedCount() {
+        return coalescedCount;
+    }
+
+    synchronized long getExpiredCount() {
+        return expiredCount;
+    }
+
+    static boolean isCacheable(AlipayResult result) {
+        return result.resultStatus == AlipayResult.STATUS_SUCCESS
+                || result.resultStatus == AlipayResult.STATUS_PROCESSING;
+    }
+
+    private InFlight<P> remove(String paymentId) {
+        InFlight<P> inFlight = inFlightByPaymentId.remove(paymentId);
+        if (inFlight != null && inFlightByKey.get(inFlight.key) == inFlight) {
+            inFlightByKey.remove(inFlight.key);
+        }
+        return inFlight;
+    }
+
+    private void evictOverflow() {
+        Iterator<Map.Entry<String, CachedResult>> it = completed.entrySet().iterator();
+        while (completed.size() > capacity && it.hasNext()) {
+            it.next();
+            it.remove();
+        }
+    }
+
+    /**
+     * 取出订单biz_content顶层的out_trade_no，见{@link OrderValidator#findOutTradeNo}
+     */
+    static String findOutTradeNo(String orderInfo) {
+        return OrderValidator.findOutTradeNo(orderInfo);
+    }
+
+    /**
+     * 完整订单字符串的SHA-256，作为取不到out_trade_no时的幂等键，不在内存中保留订单原文
+     */
+    private static String digestOf(String orderInfo) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(orderInfo.getBytes("UTF-8"));
+            char[] hex = new char[digest.length * 2];
+            for (int i = 0; i < digest.length; i++) {
+                hex[i * 2] = HEX[(digest[i] >> 4) & 0xF];
+                hex[i * 2 + 1] = HEX[digest[i] & 0xF];
+            }
+            return new String(hex);
+        } catch (NoSuchAlgorithmException | UnsupportedEncodingException e) {
+            // 所有Java平台都提供SHA-256和UTF-8
+            throw new IllegalStateException(e);
+        }
+    }
+}
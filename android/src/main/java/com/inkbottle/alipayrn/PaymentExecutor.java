@@ -0,0 +1,227 @@
+package com.inkbottle.alipayrn;
+
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 支付任务执行器
+ * 使用有界线程池执行PayTask/AuthTask等耗时操作，避免每次调用都创建新线程
+ */
+class PaymentExecutor {
+
+    static final String POLICY_ABORT = "abort";                 // 队列已满时拒绝新任务
+    static final String POLICY_DISCARD_OLDEST = "discardOldest"; // 队列已满时丢弃最早排队的任务
+
+    static final int DEFAULT_CORE_POOL_SIZE = 2;
+    static final int DEFAULT_MAX_POOL_SIZE = 2;
+    static final int DEFAULT_QUEUE_CAPACITY = 8;
+    private static final long KEEP_ALIVE_SECONDS = 30;
+
+    /**
+     * 任务被拒绝时的回调，用于通知调用方（例如reject对应的Promise）
+     */
+    interface RejectionListener {
+        void onRejected(String reason);
+    }
+
+    private final String threadNamePrefix;
+    private final AtomicInteger threadCounter = new AtomicInteger();
+    private final ThreadFactory threadFactory = new ThreadFactory() {
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread thread = new Thread(r, threadNamePrefix + threadCounter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    };
+
+    private ThreadPoolExecutor executor;
+    private int corePoolSize = DEFAULT_CORE_POOL_SIZE;
+    private int maxPoolSize = DEFAULT_MAX_POOL_SIZE;
+    private int queueCapacity = DEFAULT_QUEUE_CAPACITY;
+    private String rejectionPolicy = POLICY_ABORT;
+    private boolean isShutdown = false;
+
+    PaymentExecutor() {
+        this("AlipayPayment-worker-", DEFAULT_CORE_POOL_SIZE, DEFAULT_MAX_POOL_SIZE, DEFAULT_QUEUE_CAPACITY);
+    }
+
+    /**
+     * 创建独立的执行器，例如不应与支付任务争用线程的H5链接拦截
+     *
+     * @param threadNamePrefix 线程名前缀
+     */
+    PaymentExecutor(String threadNamePrefix, int corePoolSize, int maxPoolSize, int queueCapacity) {
+        this.threadNamePrefix = threadNamePrefix;
+        this.corePoolSize = corePoolSize;
+        this.maxPoolSize = maxPoolSize;
+        this.queueCapacity = queueCapacity;
+        this.executor = createExecutor();
+    }
+
+    /**
+     * 重新配置线程池
+     * 队列容量无法在运行中调整，因此会创建新的线程池，旧线程池中已提交的任务继续执行完毕
+     *
+     * @param corePoolSize 核心线程数
+     * @param maxPoolSize 最大线程数
+     * @param queueCapacity 等待队列容量
+     * @param rejectionPolicy 拒绝策略，{@link #POLICY_ABORT} 或 {@link #POLICY_DISCARD_OLDEST}
+     */
+    synchronized void configure(int corePoolSize, int maxPoolSize, int queueCapacity, String rejectionPolicy) {
+        if (corePoolSize < 1 || maxPoolSize < corePoolSize || queueCapacity < 1) {
+            throw new IllegalArgumentException("线程池参数不合法: corePoolSize=" + corePoolSize
+                    + ", maxPoolSize=" + maxPoolSize + ", queueCapacity=" + queueCapacity);
+        }
+        if (!POLICY_ABORT.equals(rejectionPolicy) && !POLICY_DISCARD_OLDEST.equals(rejectionPolicy)) {
+            throw new IllegalArgumentException("不支持的拒绝策略: " + rejectionPolicy);
+        }
+        if (isShutdown) {
+            throw new IllegalStateException("执行器已关闭");
+        }
+
+        this.corePoolSize = corePoolSize;
+        this.maxPoolSize = maxPoolSize;
+        this.queueCapacity = queueCapacity;
+        this.rejectionPolicy = rejectionPolicy;
+
+        ThreadPoolExecutor previous = executor;
+        executor = createExecutor();
+        previous.shutdown();
+        if (AlipayLog.isLoggable(AlipayLog.DEBUG)) {
+            AlipayLog.d("支付线程池已重新配置: core={}, max={}, queue={}, policy={}", corePoolSize, maxPoolSize,
+                    queueCapacity, rejectionPolicy);
+        }
+    }
+
+    /**
+     * 提交任务
+     *
+     * @param task 要执行的任务
+     * @param listener 任务被拒绝（队列已满、被丢弃或执行器已关闭）时的回调
+     */
+    void execute(Runnable task, RejectionListener listener) {
+        ThreadPoolExecutor current;
+        synchronized (this) {
+            if (isShutdown) {
+                listener.onRejected("执行器已关闭");
+                return;
+            }
+            current = executor;
+        }
+        current.execute(new Job(task, listener));
+    }
+
+    synchronized int getCorePoolSize() {
+        return corePoolSize;
+    }
+
+    synchronized int getMaxPoolSize() {
+        return maxPoolSize;
+    }
+
+    synchronized int getQueueCapacity() {
+        return queueCapacity;
+    }
+
+    synchronized String getRejectionPolicy() {
+        return rejectionPolicy;
+    }
+
+    synchronized int getActiveCount() {
+        return executor.getActiveCount();
+    }
+
+    synchronized int getQueuedCount() {
+        return executor.getQueue().size();
+    }
+
+    /**
+     * 关闭执行器，排队中尚未执行的任务会收到拒绝回调
+     */
+    void shutdown() {
+        ThreadPoolExecutor current;
+        synchronized (this) {
+            if (isShutdown) {
+                return;
+            }
+            isShutdown = true;
+            current = executor;
+        }
+        for (Runnable pending : current.shutdownNow()) {
+            if (pending instanceof Job) {
+                ((Job) pending).listener.onRejected("执行器已关闭");
+            }
+        }
+    }
+
+    private ThreadPoolExecutor createExecutor() {
+        BlockingQueue<Runnable> queue = new ArrayBlockingQueue<>(queueCapacity);
+        ThreadPoolExecutor pool = new ThreadPoolExecutor(
+                corePoolSize,
+                maxPoolSize,
+                KEEP_ALIVE_SECONDS,
+                TimeUnit.SECONDS,
+                queue,
+                threadFactory,
+                POLICY_DISCARD_OLDEST.equals(rejectionPolicy) ? DISCARD_OLDEST : ABORT);
+        // 空闲时不保留线程，避免常驻
+        pool.allowCoreThreadTimeOut(true);
+        return pool;
+    }
+
+    private static final RejectedExecutionHandler ABORT = new RejectedExecutionHandler() {
+        @Override
+        public void rejectedExecution(Runnable r, ThreadPoolExecutor pool) {
+            notifyRejected(r, pool.isShutdown() ? "执行器已关闭" : "支付任务队列已满");
+        }
+    };
+
+    private static final RejectedExecutionHandler DISCARD_OLDEST = new RejectedExecutionHandler() {
+        @Override
+        public void rejectedExecution(Runnable r, ThreadPoolExecutor pool) {
+            if (pool.isShutdown()) {
+                notifyRejected(r, "执行器已关闭");
+                return;
+            }
+            Runnable oldest = pool.getQueue().poll();
+            if (oldest != null) {
+                notifyRejected(oldest, "排队任务已被新任务替换");
+            }
+            if (!pool.getQueue().offer(r)) {
+                notifyRejected(r, "支付任务队列已满");
+            }
+        }
+    };
+
+    private static void notifyRejected(Runnable r, String reason) {
+        AlipayLog.w("支付任务被拒绝: {}", reason);
+        if (r instanceof Job) {
+            ((Job) r).listener.onRejected(reason);
+        }
+    }
+
+    /**
+     * 携带拒绝回调的任务包装
+     */
+    private static final class Job implements Runnable {
+        final Runnable task;
+        final RejectionListener listener;
+
+        Job(Runnable task, RejectionListener listener) {
+            this.task = task;
+            this.listener = listener;
+        }
+
+        @Override
+        public void run() {
+            task.run();
+        }
+    }
+}
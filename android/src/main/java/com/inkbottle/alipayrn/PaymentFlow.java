@@ -0,0 +1,715 @@
+package com.inkbottle.alipayrn;
+
+import java.lang.ref.WeakReference;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 支付和授权流程
+ * 从JS调用进入到Promise完成之间与Android无关的部分：订单去重、支付状态机、结果协调、超时、待确认日志、
+ * 订单结果索引、授权结果缓存，以及在支付线程中调用SDK、切回主线程返回结果的任务。
+ * AlipayModule负责读取参数、提供Activity、把结果转换为WritableMap并发送事件；
+ * 压力检查和内存检查在JVM中直接驱动这个类，检查的就是模块使用的流程。
+ *
+ * 工作线程任务和主线程任务都是静态类，只持有纯Java的协作对象、值对象和弱引用，
+ * 不会因为SDK长时间未返回而持有流程、模块、Activity或Promise。
+ *
+ * @param <H> 调用SDK所需的宿主，模块中为Activity
+ * @param <P> 等待结果的Promise
+ */
+final class PaymentFlow<H, P> {
+
+    /**
+     * 流程与模块之间的接口
+     * 除resolveHost外都在主线程中调用（同步失败时在调用线程中调用）
+     */
+    interface Host<H, P> {
+        /**
+         * 在支付线程中取得调用SDK的宿主，排队中的宿主已销毁时返回替代的宿主
+         *
+         * @param queued 发起时的宿主，已被回收时为null
+         * @return 没有可用的宿主时返回null
+         */
+        H resolveHost(H queued);
+
+        /**
+         * 已占用支付槽位，即将在支付线程中调用SDK
+         *
+         * @param outTradeNo 从订单中解析的商户订单号，解析失败时为null
+         */
+        void onPaymentLaunched(String paymentId, String outTradeNo);
+
+        /**
+         * 支付拿到结果：发送结果事件并完成Promise
+         */
+        void onPaymentResult(P promise, String paymentId, AlipayResult result);
+
+        /**
+         * 完成合并到同一订单的请求或命中订单结果缓存的请求，不发送事件
+         */
+        void resolvePayment(P promise, String paymentId, AlipayResult result, boolean fromCache);
+
+        /**
+         * 之前进程发起的支付拿到结果，Promise已随进程消失，只发送事件
+         */
+        void onPaymentRecovered(String paymentId, AlipayResult result);
+
+        void resolveAuth(P promise, Map<String, String> result, boolean fromCache);
+
+        void reject(P promise, String code, String message);
+    }
+
+    final PaymentStateMachine paymentState = new PaymentStateMachine();
+    final PaymentResultCoordinator<P> resultCoordinator = new PaymentResultCoordinator<>();
+    final PaymentDeduplicator<P> deduplicator = new PaymentDeduplicator<>();
+    final OrderRecordIndex orderIndex = new OrderRecordIndex();
+    final SdkCallTracker sdkCalls = new SdkCallTracker();
+    final AuthResultCache authCache = new AuthResultCache();
+    final PendingPromiseRegistry<P> authPromises = new PendingPromiseRegistry<>();
+    final PaymentMetrics metrics = new PaymentMetrics();
+
+    private final Host<H, P> host;
+    private final PaymentExecutor executor;
+    private final DeadlineScheduler deadlines;
+    private final PaymentJournal journal;
+    private final MainThreadDispatcher mainThread;
+    // 交给工作线程、调度线程的任务通过它回到流程，流程（和持有它的模块）销毁后这些任务不会阻止其被回收
+    private final WeakReference<PaymentFlow<H, P>> selfRef = new WeakReference<>(this);
+    private final AtomicLong authSequence = new AtomicLong();
+    // payV2/authV2的调用入口，沙箱模式下可替换为本地模拟实现
+    private volatile AlipayGateway<H> gateway;
+
+    /**
+     * @param executor 执行SDK调用的支付线程池
+     * @param deadlines 支付/授权的超时调度
+     * @param journal 待确认支付日志，需已open
+     * @param mainThread 返回结果的线程
+     * @param gateway 初始的SDK调用入口
+     */
+    PaymentFlow(Host<H, P> host, PaymentExecutor executor, DeadlineScheduler deadlines, PaymentJournal journal,
+                MainThreadDispatcher mainThread, AlipayGateway<H> gateway) {
+        this.host = host;
+        this.executor = executor;
+        this.deadlines = deadlines;
+        this.journal = journal;
+        this.mainThread = mainThread;
+        this.gateway = gateway;
+    }
+
+    AlipayGateway<H> getGateway() {
+        return gateway;
+    }
+
+    /**
+     * 替换SDK调用入口，之后发起的调用生效
+     *
+     * @return 之前的调用入口
+     */
+    AlipayGateway<H> setGateway(AlipayGateway<H> gateway) {
+        AlipayGateway<H> previous = this.gateway;
+        this.gateway = gateway;
+        return previous;
+    }
+
+    /**
+     * 发起支付，参数已由调用方校验
+     *
+     * @param activity 调用SDK的宿主
+     * @param timeoutMillis 超时时间，小于等于0时不超时
+     * @param bridgeEntryNanos 进入桥接方法的时间，用于延迟统计
+     */
+    void pay(H activity, String orderInfo, long timeoutMillis, P promise, long bridgeEntryNanos) {
+        // 商户订单号只解析一次，同时用于幂等键、订单索引和结果核对
+        final String outTradeNo = PaymentDeduplicator.findOutTradeNo(orderInfo);
+        // 同一订单已有确定结果时直接返回，不再拉起支付宝
+        final String orderKey = PaymentDeduplicator.keyOf(orderInfo, outTradeNo);
+        PaymentDeduplicator.CachedResult cached = deduplicator.lookup(orderKey);
+        if (cached != null) {
+            AlipayLog.d("命中订单结果缓存: paymentId={}", cached.paymentId);
+            host.resolvePayment(promise, cached.paymentId, cached.result, true);
+            return;
+        }
+        // 同一订单正在支付中时合并到该笔支付，等待其结果
+        if (deduplicator.attach(orderKey, promise)) {
+            AlipayLog.d("合并到进行中的同一订单支付");
+            return;
+        }
+
+        // 超时或取消的支付只结束了等待，其payV2仍在支付线程中阻塞，返回前不发起新的支付
+        if (sdkCalls.isBusy()) {
+            AlipayLog.d("支付请求被拒绝: 上一次支付宝调用尚未返回");
+            host.reject(promise, "PAY_IN_PROGRESS", "上一次支付宝调用尚未返回，请稍后再试");
+            return;
+        }
+
+        // 通过状态机占用支付槽位，已有支付在进行中时快速失败
+        final String paymentId = paymentState.begin();
+        if (paymentId == null) {
+            AlipayLog.d("支付请求被拒绝: 上一次支付还在进行中");
+            host.reject(promise, "PAY_IN_PROGRESS", "支付操作正在进行中，请稍后再试");
+            return;
+        }
+        resultCoordinator.register(paymentId, promise, bridgeEntryNanos);
+        deduplicator.begin(orderKey, paymentId);
+        orderIndex.launched(paymentId, outTradeNo);
+        // 先于结果发送paymentId，调用方据此在支付进行中调用cancelPayment
+        host.onPaymentLaunched(paymentId, outTradeNo);
+        // 超时后结束这笔支付，之后SDK返回的结果会被协调器当作重复结果丢弃
+        deadlines.schedule(paymentId, timeoutMillis, new PostToFlow(mainThread, selfRef, new AbortPayment(paymentId,
+                "ERR_PAYMENT_TIMEOUT", "支付超时: " + timeoutMillis + "ms内未收到支付宝返回结果")));
+
+        // 在支付线程池中进行支付操作，任务只弱引用流程和Activity，Promise留在协调器中
+        executor.execute(new PayJob<>(this, activity, paymentId, orderInfo, outTradeNo, bridgeEntryNanos),
+                new PayRejected(selfRef, paymentId));
+    }
+
+    /**
+     * 发起授权，参数已由调用方校验
+     * 命中缓存时不需要宿主，直接返回
+     *
+     * @param activity 调用SDK的宿主，为null时（且未命中缓存）以ERR_ACTIVITY_NOT_FOUND失败
+     * @param useCache 是否使用授权结果缓存
+     * @param userKey 调用方的用户标识，参与计算缓存键，可为null
+     * @param cacheTtlMillis 结果的缓存时间
+     */
+    void auth(H activity, String authInfo, long timeoutMillis, boolean useCache, String userKey,
+              long cacheTtlMillis, P promise, long bridgeEntryNanos) {
+        final String cacheKey = useCache ? AuthResultCache.keyOf(authInfo, userKey) : null;
+        final long cacheGeneration = authCache.generation();
+        if (cacheKey != null) {
+            Map<String, String> cached = authCache.lookup(cacheKey);
+            if (cached != null) {
+                AlipayLog.d("授权结果命中缓存");
+                host.resolveAuth(promise, cached, true);
+                return;
+            }
+        }
+
+        if (activity == null) {
+            host.reject(promise, "ERR_ACTIVITY_NOT_FOUND", "Activity不存在");
+            return;
+        }
+
+        // 授权不经过支付状态机，Promise登记后由超时和SDK返回中先到的一方取出
+        final String authId = "auth_" + authSequence.incrementAndGet();
+        if (!authPromises.register(authId, promise)) {
+            host.reject(promise, "ERR_MODULE_INVALIDATED", "模块已销毁");
+            return;
+        }
+        deadlines.schedule(authId, timeoutMillis, new PostToFlow(mainThread, selfRef, new RejectAuth(authId,
+                "ERR_AUTH_TIMEOUT", "授权超时: " + timeoutMillis + "ms内未收到支付宝返回结果")));
+
+        executor.execute(new AuthJob<>(this, activity, authId, authInfo, cacheKey, cacheGeneration,
+                cacheTtlMillis, bridgeEntryNanos), new AuthRejected(selfRef, authId));
+    }
+
+    /**
+     * 处理onActivityResult中解析出的支付结果，在主线程中调用
+     * 关联到当前正在SDK中的支付，与payV2返回值合并后只发送一次
+     */
+    void onActivityResult(AlipayResult result) {
+        // 结果中的商户订单号与该支付发起时的不一致时不关联，避免把其他订单的结果交给它
+        PaymentStateMachine.Snapshot state = paymentState.snapshot();
+        String paymentId = state.state == PaymentStateMachine.State.IN_SDK ? state.paymentId : null;
+        if (paymentId != null && !sdkCalls.matches(paymentId, result.outTradeNo)) {
+            AlipayLog.w("回调结果的商户订单号与当前支付不一致，不关联: paymentId={}", paymentId);
+            paymentId = null;
+        }
+        long span = PaymentTrace.begin("pay.activityResult");
+        try {
+            deliverPaymentResult(paymentId, result, PaymentResultCoordinator.Source.ACTIVITY_RESULT);
+        } finally {
+            PaymentTrace.end(span, "pay.activityResult", paymentId);
+        }
+    }
+
+    /**
+     * 在未拿到结果的情况下结束一笔支付（任务被拒绝、超时或取消）
+     * 与deliverPaymentResult通过协调器互斥，只有一方能完成Promise
+     *
+     * @return 本次调用结束了该支付时返回true
+     */
+    boolean abort(String paymentId, String code, String message) {
+        deadlines.cancel(paymentId);
+        P promise = resultCoordinator.cancel(paymentId);
+        if (promise == null) {
+            return false;
+        }
+        orderIndex.aborted(paymentId, code);
+        // 超时或取消时结果未知，日志中保留为待确认，迟到的结果仍会在deliverPaymentResult中记录
+        paymentState.finish(paymentId);
+        AlipayLog.w("支付已结束: paymentId={}, code={}", paymentId, code);
+        host.reject(promise, code, message);
+        for (P follower : deduplicator.abort(paymentId)) {
+            host.reject(follower, code, message);
+        }
+        return true;
+    }
+
+    /**
+     * 强制将支付状态机重置为空闲
+     * 仅用于手动重置，正常流程由各支付自己的paymentId结束
+     *
+     * @return 被重置的paymentId，原本就空闲时返回null
+     */
+    String reset() {
+        String paymentId = paymentState.reset();
+        AlipayLog.d("支付状态已重置: paymentId={}", paymentId);
+        if (paymentId != null) {
+            // 被重置的支付不再接受合并，已合并的请求直接失败，避免一直等待
+            for (P follower : deduplicator.abort(paymentId)) {
+                host.reject(follower, "ERR_PAYMENT_RESET", "支付状态已被重置");
+            }
+        }
+        return paymentId;
+    }
+
+    /**
+     * 尚未完成的支付和授权统一失败，Promise不会遗留在工作线程或消息队列中
+     */
+    void invalidate() {
+        for (String paymentId : resultCoordinator.getPendingIds()) {
+            abort(paymentId, "ERR_MODULE_INVALIDATED", "模块已销毁");
+        }
+        for (P promise : authPromises.drain()) {
+            host.reject(promise, "ERR_MODULE_INVALIDATED", "模块已销毁");
+        }
+    }
+
+    /**
+     * 在主线程发送支付结果
+     * payV2返回值和onActivityResult都会走到这里，由协调器保证每笔支付只发送一次事件、只resolve一次Promise
+     *
+     * @param paymentId 支付ID，无法关联时为null
+     * @param result 支付结果
+     * @param source 结果来源
+     */
+    private void deliverPaymentResult(String paymentId, AlipayResult result,
+                                      PaymentResultCoordinator.Source source) {
+        long resolveStartNanos = System.nanoTime();
+        if (paymentId != null) {
+            // 即使是超时后迟到的结果也要记录，这笔支付因此不再待确认
+            journal.completed(paymentId, result.resultStatus);
+        }
+        orderIndex.completed(paymentId, result);
+        PaymentResultCoordinator.Delivery<P> delivery = resultCoordinator.offer(paymentId, result, source);
+        if (delivery == null) {
+            if (paymentId == null && result.outTradeNo != null) {
+                // 可能是进程在支付宝中被杀死前发起的支付，到日志中按商户订单号查找
+                journal.completeByOutTradeNo(result.outTradeNo, result.resultStatus,
+                        new RecoverPayment(mainThread, selfRef, result));
+                return;
+            }
+            AlipayLog.d("忽略重复的支付结果: paymentId={}, source={}", paymentId, source);
+            return;
+        }
+
+        deadlines.cancel(paymentId);
+        paymentState.transition(paymentId, PaymentStateMachine.State.IN_SDK, PaymentStateMachine.State.RESOLVING);
+
+        host.onPaymentResult(delivery.receiver, paymentId, result);
+        // 合并到这笔支付的重复请求各自得到一份结果
+        for (P follower : deduplicator.complete(paymentId, result)) {
+            host.resolvePayment(follower, paymentId, result, false);
+        }
+
+        long endNanos = System.nanoTime();
+        metrics.pay.record(PaymentMetrics.Phase.RESOLVE, endNanos - resolveStartNanos);
+        metrics.pay.record(PaymentMetrics.Phase.TOTAL, endNanos - delivery.startNanos);
+        metrics.pay.countStatus(result.resultStatus);
+
+        // 标记支付已结束
+        if (paymentState.finish(paymentId)) {
+            AlipayLog.d("支付回调后自动重置支付状态: paymentId={}, source={}", paymentId, source);
+        }
+    }
+
+    /**
+     * 发送之前进程发起的支付的结果
+     */
+    private void deliverRecoveredPayment(String paymentId, AlipayResult result) {
+        orderIndex.completed(paymentId, result);
+        AlipayLog.w("找回之前进程发起的支付结果: paymentId={}", paymentId);
+        host.onPaymentRecovered(paymentId, result);
+    }
+
+    /**
+     * 在主线程返回授权结果，超时后迟到的结果只记录日志
+     */
+    private void completeAuth(String authId, Map<String, String> authResult, long postNanos,
+                              long bridgeEntryNanos) {
+        long resolveStartNanos = System.nanoTime();
+        metrics.auth.record(PaymentMetrics.Phase.MAIN_THREAD_HOP, resolveStartNanos - postNanos);
+        deadlines.cancel(authId);
+        P promise = authPromises.take(authId);
+        if (promise == null) {
+            AlipayLog.d("授权已结束，忽略迟到的结果: {}", authId);
+            return;
+        }
+
+        host.resolveAuth(promise, authResult, false);
+
+        long endNanos = System.nanoTime();
+        metrics.auth.record(PaymentMetrics.Phase.RESOLVE, endNanos - resolveStartNanos);
+        metrics.auth.record(PaymentMetrics.Phase.TOTAL, endNanos - bridgeEntryNanos);
+        metrics.auth.countStatus(AlipayResultParser.parseStatus(authResult.get("resultStatus")));
+    }
+
+    /**
+     * 在未拿到结果的情况下结束一次授权（超时、任务被拒绝）
+     */
+    private void rejectAuth(String authId, String code, String message) {
+        deadlines.cancel(authId);
+        P promise = authPromises.take(authId);
+        if (promise != null) {
+            host.reject(promise, code, message);
+        }
+    }
+
+    /**
+     * 在支付线程中取得宿主，流程已被回收时返回null
+     */
+    private static <H> H resolveHost(WeakReference<H> hostRef, WeakReference<? extends PaymentFlow<H, ?>> flowRef) {
+        PaymentFlow<H, ?> flow = flowRef.get();
+        return flow != null ? flow.host.resolveHost(hostRef.get()) : null;
+    }
+
+    /**
+     * 支付任务，在支付线程中执行
+     */
+    private static final class PayJob<H> implements Runnable {
+        private final WeakReference<? extends PaymentFlow<H, ?>> flowRef;
+        private final WeakReference<H> activityRef;
+        private final MainThreadDispatcher mainThread;
+        private final PaymentMetrics metrics;
+        private final PaymentJournal journal;
+        private final PaymentStateMachine paymentState;
+        private final SdkCallTracker sdkCalls;
+        private final AlipayGateway<H> gateway;
+        private final String paymentId;
+        private final String orderInfo;
+        private final String outTradeNo;
+        private final long bridgeEntryNanos;
+
+        PayJob(PaymentFlow<H, ?> flow, H activity, String paymentId, String orderInfo, String outTradeNo,
+               long bridgeEntryNanos) {
+            this.flowRef = flow.selfRef;
+            this.activityRef = new WeakReference<>(activity);
+            this.mainThread = flow.mainThread;
+            this.metrics = flow.metrics;
+            this.journal = flow.journal;
+            this.paymentState = flow.paymentState;
+            this.sdkCalls = flow.sdkCalls;
+            this.gateway = flow.gateway;
+            this.paymentId = paymentId;
+            this.orderInfo = orderInfo;
+            this.outTradeNo = outTradeNo;
+            this.bridgeEntryNanos = bridgeEntryNanos;
+        }
+
+        @Override
+        public void run() {
+            metrics.pay.record(PaymentMetrics.Phase.QUEUE_WAIT, System.nanoTime() - bridgeEntryNanos);
+            H activity = resolveHost(activityRef, flowRef);
+            if (activity == null) {
+                mainThread.post(flowRef, new AbortPayment(paymentId, "ERR_ACTIVITY_NOT_FOUND",
+                        "Activity已销毁，支付未发起"));
+                return;
+            }
+            // 先登记再进入IN_SDK，onActivityResult关联到这笔支付时一定能查到其商户订单号
+            sdkCalls.enter(paymentId, outTradeNo);
+            if (!paymentState.transition(paymentId, PaymentStateMachine.State.LAUNCHING,
+                    PaymentStateMachine.State.IN_SDK)) {
+                // 排队期间已超时、取消或被重置，Promise已被拒绝，不再拉起支付宝
+                sdkCalls.exit(paymentId);
+                AlipayLog.w("支付在发起前已结束，不再调用支付宝SDK: paymentId={}", paymentId);
+                return;
+            }
+            // 拉起支付宝之前落盘，进程在支付宝中被杀死后重启仍能查到这笔支付
+            journal.launched(paymentId, outTradeNo);
+            long workerStartNanos = System.nanoTime();
+            AlipayResult result;
+            try {
+                AlipayLog.d("开始调用支付宝SDK: paymentId={}", paymentId);
+
+                // 构造PayTask对象
+                AlipayGateway.Call alipay = gateway.newPayCall(activity);
+                long sdkStartNanos = System.nanoTime();
+                metrics.pay.record(PaymentMetrics.Phase.TASK_INIT, sdkStartNanos - workerStartNanos);
+
+                // 调用支付接口，获取支付结果
+                long span = PaymentTrace.begin("pay.sdk");
+                Map<String, String> rawResult;
+                try {
+                    rawResult = alipay.invoke(orderInfo);
+                } finally {
+                    PaymentTrace.end(span, "pay.sdk", paymentId);
+                }
+                metrics.pay.record(PaymentMetrics.Phase.SDK_CALL, System.nanoTime() - sdkStartNanos);
+                AlipayLog.d("支付宝支付完成，结果: {}", rawResult);
+
+                // 在支付线程中完成解析，主线程只负责发送
+                result = AlipayResultParser.fromMap(rawResult);
+            } catch (Exception e) {
+                AlipayLog.e("支付过程异常: {}", e.getMessage());
+
+                // 构建错误信息
+                result = AlipayResult.error(AlipayResult.STATUS_FAILED, "支付过程出现异常: " + e.getMessage());
+            } finally {
+                sdkCalls.exit(paymentId);
+            }
+
+            // 切回主线程返回结果，若onActivityResult已先送达则此结果会被合并丢弃
+            mainThread.post(flowRef, new DeliverPayment(paymentId, result, System.nanoTime()));
+        }
+    }
+
+    /**
+     * 授权任务，在支付线程中执行
+     */
+    private static final class AuthJob<H> implements Runnable {
+        private final WeakReference<? extends PaymentFlow<H, ?>> flowRef;
+        private final WeakReference<H> activityRef;
+        private final MainThreadDispatcher mainThread;
+        private final PaymentMetrics metrics;
+        private final AuthResultCache authCache;
+        private final AlipayGateway<H> gateway;
+        private final String authId;
+        private final String authInfo;
+        private final String cacheKey;
+        private final long cacheGeneration;
+        private final long cacheTtlMillis;
+        private final long bridgeEntryNanos;
+
+        AuthJob(PaymentFlow<H, ?> flow, H activity, String authId, String authInfo, String cacheKey,
+                long cacheGeneration, long cacheTtlMillis, long bridgeEntryNanos) {
+            this.flowRef = flow.selfRef;
+            this.activityRef = new WeakReference<>(activity);
+            this.mainThread = flow.mainThread;
+            this.metrics = flow.metrics;
+            this.authCache = flow.authCache;
+            this.gateway = flow.gateway;
+            this.authId = authId;
+            this.authInfo = authInfo;
+            this.cacheKey = cacheKey;
+            this.cacheGeneration = cacheGeneration;
+            this.cacheTtlMillis = cacheTtlMillis;
+            this.bridgeEntryNanos = bridgeEntryNanos;
+        }
+
+        @Override
+        public void run() {
+            long workerStartNanos = System.nanoTime();
+            metrics.auth.record(PaymentMetrics.Phase.QUEUE_WAIT, workerStartNanos - bridgeEntryNanos);
+            H activity = resolveHost(activityRef, flowRef);
+            if (activity == null) {
+                mainThread.post(flowRef, new RejectAuth(authId, "ERR_ACTIVITY_NOT_FOUND",
+                        "Activity已销毁，授权未发起"));
+                return;
+            }
+            Map<String, String> result;
+            try {
+                AlipayGateway.Call authTask = gateway.newAuthCall(activity);
+                long sdkStartNanos = System.nanoTime();
+                metrics.auth.record(PaymentMetrics.Phase.TASK_INIT, sdkStartNanos - workerStartNanos);
+                long span = PaymentTrace.begin("auth.sdk");
+                try {
+                    result = authTask.invoke(authInfo);
+                } finally {
+                    PaymentTrace.end(span, "auth.sdk", authId);
+                }
+                metrics.auth.record(PaymentMetrics.Phase.SDK_CALL, System.nanoTime() - sdkStartNanos);
+            } catch (Exception e) {
+                HashMap<String, String> errorResult = new HashMap<>();
+                errorResult.put("resultStatus", "4000");
+                errorResult.put("memo", "授权过程出现异常: " + e.getMessage());
+                result = errorResult;
+            }
+
+            if (cacheKey != null) {
+                authCache.put(cacheKey, cacheGeneration, result, cacheTtlMillis);
+            }
+
+            mainThread.post(flowRef, new DeliverAuth(authId, result, System.nanoTime(), bridgeEntryNanos));
+        }
+    }
+
+    private static final class DeliverPayment implements MainThreadDispatcher.Action<PaymentFlow<?, ?>> {
+        private final String paymentId;
+        private final AlipayResult result;
+        private final long postNanos;
+
+        DeliverPayment(String paymentId, AlipayResult result, long postNanos) {
+            this.paymentId = paymentId;
+            this.result = result;
+            this.postNanos = postNanos;
+        }
+
+        @Override
+        public void run(PaymentFlow<?, ?> flow) {
+            flow.metrics.pay.record(PaymentMetrics.Phase.MAIN_THREAD_HOP, System.nanoTime() - postNanos);
+            long span = PaymentTrace.begin("pay.deliver");
+            try {
+                flow.deliverPaymentResult(paymentId, result, PaymentResultCoordinator.Source.SDK_RETURN);
+            } finally {
+                PaymentTrace.end(span, "pay.deliver", paymentId);
+            }
+        }
+    }
+
+    /**
+     * 日志写线程中的查找结果，找到时切回主线程发送
+     */
+    private static final class RecoverPayment implements PaymentJournal.Callback<String> {
+        private final MainThreadDispatcher mainThread;
+        private final WeakReference<? extends PaymentFlow<?, ?>> flowRef;
+        private final AlipayResult result;
+
+        RecoverPayment(MainThreadDispatcher mainThread, WeakReference<? extends PaymentFlow<?, ?>> flowRef,
+                       AlipayResult result) {
+            this.mainThread = mainThread;
+            this.flowRef = flowRef;
+            this.result = result;
+        }
+
+        @Override
+        public void onResult(String paymentId) {
+            if (paymentId == null) {
+                AlipayLog.d("忽略无法关联的支付结果: outTradeNo={}", result.outTradeNo);
+                return;
+            }
+            mainThread.post(flowRef, new DeliverRecoveredPayment(paymentId, result));
+        }
+    }
+
+    private static final class DeliverRecoveredPayment implements MainThreadDispatcher.Action<PaymentFlow<?, ?>> {
+        private final String paymentId;
+        private final AlipayResult result;
+
+        DeliverRecoveredPayment(String paymentId, AlipayResult result) {
+            this.paymentId = paymentId;
+            this.result = result;
+        }
+
+        @Override
+        public void run(PaymentFlow<?, ?> flow) {
+            flow.deliverRecoveredPayment(paymentId, result);
+        }
+    }
+
+    private static final class DeliverAuth implements MainThreadDispatcher.Action<PaymentFlow<?, ?>> {
+        private final String authId;
+        private final Map<String, String> result;
+        private final long postNanos;
+        private final long bridgeEntryNanos;
+
+        DeliverAuth(String authId, Map<String, String> result, long postNanos, long bridgeEntryNanos) {
+            this.authId = authId;
+            this.result = result;
+            this.postNanos = postNanos;
+            this.bridgeEntryNanos = bridgeEntryNanos;
+        }
+
+        @Override
+        public void run(PaymentFlow<?, ?> flow) {
+            long span = PaymentTrace.begin("auth.deliver");
+            try {
+                flow.completeAuth(authId, result, postNanos, bridgeEntryNanos);
+            } finally {
+                PaymentTrace.end(span, "auth.deliver", authId);
+            }
+        }
+    }
+
+    private static final class AbortPayment implements MainThreadDispatcher.Action<PaymentFlow<?, ?>> {
+        private final String paymentId;
+        private final String code;
+        private final String message;
+
+        AbortPayment(String paymentId, String code, String message) {
+            this.paymentId = paymentId;
+            this.code = code;
+            this.message = message;
+        }
+
+        @Override
+        public void run(PaymentFlow<?, ?> flow) {
+            flow.abort(paymentId, code, message);
+        }
+    }
+
+    private static final class RejectAuth implements MainThreadDispatcher.Action<PaymentFlow<?, ?>> {
+        private final String authId;
+        private final String code;
+        private final String message;
+
+        RejectAuth(String authId, String code, String message) {
+            this.authId = authId;
+            this.code = code;
+            this.message = message;
+        }
+
+        @Override
+        public void run(PaymentFlow<?, ?> flow) {
+            flow.rejectAuth(authId, code, message);
+        }
+    }
+
+    /**
+     * 超时回调：从调度线程切回主线程执行
+     */
+    private static final class PostToFlow implements Runnable {
+        private final MainThreadDispatcher mainThread;
+        private final WeakReference<? extends PaymentFlow<?, ?>> flowRef;
+        private final MainThreadDispatcher.Action<PaymentFlow<?, ?>> action;
+
+        PostToFlow(MainThreadDispatcher mainThread, WeakReference<? extends PaymentFlow<?, ?>> flowRef,
+                   MainThreadDispatcher.Action<PaymentFlow<?, ?>> action) {
+            this.mainThread = mainThread;
+            this.flowRef = flowRef;
+            this.action = action;
+        }
+
+        @Override
+        public void run() {
+            mainThread.post(flowRef, action);
+        }
+    }
+
+    private static final class PayRejected implements PaymentExecutor.RejectionListener {
+        private final WeakReference<? extends PaymentFlow<?, ?>> flowRef;
+        private final String paymentId;
+
+        PayRejected(WeakReference<? extends PaymentFlow<?, ?>> flowRef, String paymentId) {
+            this.flowRef = flowRef;
+            this.paymentId = paymentId;
+        }
+
+        @Override
+        public void onRejected(String reason) {
+            PaymentFlow<?, ?> flow = flowRef.get();
+            if (flow != null) {
+                flow.abort(paymentId, "ERR_EXECUTOR_BUSY", "支付任务无法执行: " + reason);
+            }
+        }
+    }
+
+    private static final class AuthRejected implements PaymentExecutor.RejectionListener {
+        private final WeakReference<? extends PaymentFlow<?, ?>> flowRef;
+        private final String authId;
+
+        AuthRejected(WeakReference<? extends PaymentFlow<?, ?>> flowRef, String authId) {
+            this.flowRef = flowRef;
+            this.authId = authId;
+        }
+
+        @Override
+        public void onRejected(String reason) {
+            PaymentFlow<?, ?> flow = flowRef.get();
+            if (flow != null) {
+                flow.rejectAuth(authId, "ERR_EXECUTOR_BUSY", "授权任务无法执行: " + reason);
+            }
+        }
+    }
+}
@@ -0,0 +1,452 @@
+package com.inkbottle.alipayrn;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+
+/**
+ * 待确认支付日志
+ * 以追加方式记录支付的发起和结束，进程在用户停留在支付宝期间被杀死时，
+ * 重启后仍能通过getPendingPayments知道哪些支付没有拿到结果，交给服务端对账。
+ *
+ * 文件格式: 4字节魔数 + 若干条记录，每条记录为
+ * [2字节长度][类型、时间、paymentId、文本、状态码][4字节CRC32]。
+ * 读取时遇到长度或校验不符的记录即视为写入中断，截断到最后一条完整记录。
+ * 所有读写都在单独的写线程中进行，记录数明显多于待确认数时重写文件只保留待确认的记录。
+ */
+final class PaymentJournal {
+    private static final int MAGIC = 0x41504a31; // "APJ1"
+    private static final byte TYPE_LAUNCH = 1;
+    private static final byte TYPE_COMPLETE = 2;
+    private static final byte TYPE_ABORT = 3;
+
+    private static final int COMPACT_MIN_RECORDS = 256;
+    private static final long FORCE_INTERVAL_MILLIS = 1000;
+    private static final long LAUNCH_WRITE_TIMEOUT_MILLIS = 500;
+
+    /**
+     * 未拿到结果的支付
+     */
+    static final class PendingPayment {
+        final String paymentId;
+        final String outTradeNo;       // 未能从订单中解析时为空字符串
+        final long launchedAtMillis;
+        final boolean previousSession; // 是否由之前的进程发起
+
+        PendingPayment(String paymentId, String outTradeNo, long launchedAtMillis, boolean previousSession) {
+            this.paymentId = paymentId;
+            this.outTradeNo = outTradeNo;
+            this.launchedAtMillis = launchedAtMillis;
+            this.previousSession = previousSession;
+        }
+    }
+
+    private final File file;
+    private final ExecutorService writer;
+
+    // 以下字段只在写线程中访问
+    private final LinkedHashMap<String, PendingPayment> pending = new LinkedHashMap<>();
+    private FileChannel channel;
+    private boolean opened = false;
+    private int recordCount = 0;
+    private long lastForceMillis = 0;
+    private volatile long compactionCount = 0;
+    private volatile long recoveredCount = 0;
+    private volatile long replayNanos = 0;
+
+    PaymentJournal(File file) {
+        this.file = file;
+        this.writer = new ThreadPoolExecutor(1, 1, 30, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, "AlipayPayment-journal");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        ((ThreadPoolExecutor) writer).allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * 在后台打开日志并回放，之后的查询不需要再读文件
+     */
+    void open() {
+        submit(new Runnable() {
+            @Override
+            public void run() {
+                ensureOpen();
+            }
+        });
+    }
+
+    /**
+     * 记录支付已发起，在拉起支付宝之前调用
+     * 等待写入完成（最多500ms），保证切换到支付宝后进程被杀死也能留下记录
+     */
+    void launched(final String paymentId, final String outTradeNo) {
+        final long now = System.currentTimeMillis();
+        Future<?> future = submit(new Runnable() {
+            @Override
+            public void run() {
+                if (ensureOpen()) {
+                    String tradeNo = outTradeNo != null ? outTradeNo : "";
+                    append(TYPE_LAUNCH, now, paymentId, tradeNo, 0, true);
+                    pending.put(paymentId, new PendingPayment(paymentId, tradeNo, now, false));
+                }
+            }
+        });
+        if (future == null) {
+            return;
+        }
+        try {
+            future.get(LAUNCH_WRITE_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+        } catch (Exception e) {
+            AlipayLog.w("写入支付日志超时或失败: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * 记录支付已拿到结果，未登记或已结束的paymentId会被忽略
+     */
+    void completed(final String paymentId, final int resultStatus) {
+        submit(new Runnable() {
+            @Override
+            public void run() {
+                if (ensureOpen() && pending.remove(paymentId) != null) {
+                    append(TYPE_COMPLETE, System.currentTimeMillis(), paymentId, "", resultStatus, false);
+                    maybeCompact();
+                }
+            }
+        });
+    }
+
+    /**
+     * 为无法关联的结果查找之前进程发起的支付并记录其已拿到结果
+     * 进程在用户停留在支付宝期间被杀死时，重启后onActivityResult的结果没有对应的进行中支付，
+     * 按商户订单号在之前进程留下的待确认记录中查找
+     *
+     * @param callback 回调找到的paymentId，没有匹配的记录时回调null
+     * @return 日志已关闭时返回false，回调不会被调用
+     */
+    boolean completeByOutTradeNo(final String outTradeNo, final int resultStatus,
+                                 final Callback<String> callback) {
+        return submit(new Runnable() {
+            @Override
+            public void run() {
+                String paymentId = null;
+                if (ensureOpen()) {
+                    for (PendingPayment payment : pending.values()) {
+                        if (payment.previousSession && payment.outTradeNo.equals(outTradeNo)) {
+                            paymentId = payment.paymentId;
+                            break;
+                        }
+                    }
+                }
+                if (paymentId != null) {
+                    pending.remove(paymentId);
+                    append(TYPE_COMPLETE, System.currentTimeMillis(), paymentId, "", resultStatus, true);
+                    maybeCompact();
+                }
+                callback.onResult(paymentId);
+            }
+        }) != null;
+    }
+
+    /**
+     * 查询结果的回调，在写线程中调用
+     */
+    interface Callback<T> {
+        void onResult(T value);
+    }
+
+    /**
+     * 查询未拿到结果的支付
+     *
+     * @return 日志已关闭时返回false，回调不会被调用
+     */
+    boolean pendingPayments(final Callback<List<PendingPayment>> callback) {
+        return submit(new Runnable() {
+            @Override
+            public void run() {
+                ensureOpen();
+                callback.onResult(new ArrayList<>(pending.values()));
+            }
+        }) != null;
+    }
+
+    /**
+     * 调用方已通过其他途径确认结果后，将这些支付从待确认列表中移除
+     *
+     * @param callback 回调实际移除的数量
+     * @return 日志已关闭时返回false，回调不会被调用
+     */
+    boolean acknowledge(final Collection<String> paymentIds, final Callback<Integer> callback) {
+        return submit(new Runnable() {
+            @Override
+            public void run() {
+                if (!ensureOpen()) {
+                    callback.onResult(0);
+                    return;
+                }
+                int removed = 0;
+                for (String paymentId : paymentIds) {
+                    if (pending.containsKey(paymentId)) {
+                        append(TYPE_ABORT, System.currentTimeMillis(), paymentId, "ACKNOWLEDGED", 0, false);
+                        pending.remove(paymentId);
+                        removed++;
+                    }
+                }
+                force(true);
+                maybeCompact();
+                callback.onResult(removed);
+            }
+        }) != null;
+    }
+
+    /**
+     * 写入剩余数据并停止写线程
+     */
+    void close() {
+        submit(new Runnable() {
+            @Override
+            public void run() {
+                if (channel != null) {
+                    force(true);
+                    closeQuietly();
+                }
+            }
+        });
+        writer.shutdown();
+    }
+
+    long getCompactionCount() {
+        return compactionCount;
+    }
+
+    long getRecoveredCount() {
+        return recoveredCount;
+    }
+
+    long getReplayNanos() {
+        return replayNanos;
+    }
+
+    private Future<?> submit(Runnable task) {
+        try {
+            return writer.submit(task);
+        } catch (Exception e) {
+            // 已关闭
+            return null;
+        }
+    }
+
+    private boolean ensureOpen() {
+        if (opened) {
+            return channel != null;
+        }
+        opened = true;
+        long start = System.nanoTime();
+        try {
+            File parent = file.getParentFile();
+            if (parent != null && !parent.exists()) {
+                parent.mkdirs();
+            }
+            channel = new RandomAccessFile(file, "rw").getChannel();
+            replay();
+        } catch (IOException e) {
+            AlipayLog.e("打开支付日志失败: {}", e.getMessage());
+            closeQuietly();
+        }
+        replayNanos = System.nanoTime() - start;
+        return channel != null;
+    }
+
+    /**
+     * 一次读入整个文件并回放，遇到不完整的记录时截断
+     */
+    private void replay() throws IOException {
+        long size = channel.size();
+        if (size < 4) {
+            channel.truncate(0);
+            writeHeader(channel);
+            return;
+        }
+        ByteBuffer buffer = ByteBuffer.allocate((int) size);
+        channel.position(0);
+        while (buffer.hasRemaining() && channel.read(buffer) >= 0) {
+            // 继续读取
+        }
+        buffer.flip();
+        if (buffer.getInt() != MAGIC) {
+            AlipayLog.w("支付日志格式不符，已重建");
+            channel.truncate(0);
+            writeHeader(channel);
+            return;
+        }
+
+        long validEnd = buffer.position();
+        CRC32 crc = new CRC32();
+        while (buffer.remaining() >= 2) {
+            int length = buffer.getShort() & 0xffff;
+            if (buffer.remaining() < length + 4) {
+                break;
+            }
+            byte[] payload = new byte[length];
+            buffer.get(payload);
+            crc.reset();
+            crc.update(payload, 0, length);
+            if ((int) crc.getValue() != buffer.getInt()) {
+                break;
+            }
+            apply(payload);
+            recordCount++;
+            validEnd = buffer.position();
+        }
+        if (validEnd < size) {
+            AlipayLog.w("支付日志末尾有不完整的记录，已截断");
+            channel.truncate(validEnd);
+        }
+        channel.position(validEnd);
+        recoveredCount = pending.size();
+    }
+
+    private void apply(byte[] payload) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(payload));
+        byte type = in.readByte();
+        long time = in.readLong();
+        String paymentId = in.readUTF();
+        String text = in.readUTF();
+        if (type == TYPE_LAUNCH) {
+            pending.put(paymentId, new PendingPayment(paymentId, text, time, true));
+        } else {
+            pending.remove(paymentId);
+        }
+    }
+
+    private void append(byte type, long time, String paymentId, String text, int status, boolean forceNow) {
+        try {
+            channel.write(encode(type, time, paymentId, text, status));
+            recordCount++;
+            force(forceNow);
+        } catch (IOException e) {
+            AlipayLog.e("写入支付日志失败: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * 进程被杀死时已write的数据仍在系统缓存中，fsync只用于防止断电丢失，因此按时间合并
+     */
+    private void force(boolean now) {
+        long current = System.currentTimeMillis();
+        if (!now && current - lastForceMillis < FORCE_INTERVAL_MILLIS) {
+            return;
+        }
+        try {
+            channel.force(false);
+            lastForceMillis = current;
+        } catch (IOException e) {
+            AlipayLog.w("同步支付日志失败: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * 已结束的记录占大多数时重写文件，只保留待确认的发起记录
+     * 先写临时文件再重命名，重写过程中被杀死也不会丢失原文件
+     */
+    private void maybeCompact() {
+        if (recordCount < COMPACT_MIN_RECORDS || recordCount < pending.size() * 4) {
+            return;
+        }
+        File temp = new File(file.getPath() + ".tmp");
+        try {
+            FileChannel out = new RandomAccessFile(temp, "rw").getChannel();
+            try {
+                out.truncate(0);
+                writeHeader(out);
+                for (PendingPayment payment : pending.values()) {
+                    out.write(encode(TYPE_LAUNCH, payment.launchedAtMillis, payment.paymentId,
+                            payment.outTradeNo, 0));
+                }
+                out.force(true);
+            } finally {
+                out.close();
+            }
+            closeQuietly();
+            if (!temp.renameTo(file)) {
+                throw new IOException("重命名失败");
+            }
+            channel = new RandomAccessFile(file, "rw").getChannel();
+            channel.position(channel.size());
+            recordCount = pending.size();
+            compactionCount++;
+        } catch (IOException e) {
+            AlipayLog.w("压缩支付日志失败: {}", e.getMessage());
+            temp.delete();
+            if (channel == null || !channel.isOpen()) {
+                try {
+                    channel = new RandomAccessFile(file, "rw").getChannel();
+                    channel.position(channel.size());
+                } catch (IOException reopen) {
+                    channel = null;
+                }
+            }
+        }
+    }
+
+    private static ByteBuffer encode(byte type, long time, String paymentId, String text, int status)
+            throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(64);
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeByte(type);
+        out.writeLong(time);
+        out.writeUTF(paymentId);
+        out.writeUTF(text);
+        out.writeInt(status);
+        byte[] payload = bytes.toByteArray();
+
+        CRC32 crc = new CRC32();
+        crc.update(payload, 0, payload.length);
+        ByteBuffer buffer = ByteBuffer.allocate(2 + payload.length + 4);
+        buffer.putShort((short) payload.length);
+        buffer.put(payload);
+        buffer.putInt((int) crc.getValue());
+        buffer.flip();
+        return buffer;
+    }
+
+    private static void writeHeader(FileChannel out) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(4);
+        header.putInt(MAGIC);
+        header.flip();
+        out.write(header);
+    }
+
+    private void closeQuietly() {
+        if (channel != null) {
+            try {
+                channel.close();
+            } catch (IOException ignored) {
+                // 忽略
+            }
+            channel = null;
+        }
+    }
+}
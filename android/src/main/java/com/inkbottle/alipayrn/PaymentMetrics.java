@@ -0,0 +1,107 @@
+package com.inkbottle.alipayrn;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * 支付/授权各阶段的延迟统计和结果状态计数
+ */
+final class PaymentMetrics {
+
+    /**
+     * 一次调用经过的阶段
+     */
+    enum Phase {
+        QUEUE_WAIT("queueWait"),          // 桥接调用进入模块 → 工作线程开始执行
+        TASK_INIT("taskInit"),            // 构造PayTask/AuthTask
+        SDK_CALL("sdkCall"),              // payV2/authV2在SDK内的耗时
+        MAIN_THREAD_HOP("mainThreadHop"), // 工作线程投递 → 主线程开始处理
+        RESOLVE("resolve"),               // 主线程构建结果、发送事件并resolve Promise
+        TOTAL("total");                   // 桥接调用进入模块 → Promise完成
+
+        final String key;
+
+        Phase(String key) {
+            this.key = key;
+        }
+    }
+
+    /**
+     * 单类操作（支付或授权）的统计
+     */
+    static final class Operation {
+        static final int[] KNOWN_STATUS = {
+                AlipayResult.STATUS_SUCCESS,
+                AlipayResult.STATUS_PROCESSING,
+                AlipayResult.STATUS_FAILED,
+                AlipayResult.STATUS_REPEAT_REQUEST,
+                AlipayResult.STATUS_CANCEL,
+                AlipayResult.STATUS_NETWORK_ERROR,
+                AlipayResult.STATUS_UNKNOWN
+        };
+
+        private final LatencyHistogram[] histograms = new LatencyHistogram[Phase.values().length];
+        private final AtomicLongArray statusCounts = new AtomicLongArray(KNOWN_STATUS.length);
+        private final AtomicLong otherStatusCount = new AtomicLong();
+
+        Operation() {
+            for (int i = 0; i < histograms.length; i++) {
+                histograms[i] = new LatencyHistogram();
+            }
+        }
+
+        void record(Phase phase, long durationNanos) {
+            histograms[phase.ordinal()].record(durationNanos);
+        }
+
+        void countStatus(int resultStatus) {
+            for (int i = 0; i < KNOWN_STATUS.length; i++) {
+                if (KNOWN_STATUS[i] == resultStatus) {
+                    statusCounts.incrementAndGet(i);
+                    return;
+                }
+            }
+            otherStatusCount.incrementAndGet();
+        }
+
+        LatencyHistogram histogram(Phase phase) {
+            return histograms[phase.ordinal()];
+        }
+
+        /**
+         * @param index {@link #KNOWN_STATUS} 的下标
+         */
+        long statusCount(int index) {
+            return statusCounts.get(index);
+        }
+
+        long otherStatusCount() {
+            return otherStatusCount.get();
+        }
+
+        void reset() {
+            for (LatencyHistogram histogram : histograms) {
+                histogram.reset();
+            }
+            for (int i = 0; i < statusCounts.length(); i++) {
+                statusCounts.set(i, 0);
+            }
+            otherStatusCount.set(0);
+        }
+    }
+
+    final Operation pay = new Operation();
+    final Operation auth = new Operation();
+
+    private volatile long resetTimeMillis = System.currentTimeMillis();
+
+    long getResetTimeMillis() {
+        return resetTimeMillis;
+    }
+
+    void reset() {
+        pay.reset();
+        auth.reset();
+        resetTimeMillis = System.currentTimeMillis();
+    }
+}
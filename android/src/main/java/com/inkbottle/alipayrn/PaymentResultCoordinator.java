@@ -0,0 +1,119 @@
+package com.inkbottle.alipayrn;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 支付结果协调器
+ * 同一笔支付的结果可能同时从payV2返回值和onActivityResult两条路径到达，
+ * 这里按paymentId合并，保证每笔支付只发送一次事件、只完成一次Promise。
+ *
+ * @param <P> 结果的接收方，模块中为React Native的Promise
+ */
+final class PaymentResultCoordinator<P> {
+
+    enum Source {
+        SDK_RETURN,       // payV2/authV2的返回值
+        ACTIVITY_RESULT   // onActivityResult回调
+    }
+
+    /**
+     * 已认领的待发送结果
+     */
+    static final class Delivery<P> {
+        final String paymentId;
+        final P receiver;
+        final long startNanos;
+        final AlipayResult result;
+        final Source source;
+
+        Delivery(String paymentId, Pending<P> pending, AlipayResult result, Source source) {
+            this.paymentId = paymentId;
+            this.receiver = pending.receiver;
+            this.startNanos = pending.startNanos;
+            this.result = result;
+            this.source = source;
+        }
+    }
+
+    private static final class Pending<P> {
+        final P receiver;
+        final long startNanos;
+
+        Pending(P receiver, long startNanos) {
+            this.receiver = receiver;
+            this.startNanos = startNanos;
+        }
+    }
+
+    private final ConcurrentHashMap<String, Pending<P>> pending = new ConcurrentHashMap<>();
+
+    private final AtomicLong deliveredCount = new AtomicLong();
+    private final AtomicLong duplicateCount = new AtomicLong();
+    private final AtomicLong uncorrelatedCount = new AtomicLong();
+
+    /**
+     * 登记一笔等待结果的支付
+     *
+     * @param startNanos 支付请求进入模块的时间（System.nanoTime），用于统计总耗时
+     */
+    void register(String paymentId, P receiver, long startNanos) {
+        pending.put(paymentId, new Pending<>(receiver, startNanos));
+    }
+
+    /**
+     * 提交一个结果
+     * 只有第一个到达的结果会被认领，后续同一paymentId的结果计为重复并丢弃
+     *
+     * @param paymentId 支付ID，无法关联到具体支付时传null
+     * @return 认领成功时返回需要发送的结果；重复或无法关联时返回null
+     */
+    Delivery<P> offer(String paymentId, AlipayResult result, Source source) {
+        if (paymentId == null) {
+            uncorrelatedCount.incrementAndGet();
+            return null;
+        }
+        Pending<P> entry = pending.remove(paymentId);
+        if (entry == null) {
+            duplicateCount.incrementAndGet();
+            return null;
+        }
+        deliveredCount.incrementAndGet();
+        return new Delivery<>(paymentId, entry, result, source);
+    }
+
+    /**
+     * 放弃一笔尚未完成的支付（例如任务被拒绝或超时）
+     *
+     * @return 尚未完成时返回其接收方，以便调用方reject；已完成时返回null
+     */
+    P cancel(String paymentId) {
+        Pending<P> entry = pending.remove(paymentId);
+        return entry != null ? entry.receiver : null;
+    }
+
+    /**
+     * 尚未完成的支付ID，用于模块销毁时逐一结束
+     */
+    List<String> getPendingIds() {
+        return new ArrayList<>(pending.keySet());
+    }
+
+    int getPendingCount() {
+        return pending.size();
+    }
+
+    long getDeliveredCount() {
+        return deliveredCount.get();
+    }
+
+    long getDuplicateCount() {
+        return duplicateCount.get();
+    }
+
+    long getUncorrelatedCount() {
+        return uncorrelatedCount.get();
+    }
+}
@@ -0,0 +1,167 @@
+package com.inkbottle.alipayrn;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * 支付状态机
+ * 状态流转: IDLE → LAUNCHING → IN_SDK → RESOLVING → IDLE
+ * 每次支付分配唯一的paymentId，所有状态变更都通过CAS完成，不使用锁。
+ * 只有持有当前paymentId的调用方才能推进状态，过期的回调不会影响新的支付。
+ */
+final class PaymentStateMachine {
+
+    enum State {
+        IDLE,       // 空闲，可以发起新的支付
+        LAUNCHING,  // 已受理支付请求，正在提交到支付线程
+        IN_SDK,     // 支付宝SDK正在处理（payV2阻塞中）
+        RESOLVING   // 已拿到结果，正在回传给JS层
+    }
+
+    /**
+     * 不可变的状态快照
+     */
+    static final class Snapshot {
+        final State state;
+        final String paymentId;
+        final long startTime;  // 支付发起时间，空闲时为0
+        final long version;    // 每次状态变更递增
+
+        Snapshot(State state, String paymentId, long startTime, long version) {
+            this.state = state;
+            this.paymentId = paymentId;
+            this.startTime = startTime;
+            this.version = version;
+        }
+
+        boolean isIdle() {
+            return state == State.IDLE;
+        }
+    }
+
+    private final AtomicReference<Snapshot> current =
+            new AtomicReference<>(new Snapshot(State.IDLE, null, 0, 0));
+    private final AtomicLong idSequence = new AtomicLong();
+
+    // 统计计数，用于调试和并发压测时核对状态变更是否丢失或重复
+    private final AtomicLong startedCount = new AtomicLong();
+    private final AtomicLong finishedCount = new AtomicLong();
+    private final AtomicLong rejectedCount = new AtomicLong();
+    private final AtomicLong staleCount = new AtomicLong();
+    private final AtomicLong resetCount = new AtomicLong();
+
+    /**
+     * 尝试开始一次新的支付 (IDLE → LAUNCHING)
+     *
+     * @return 新分配的paymentId；如果已有支付在进行中则返回null
+     */
+    String begin() {
+        Snapshot prev = current.get();
+        if (!prev.isIdle()) {
+            rejectedCount.incrementAndGet();
+            return null;
+        }
+        String paymentId = nextPaymentId();
+        Snapshot next = new Snapshot(State.LAUNCHING, paymentId, System.currentTimeMillis(), prev.version + 1);
+        if (current.compareAndSet(prev, next)) {
+            startedCount.incrementAndGet();
+            return paymentId;
+        }
+        // 有并发调用抢先开始了支付，快速失败而不是重试
+        rejectedCount.incrementAndGet();
+        return null;
+    }
+
+    /**
+     * 推进指定支付的状态
+     *
+     * @param paymentId 支付ID
+     * @param from 期望的当前状态
+     * @param to 目标状态
+     * @return 是否变更成功；paymentId不匹配或状态不符时返回false
+     */
+    boolean transition(String paymentId, State from, State to) {
+        while (true) {
+            Snapshot prev = current.get();
+            if (prev.state != from || !paymentId.equals(prev.paymentId)) {
+                staleCount.incrementAndGet();
+                return false;
+            }
+            Snapshot next = to == State.IDLE
+                    ? new Snapshot(State.IDLE, null, 0, prev.version + 1)
+                    : new Snapshot(to, paymentId, prev.startTime, prev.version + 1);
+            if (current.compareAndSet(prev, next)) {
+                if (to == State.IDLE) {
+                    finishedCount.incrementAndGet();
+                }
+                return true;
+            }
+        }
+    }
+
+    /**
+     * 结束指定支付，无论其处于哪个非空闲状态 (* → IDLE)
+     *
+     * @param paymentId 支付ID
+     * @return 是否由本次调用结束；重复结束或已被重置时返回false
+     */
+    boolean finish(String paymentId) {
+        while (true) {
+            Snapshot prev = current.get();
+            if (prev.isIdle() || !paymentId.equals(prev.paymentId)) {
+                staleCount.incrementAndGet();
+                return false;
+            }
+            if (current.compareAndSet(prev, new Snapshot(State.IDLE, null, 0, prev.version + 1))) {
+                finishedCount.incrementAndGet();
+                return true;
+            }
+        }
+    }
+
+    /**
+     * 强制回到空闲状态，用于手动重置
+     *
+     * @return 被重置的paymentId；原本就空闲时返回null
+     */
+    String reset() {
+        while (true) {
+            Snapshot prev = current.get();
+            if (prev.isIdle()) {
+                return null;
+            }
+            if (current.compareAndSet(prev, new Snapshot(State.IDLE, null, 0, prev.version + 1))) {
+                resetCount.incrementAndGet();
+                return prev.paymentId;
+            }
+        }
+    }
+
+    Snapshot snapshot() {
+        return current.get();
+    }
+
+    long getStartedCount() {
+        return startedCount.get();
+    }
+
+    long getFinishedCount() {
+        return finishedCount.get();
+    }
+
+    long getRejectedCount() {
+        return rejectedCount.get();
+    }
+
+    long getStaleCount() {
+        return staleCount.get();
+    }
+
+    long getResetCount() {
+        return resetCount.get();
+    }
+
+    private String nextPaymentId() {
+        return "pay_" + Long.toString(System.currentTimeMillis(), 36) + "_" + idSequence.incrementAndGet();
+    }
+}
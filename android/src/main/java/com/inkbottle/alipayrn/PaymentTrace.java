@@ -0,0 +1,159 @@
+package com.inkbottle.alipayrn;
+
+import android.os.Process;
+import android.os.Trace;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 支付流程的跟踪区间
+ * 开启后每个区间同时写入android.os.Trace（systrace/Perfetto抓取时可见）和内存中的环形缓冲区，
+ * 缓冲区可导出为Chrome Trace Event JSON，在Perfetto或chrome://tracing中查看JS模块线程、支付线程、
+ * 主线程之间的切换。关闭时begin只读取一次volatile字段，不记录时间、不分配对象。
+ *
+ * 用法：
+ * <pre>
+ * long span = PaymentTrace.begin("pay.sdk");
+ * try { ... } finally { PaymentTrace.end(span, "pay.sdk", paymentId); }
+ * </pre>
+ * Trace.beginSection要求在同一线程内成对嵌套，begin和end必须在同一线程中调用。
+ */
+final class PaymentTrace {
+    // begin在关闭时返回的值，end看到它直接返回
+    static final long NOT_TRACED = Long.MIN_VALUE;
+
+    private static final int BUFFER_CAPACITY = 4096;
+
+    private static final SpanRingBuffer buffer = new SpanRingBuffer(BUFFER_CAPACITY);
+    private static volatile boolean enabled = false;
+
+    private PaymentTrace() {
+    }
+
+    /**
+     * 开启或关闭跟踪，开启时清空之前记录的区间
+     */
+    static void setEnabled(boolean enable) {
+        if (enable && !enabled) {
+            buffer.clear();
+        }
+        enabled = enable;
+    }
+
+    static boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * 开始一个区间
+     *
+     * @param name 区间名称，写入android.os.Trace，应与end的名称一致
+     * @return 开始时间，未开启时返回{@link #NOT_TRACED}
+     */
+    static long begin(String name) {
+        if (!enabled) {
+            return NOT_TRACED;
+        }
+        Trace.beginSection(name);
+        return System.nanoTime();
+    }
+
+    /**
+     * 结束由{@link #begin(String)}开始的区间并记录
+     *
+     * @param name 区间名称，例如pay.sdk
+     * @param id 关联的支付/授权ID，可为null
+     */
+    static void end(long startNanos, String name, String id) {
+        if (startNanos == NOT_TRACED) {
+            return;
+        }
+        Trace.endSection();
+        Thread thread = Thread.currentThread();
+        buffer.add(name, id, Process.myTid(), thread.getName(), startNanos, System.nanoTime() - startNanos);
+    }
+
+    static int size() {
+        return buffer.size();
+    }
+
+    static long getDroppedCount() {
+        return buffer.getDroppedCount();
+    }
+
+    /**
+     * 按Chrome Trace Event格式写出缓冲区中的区间（完整事件"X"，每个线程附带thread_name元数据）
+     *
+     * @return 写出的区间数
+     */
+    static int writeChromeTrace(Writer out, int pid) throws IOException {
+        SpanRingBuffer.Span[] spans = buffer.snapshot();
+        Map<Integer, String> threadNames = new HashMap<>();
+        out.write("{\"displayTimeUnit\":\"ms\",\"traceEvents\":[");
+        boolean first = true;
+        for (SpanRingBuffer.Span span : spans) {
+            threadNames.put(span.tid, span.threadName);
+            if (!first) {
+                out.write(',');
+            }
+            first = false;
+            out.write("{\"name\":");
+            writeString(out, span.name);
+            out.write(",\"cat\":\"alipay\",\"ph\":\"X\",\"ts\":");
+            out.write(micros(span.startNanos));
+            out.write(",\"dur\":");
+            out.write(micros(span.durationNanos));
+            out.write(",\"pid\":" + pid + ",\"tid\":" + span.tid);
+            if (span.id != null) {
+                out.write(",\"args\":{\"id\":");
+                writeString(out, span.id);
+                out.write('}');
+            }
+            out.write('}');
+        }
+        for (Map.Entry<Integer, String> thread : threadNames.entrySet()) {
+            if (!first) {
+                out.write(',');
+            }
+            first = false;
+            out.write("{\"name\":\"thread_name\",\"ph\":\"M\",\"pid\":" + pid + ",\"tid\":" + thread.getKey()
+                    + ",\"args\":{\"name\":");
+            writeString(out, thread.getValue());
+            out.write("}}");
+        }
+        out.write("]}");
+        return spans.length;
+    }
+
+    /**
+     * 纳秒转为带3位小数的微秒，Chrome Trace的ts/dur单位为微秒
+     */
+    private static String micros(long nanos) {
+        long whole = nanos / 1000;
+        long fraction = Math.abs(nanos % 1000);
+        if (fraction == 0) {
+            return Long.toString(whole);
+        }
+        String digits = Long.toString(fraction + 1000).substring(1);
+        return (nanos < 0 && whole == 0 ? "-" : "") + whole + "." + digits;
+    }
+
+    private static void writeString(Writer out, String value) throws IOException {
+        out.write('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"' || c == '\\') {
+                out.write('\\');
+                out.write(c);
+            } else if (c < 0x20) {
+                out.write(String.format("\\u%04x", (int) c));
+            } else {
+                out.write(c);
+            }
+        }
+        out.write('"');
+    }
+}
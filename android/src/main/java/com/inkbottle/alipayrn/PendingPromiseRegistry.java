@@ -0,0 +1,53 @@
+package com.inkbottle.alipayrn;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * 等待结果的Promise登记表
+ * 工作线程和超时回调只携带id，通过take取出Promise，保证每个Promise只被完成一次；
+ * 模块销毁时drain取出全部尚未完成的Promise统一reject，不会遗留在任何线程中。
+ *
+ * @param <P> 结果的接收方，模块中为React Native的Promise
+ */
+final class PendingPromiseRegistry<P> {
+    private final HashMap<String, P> pending = new HashMap<>();
+    private boolean drained = false;
+
+    /**
+     * 登记
+     *
+     * @return 已经drain过（模块已销毁）时返回false，调用方应直接reject
+     */
+    synchronized boolean register(String id, P receiver) {
+        if (drained) {
+            return false;
+        }
+        pending.put(id, receiver);
+        return true;
+    }
+
+    /**
+     * 取出并移除
+     *
+     * @return 尚未完成时返回接收方；已被取出（超时、重复结果）或已drain时返回null
+     */
+    synchronized P take(String id) {
+        return pending.remove(id);
+    }
+
+    /**
+     * 取出全部尚未完成的接收方，之后的register都会失败
+     */
+    synchronized List<P> drain() {
+        drained = true;
+        List<P> receivers = new ArrayList<>(pending.values());
+        pending.clear();
+        return receivers;
+    }
+
+    synchronized int size() {
+        return pending.size();
+    }
+}
@@ -6,6 +6,10 @@ import com.facebook.react.bridge.ReactContextBaseJavaModule;
 import com.facebook.react.bridge.ReactMethod;
 import com.facebook.react.bridge.Callback;
 
+/**
+ * @deprecated 空模块，不提供任何方法，仅为兼容仍手动注册 {@link RNReactNativeAlipayPaymentPackage} 的应用而保留
+ */
+@Deprecated
 public class RNReactNativeAlipayPaymentModule extends ReactContextBaseJavaModule {
 
   private final ReactApplicationContext reactContext;
@@ -10,6 +10,14 @@ import com.facebook.react.bridge.NativeModule;
 import com.facebook.react.bridge.ReactApplicationContext;
 import com.facebook.react.uimanager.ViewManager;
 import com.facebook.react.bridge.JavaScriptModule;
+
+/**
+ * 早期脚手架遗留的包，只注册一个没有任何方法的空模块
+ *
+ * @deprecated 请使用 {@link AlipayPackage}。自动链接已通过 react-native.config.js 固定为AlipayPackage，
+ * 手动注册了本包的应用可以直接移除，不会影响支付功能。
+ */
+@Deprecated
 public class RNReactNativeAlipayPaymentPackage implements ReactPackage {
     @Override
     public List<NativeModule> createNativeModules(ReactApplicationContext reactContext) {
@@ -0,0 +1,64 @@
+package com.inkbottle.alipayrn;
+
+/**
+ * 支付结果序列化
+ * 按固定字段顺序将 {@link AlipayResult} 写入 {@link ResultWriter}，不依赖Android或React Native。
+ * 结果在原生层完成分类（状态名、success/processing/cancelled、提示信息），JS层直接使用，不再比较状态码字符串。
+ */
+final class ResultMarshaller {
+    static final String KEY_RESULT_STATUS = "resultStatus";
+    static final String KEY_STATUS = "status";
+    static final String KEY_SUCCESS = "success";
+    static final String KEY_PROCESSING = "processing";
+    static final String KEY_CANCELLED = "cancelled";
+    static final String KEY_MESSAGE = "message";
+    static final String KEY_MEMO = "memo";
+    static final String KEY_RESULT = "result";
+    static final String KEY_OUT_TRADE_NO = "outTradeNo";
+    static final String KEY_TRADE_NO = "tradeNo";
+    static final String KEY_TOTAL_AMOUNT = "totalAmount";
+    static final String KEY_PAYMENT_ID = "paymentId";
+
+    private ResultMarshaller() {
+    }
+
+    /**
+     * 写入包含原始result、中文提示的结果
+     */
+    static void write(AlipayResult result, String paymentId, ResultWriter out) {
+        write(result, paymentId, true, true, out);
+    }
+
+    /**
+     * @param result 解析后的支付结果
+     * @param paymentId 支付ID，为null时不写入
+     * @param includeRaw 是否写入原始的result字段（通常为完整的响应JSON，交易字段已单独解析）
+     * @param chinese 提示信息是否使用中文
+     * @param out 写入目标
+     */
+    static void write(AlipayResult result, String paymentId, boolean includeRaw, boolean chinese,
+                      ResultWriter out) {
+        out.putString(KEY_RESULT_STATUS, result.statusString());
+        out.putString(KEY_STATUS, result.statusName());
+        out.putBoolean(KEY_SUCCESS, result.resultStatus == AlipayResult.STATUS_SUCCESS);
+        out.putBoolean(KEY_PROCESSING, result.resultStatus == AlipayResult.STATUS_PROCESSING);
+        out.putBoolean(KEY_CANCELLED, result.resultStatus == AlipayResult.STATUS_CANCEL);
+        out.putString(KEY_MESSAGE, result.message(chinese));
+        out.putString(KEY_MEMO, result.memo);
+        if (includeRaw) {
+            out.putString(KEY_RESULT, result.result);
+        }
+        if (result.outTradeNo != null) {
+            out.putString(KEY_OUT_TRADE_NO, result.outTradeNo);
+        }
+        if (result.tradeNo != null) {
+            out.putString(KEY_TRADE_NO, result.tradeNo);
+        }
+        if (result.totalAmount != null) {
+            out.putString(KEY_TOTAL_AMOUNT, result.totalAmount);
+        }
+        if (paymentId != null) {
+            out.putString(KEY_PAYMENT_ID, paymentId);
+        }
+    }
+}
@@ -0,0 +1,11 @@
+package com.inkbottle.alipayrn;
+
+/**
+ * 结果写入接口
+ * 将支付结果的序列化与React Native的WritableMap解耦，便于在JVM上单独测试和基准测试
+ */
+interface ResultWriter {
+    void putString(String key, String value);
+
+    void putBoolean(String key, boolean value);
+}
@@ -0,0 +1,51 @@
+package com.inkbottle.alipayrn;
+
+import java.util.HashMap;
+
+/**
+ * 正在支付线程中阻塞的payV2调用
+ * 超时、取消或重置只结束模块内的等待，支付宝界面和阻塞中的payV2仍在继续。
+ * 在这些调用返回之前不再发起新的支付，否则两次payV2同时进行，迟到的onActivityResult无法区分属于哪一笔；
+ * 同时记录每次调用的商户订单号，用于核对onActivityResult中的结果。
+ */
+final class SdkCallTracker {
+    // paymentId -> 发起时解析的out_trade_no，解析不到时为""
+    private final HashMap<String, String> active = new HashMap<>();
+
+    /**
+     * 支付线程即将调用payV2
+     */
+    synchronized void enter(String paymentId, String outTradeNo) {
+        active.put(paymentId, outTradeNo != null ? outTradeNo : "");
+    }
+
+    /**
+     * payV2已返回，或最终没有调用
+     */
+    synchronized void exit(String paymentId) {
+        active.remove(paymentId);
+    }
+
+    /**
+     * @return 是否有payV2仍在阻塞
+     */
+    synchronized boolean isBusy() {
+        return !active.isEmpty();
+    }
+
+    /**
+     * 判断onActivityResult中的结果能否归属于该笔支付
+     * 结果中带有out_trade_no且与发起时的不一致时不能归属；任一方缺少out_trade_no时（例如用户取消）无法核对，视为一致
+     */
+    synchronized boolean matches(String paymentId, String resultOutTradeNo) {
+        String launched = active.get(paymentId);
+        if (launched == null) {
+            return false;
+        }
+        return resultOutTradeNo == null || launched.isEmpty() || launched.equals(resultOutTradeNo);
+    }
+
+    synchronized int size() {
+        return active.size();
+    }
+}
@@ -0,0 +1,139 @@
+package com.inkbottle.alipayrn;
+
+import android.app.Activity;
+
+import com.alipay.sdk.app.EnvUtils;
+import com.alipay.sdk.app.PayTask;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 支付宝SDK预热
+ * 在后台线程提前完成SDK的类加载和初始化（构造PayTask、查询版本、应用环境设置），
+ * 把这部分耗时从首次支付的关键路径上移走。只会真正执行一次，之后直接返回首次的结果。
+ */
+class SdkPrewarmer {
+
+    /**
+     * 预热结果
+     */
+    static final class Result {
+        final long durationNanos;
+        final String alipayVersion;   // 未能构造PayTask或未安装时为null
+        final boolean payTaskCreated; // 没有可用的Activity时不会构造PayTask
+
+        Result(long durationNanos, String alipayVersion, boolean payTaskCreated) {
+            this.durationNanos = durationNanos;
+            this.alipayVersion = alipayVersion;
+            this.payTaskCreated = payTaskCreated;
+        }
+    }
+
+    interface Callback {
+        /**
+         * @param result 预热结果
+         * @param cached 是否为之前已完成的预热结果
+         */
+        void onComplete(Result result, boolean cached);
+
+        void onError(String code, String message);
+    }
+
+    private final PaymentExecutor executor;
+    private final List<Callback> waiters = new ArrayList<>();
+    private boolean running = false;
+    private volatile Result result;
+
+    SdkPrewarmer(PaymentExecutor executor) {
+        this.executor = executor;
+    }
+
+    /**
+     * 执行预热；已完成时直接回调之前的结果，正在进行时等待同一次预热完成
+     *
+     * @param activity 当前Activity，为null时跳过PayTask构造
+     * @param sandbox 要应用的沙箱环境设置
+     * @param callback 完成回调，在支付线程中调用
+     */
+    void prewarm(final Activity activity, final boolean sandbox, Callback callback) {
+        Result done = result;
+        if (done != null) {
+            callback.onComplete(done, true);
+            return;
+        }
+        synchronized (this) {
+            if (result != null) {
+                done = result;
+            } else {
+                waiters.add(callback);
+                if (running) {
+                    return;
+                }
+                running = true;
+            }
+        }
+        if (done != null) {
+            callback.onComplete(done, true);
+            return;
+        }
+
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                long start = System.nanoTime();
+                String version = null;
+                boolean payTaskCreated = false;
+                try {
+                    EnvUtils.setEnv(sandbox ? EnvUtils.EnvEnum.SANDBOX : EnvUtils.EnvEnum.ONLINE);
+                    if (activity != null) {
+                        PayTask payTask = new PayTask(activity);
+                        payTaskCreated = true;
+                        version = payTask.getVersion();
+                    }
+                } catch (Exception e) {
+                    AlipayLog.w("支付宝SDK预热异常: {}", e.getMessage());
+                    finishWithError("PREWARM_ERROR", "支付宝SDK预热失败: " + e.getMessage());
+                    return;
+                }
+                Result warmed = new Result(System.nanoTime() - start, version, payTaskCreated);
+                if (AlipayLog.isLoggable(AlipayLog.DEBUG)) {
+                    AlipayLog.d("支付宝SDK预热完成，耗时: {}ms", warmed.durationNanos / 1_000_000);
+                }
+                // 没有Activity时只完成了部分预热，不缓存，下次调用仍会尝试构造PayTask
+                List<Callback> callbacks = drainWaiters(payTaskCreated ? warmed : null);
+                for (Callback cb : callbacks) {
+                    cb.onComplete(warmed, false);
+                }
+            }
+        }, new PaymentExecutor.RejectionListener() {
+            @Override
+            public void onRejected(String reason) {
+                finishWithError("ERR_EXECUTOR_BUSY", "预热任务无法执行: " + reason);
+            }
+        });
+    }
+
+    /**
+     * @return 已完成的预热结果，尚未预热时为null
+     */
+    Result getResult() {
+        return result;
+    }
+
+    private void finishWithError(String code, String message) {
+        for (Callback cb : drainWaiters(null)) {
+            cb.onError(code, message);
+        }
+    }
+
+    private synchronized List<Callback> drainWaiters(Result finished) {
+        if (finished != null) {
+            result = finished;
+        }
+        running = false;
+        List<Callback> callbacks = new ArrayList<>(waiters);
+        waiters.clear();
+        return callbacks;
+    }
+}
@@ -0,0 +1,99 @@
+package com.inkbottle.alipayrn;
+
+/**
+ * 固定容量的跟踪区间环形缓冲区
+ * 预先分配数组，写满后覆盖最旧的区间，写入时不产生额外分配
+ */
+final class SpanRingBuffer {
+
+    /**
+     * 导出时使用的区间
+     */
+    static final class Span {
+        final String name;
+        final String id;
+        final int tid;
+        final String threadName;
+        final long startNanos;
+        final long durationNanos;
+
+        Span(String name, String id, int tid, String threadName, long startNanos, long durationNanos) {
+            this.name = name;
+            this.id = id;
+            this.tid = tid;
+            this.threadName = threadName;
+            this.startNanos = startNanos;
+            this.durationNanos = durationNanos;
+        }
+    }
+
+    private final String[] names;
+    private final String[] ids;
+    private final int[] tids;
+    private final String[] threadNames;
+    private final long[] starts;
+    private final long[] durations;
+    private int next = 0;   // 下一个区间的写入位置
+    private int size = 0;
+    private long dropped = 0; // 被覆盖的区间数
+
+    SpanRingBuffer(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("capacity必须大于0");
+        }
+        names = new String[capacity];
+        ids = new String[capacity];
+        tids = new int[capacity];
+        threadNames = new String[capacity];
+        starts = new long[capacity];
+        durations = new long[capacity];
+    }
+
+    synchronized void add(String name, String id, int tid, String threadName, long startNanos, long durationNanos) {
+        names[next] = name;
+        ids[next] = id;
+        tids[next] = tid;
+        threadNames[next] = threadName;
+        starts[next] = startNanos;
+        durations[next] = durationNanos;
+        next = (next + 1) % names.length;
+        if (size < names.length) {
+            size++;
+        } else {
+            dropped++;
+        }
+    }
+
+    /**
+     * @return 按结束顺序排列的全部区间
+     */
+    synchronized Span[] snapshot() {
+        Span[] spans = new Span[size];
+        int start = (next - size + names.length) % names.length;
+        for (int i = 0; i < size; i++) {
+            int index = (start + i) % names.length;
+            spans[i] = new Span(names[index], ids[index], tids[index], threadNames[index], starts[index],
+                    durations[index]);
+        }
+        return spans;
+    }
+
+    synchronized void clear() {
+        for (int i = 0; i < names.length; i++) {
+            names[i] = null;
+            ids[i] = null;
+            threadNames[i] = null;
+        }
+        next = 0;
+        size = 0;
+        dropped = 0;
+    }
+
+    synchronized int size() {
+        return size;
+    }
+
+    synchronized long getDroppedCount() {
+        return dropped;
+    }
+}
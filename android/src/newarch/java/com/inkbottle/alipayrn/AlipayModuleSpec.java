@@ -0,0 +1,14 @@
+package com.inkbottle.alipayrn;
+
+import com.facebook.react.bridge.ReactApplicationContext;
+
+/**
+ * 新架构下AlipayModule的基类
+ * NativeAlipayModuleSpec由codegen根据 src/NativeAlipayModule.ts 生成
+ */
+abstract class AlipayModuleSpec extends NativeAlipayModuleSpec {
+
+    AlipayModuleSpec(ReactApplicationContext reactContext) {
+        super(reactContext);
+    }
+}
@@ -0,0 +1,29 @@
+package com.inkbottle.alipayrn;
+
+import androidx.annotation.Nullable;
+
+import com.facebook.react.bridge.ReactApplicationContext;
+import com.facebook.react.bridge.ReactContextBaseJavaModule;
+
+import java.util.Map;
+
+/**
+ * 旧架构下AlipayModule的基类
+ * 与新架构中codegen生成的NativeAlipayModuleSpec保持相同的常量导出方式，
+ * 使AlipayModule在两种架构下只需维护一份实现
+ */
+abstract class AlipayModuleSpec extends ReactContextBaseJavaModule {
+    public static final String NAME = "AlipayModule";
+
+    AlipayModuleSpec(ReactApplicationContext reactContext) {
+        super(reactContext);
+    }
+
+    protected abstract Map<String, Object> getTypedExportedConstants();
+
+    @Nullable
+    @Override
+    public final Map<String, Object> getConstants() {
+        return getTypedExportedConstants();
+    }
+}
@@ -0,0 +1,361 @@
+package com.inkbottle.alipayrn;
+
+import java.io.File;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 并发压力检查: gradle stressCheck
+ * 直接驱动AlipayModule使用的{@link PaymentFlow}（订单去重、状态机、结果协调、超时、待确认日志、订单索引、
+ * 授权缓存以及支付线程中的PayJob/AuthJob），以FakeAlipayGateway代替支付宝SDK，主线程由单线程执行器模拟。
+ * 调用方按闭环方式发起：每个调用线程等上一次调用完成后再发起下一次，支付被PAY_IN_PROGRESS拒绝时稍后重试，
+ * 因此数千次支付和授权都会真正经过模拟SDK，而不是大多在入口被拒绝。
+ * 检查每个Promise恰好完成一次、SDK调用次数达到下限、流程结束后没有残留状态、线程数有上界、
+ * 堆不随调用次数增长，并输出延迟分位数。任一检查失败时以非0退出码结束。
+ */
+public final class GatewayStressCheck {
+    private static final int PAY_CALLERS = 4;
+    private static final int AUTH_CALLERS = 12;
+    private static final int PAY_CALLS = 3_000;
+    private static final int AUTH_CALLS = 5_000;
+    // 超时前未拉起的支付和丢失回调的调用不计入，其余都应经过SDK
+    private static final int MIN_SDK_PAY_CALLS = PAY_CALLS * 95 / 100;
+    private static final int MIN_SDK_AUTH_CALLS = AUTH_CALLS * 95 / 100;
+    private static final long TIMEOUT_MILLIS = 200;
+    private static final long DROP_HOLD_MILLIS = 300;
+    private static final long BUSY_BACKOFF_MILLIS = 1;
+    private static final int POOL_SIZE = 4;
+    private static final int QUEUE_CAPACITY = 64;
+    private static final long SETTLE_WAIT_MILLIS = 60_000;
+
+    private static final Object HOST = new Object();
+
+    /**
+     * 模拟的Promise，记录完成次数、结果和耗时
+     */
+    private static final class Settlement {
+        final long startNanos = System.nanoTime();
+        final AtomicInteger settled = new AtomicInteger();
+        final CountDownLatch done = new CountDownLatch(1);
+        volatile long latencyNanos;
+        volatile String outcome;
+
+        void settle(String outcome) {
+            if (settled.incrementAndGet() == 1) {
+                latencyNanos = System.nanoTime() - startNanos;
+                this.outcome = outcome;
+                done.countDown();
+            }
+        }
+
+        boolean await() throws InterruptedException {
+            return done.await(SETTLE_WAIT_MILLIS, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * 代替AlipayModule的回调，以Settlement记录结果
+     */
+    private static final class SettlingHost implements PaymentFlow.Host<Object, Settlement> {
+        final AtomicLong launched = new AtomicLong();
+        final AtomicLong recovered = new AtomicLong();
+
+        @Override
+        public Object resolveHost(Object queued) {
+            return queued;
+        }
+
+        @Override
+        public void onPaymentLaunched(String paymentId, String outTradeNo) {
+            launched.incrementAndGet();
+        }
+
+        @Override
+        public void onPaymentResult(Settlement promise, String paymentId, AlipayResult result) {
+            promise.settle(String.valueOf(result.resultStatus));
+        }
+
+        @Override
+        public void resolvePayment(Settlement promise, String paymentId, AlipayResult result, boolean fromCache) {
+            promise.settle(fromCache ? "cache:" + result.resultStatus : String.valueOf(result.resultStatus));
+        }
+
+        @Override
+        public void onPaymentRecovered(String paymentId, AlipayResult result) {
+            recovered.incrementAndGet();
+        }
+
+        @Override
+        public void resolveAuth(Settlement promise, Map<String, String> result, boolean fromCache) {
+            promise.settle(result.get("resultStatus"));
+        }
+
+        @Override
+        public void reject(Settlement promise, String code, String message) {
+            promise.settle(code);
+        }
+    }
+
+    private static int failures = 0;
+
+    public static void main(String[] args) throws Exception {
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        long heapBefore = usedHeapAfterGc();
+        int baselineThreads = threads.getThreadCount();
+        threads.resetPeakThreadCount();
+
+        File journalFile = File.createTempFile("stress_journal", ".bin");
+        PaymentJournal journal = new PaymentJournal(journalFile);
+        journal.open();
+        PaymentExecutor executor = new PaymentExecutor();
+        executor.configure(POOL_SIZE, POOL_SIZE, QUEUE_CAPACITY, PaymentExecutor.POLICY_ABORT);
+        DeadlineScheduler deadlines = new DeadlineScheduler();
+        ExecutorService mainThread = Executors.newSingleThreadExecutor(named("main"));
+        FakeAlipayGateway<Object> gateway = new FakeAlipayGateway<>(1, 1,
+                new String[]{"9000", "8000", "6001", "4000", "6002"}, 0.005, DROP_HOLD_MILLIS, 42);
+        SettlingHost host = new SettlingHost();
+        PaymentFlow<Object, Settlement> flow = new PaymentFlow<>(host, executor, deadlines, journal,
+                new MainThreadDispatcher(mainThread), gateway);
+
+        long startNanos = System.nanoTime();
+        AtomicLong busyRetries = new AtomicLong();
+        List<Settlement> settlements = fire(flow, busyRetries);
+        long elapsedMillis = (System.nanoTime() - startNanos) / 1_000_000;
+
+        quiesce(gateway, executor, mainThread);
+        // 丢失回调的调用被放行后结果迟到，必须被当作重复结果丢弃，同时在日志中记为已完成
+        Thread.sleep(TIMEOUT_MILLIS);
+        quiesce(gateway, executor, mainThread);
+
+        int peakThreads = threads.getPeakThreadCount();
+        checkExactlyOnce(settlements);
+        check(gateway.getPayCount() >= MIN_SDK_PAY_CALLS,
+                "经过SDK的支付只有" + gateway.getPayCount() + "次，下限" + MIN_SDK_PAY_CALLS);
+        check(gateway.getAuthCount() >= MIN_SDK_AUTH_CALLS,
+                "经过SDK的授权只有" + gateway.getAuthCount() + "次，下限" + MIN_SDK_AUTH_CALLS);
+        check(host.launched.get() == PAY_CALLS, "发起的支付数" + host.launched.get() + "不等于" + PAY_CALLS);
+        check(host.recovered.get() == 0, "本进程发起的支付不应被当作之前进程的支付找回");
+        check(flow.resultCoordinator.getPendingCount() == 0,
+                "协调器中仍有支付: " + flow.resultCoordinator.getPendingCount());
+        check(flow.authPromises.size() == 0, "登记表中仍有授权: " + flow.authPromises.size());
+        check(deadlines.getPendingCount() == 0, "仍有未取消的截止时间: " + deadlines.getPendingCount());
+        check(flow.paymentState.snapshot().isIdle(), "支付状态机未回到空闲");
+        check(flow.sdkCalls.size() == 0, "仍有未返回的SDK调用: " + flow.sdkCalls.size());
+        int pendingInJournal = pendingInJournal(journal);
+        check(pendingInJournal == 0, "待确认日志中仍有" + pendingInJournal + "笔支付");
+        check(gateway.getMaxInFlight() <= POOL_SIZE, "SDK并发调用数超过线程池大小: " + gateway.getMaxInFlight());
+        // 调用线程、支付线程池、超时调度线程、日志写线程和模拟主线程之外不应再有线程
+        int threadBudget = baselineThreads + PAY_CALLERS + AUTH_CALLERS + POOL_SIZE + 3;
+        check(peakThreads <= threadBudget, "线程数峰值" + peakThreads + "超过上界" + threadBudget);
+
+        printSummary(settlements, gateway, busyRetries.get(), elapsedMillis, peakThreads - baselineThreads);
+        deadlines.cancelAll();
+        executor.shutdown();
+        mainThread.shutdown();
+        journal.close();
+        journalFile.delete();
+
+        long heapGrowth = usedHeapAfterGc() - heapBefore;
+        System.out.println("  堆增长: " + heapGrowth / 1024 + "KB（含" + settlements.size() + "个结果记录）");
+        check(heapGrowth < 16L * 1024 * 1024, "堆增长过多: " + heapGrowth / 1024 + "KB");
+
+        if (failures > 0) {
+            System.out.println(failures + " 项检查失败");
+            System.exit(1);
+        }
+        System.out.println("全部检查通过");
+    }
+
+    /**
+     * 支付调用线程一次只有一笔支付在等待，被PAY_IN_PROGRESS拒绝时退避后以同一订单重试；
+     * 授权调用线程等上一次授权完成后再发起下一次
+     */
+    private static List<Settlement> fire(final PaymentFlow<Object, Settlement> flow, final AtomicLong busyRetries)
+            throws InterruptedException {
+        final Settlement[] settlements = new Settlement[PAY_CALLS + AUTH_CALLS];
+        final CountDownLatch start = new CountDownLatch(1);
+        final CountDownLatch done = new CountDownLatch(PAY_CALLERS + AUTH_CALLERS);
+        final AtomicInteger nextPay = new AtomicInteger();
+        final AtomicInteger nextAuth = new AtomicInteger();
+        for (int t = 0; t < PAY_CALLERS + AUTH_CALLERS; t++) {
+            final boolean payer = t < PAY_CALLERS;
+            Thread caller = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        start.await();
+                        int i;
+                        if (payer) {
+                            while ((i = nextPay.getAndIncrement()) < PAY_CALLS) {
+                                settlements[i] = pay(flow, BenchmarkOrders.order(i), busyRetries);
+                            }
+                        } else {
+                            while ((i = nextAuth.getAndIncrement()) < AUTH_CALLS) {
+                                Settlement settlement = new Settlement();
+                                flow.auth(HOST, BenchmarkOrders.AUTH_INFO, TIMEOUT_MILLIS, false, null, 0, settlement,
+                                        settlement.startNanos);
+                                settlement.await();
+                                settlements[PAY_CALLS + i] = settlement;
+                            }
+                        }
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    } finally {
+                        done.countDown();
+                    }
+                }
+            }, (payer ? "payer-" : "auth-caller-") + t);
+            caller.start();
+        }
+        start.countDown();
+        done.await();
+        synchronized (settlements) {
+            return new ArrayList<>(Arrays.asList(settlements));
+        }
+    }
+
+    private static Settlement pay(PaymentFlow<Object, Settlement> flow, String orderInfo, AtomicLong busyRetries)
+            throws InterruptedException {
+        while (true) {
+            Settlement settlement = new Settlement();
+            flow.pay(HOST, orderInfo, TIMEOUT_MILLIS, settlement, settlement.startNanos);
+            if (!settlement.await() || !"PAY_IN_PROGRESS".equals(settlement.outcome)) {
+                return settlement;
+            }
+            busyRetries.incrementAndGet();
+            Thread.sleep(BUSY_BACKOFF_MILLIS);
+        }
+    }
+
+    /**
+     * 放行阻塞中的模拟调用，等待支付线程和主线程队列全部执行完
+     */
+    private static void quiesce(FakeAlipayGateway<Object> gateway, PaymentExecutor executor,
+                                ExecutorService mainThread) throws Exception {
+        gateway.releaseDropped();
+        long deadline = System.currentTimeMillis() + SETTLE_WAIT_MILLIS;
+        while ((executor.getActiveCount() > 0 || executor.getQueuedCount() > 0)
+                && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        mainThread.submit(new Runnable() {
+            @Override
+            public void run() {
+            }
+        }).get();
+    }
+
+    private static int pendingInJournal(PaymentJournal journal) throws InterruptedException {
+        final AtomicInteger pending = new AtomicInteger(-1);
+        final CountDownLatch read = new CountDownLatch(1);
+        journal.pendingPayments(new PaymentJournal.Callback<List<PaymentJournal.PendingPayment>>() {
+            @Override
+            public void onResult(List<PaymentJournal.PendingPayment> payments) {
+                pending.set(payments.size());
+                read.countDown();
+            }
+        });
+        read.await(SETTLE_WAIT_MILLIS, TimeUnit.MILLISECONDS);
+        return pending.get();
+    }
+
+    private static void checkExactlyOnce(List<Settlement> settlements) {
+        int never = 0;
+        int twice = 0;
+        for (Settlement settlement : settlements) {
+            int count = settlement != null ? settlement.settled.get() : 0;
+            if (count == 0) {
+                never++;
+            } else if (count > 1) {
+                twice++;
+            }
+        }
+        check(never == 0, never + "个Promise从未完成");
+        check(twice == 0, twice + "个Promise被完成了多次");
+    }
+
+    private static void printSummary(List<Settlement> settlements, FakeAlipayGateway<Object> gateway,
+                                     long busyRetries, long elapsedMillis, int extraThreads) {
+        Map<String, Integer> outcomes = new java.util.TreeMap<>();
+        long[] latencies = new long[settlements.size()];
+        for (int i = 0; i < settlements.size(); i++) {
+            Settlement settlement = settlements.get(i);
+            if (settlement == null) {
+                continue;
+            }
+            latencies[i] = settlement.latencyNanos;
+            Integer count = outcomes.get(settlement.outcome);
+            outcomes.put(settlement.outcome, count == null ? 1 : count + 1);
+        }
+        Arrays.sort(latencies);
+        System.out.println("  调用: " + settlements.size() + "，耗时" + elapsedMillis + "ms（SDK支付"
+                + gateway.getPayCount() + "，SDK授权" + gateway.getAuthCount() + "，模拟丢失"
+                + gateway.getDroppedCount() + "，PAY_IN_PROGRESS重试" + busyRetries + "）");
+        System.out.println("  结果: " + outcomes);
+        System.out.println("  延迟(ms): p50=" + millis(latencies, 0.50) + " p90=" + millis(latencies, 0.90)
+                + " p99=" + millis(latencies, 0.99) + " max=" + millis(latencies, 1.0));
+        System.out.println("  新增线程峰值: " + extraThreads + "，SDK最大并发: " + gateway.getMaxInFlight());
+        check(latencies[(int) ((latencies.length - 1) * 0.99)] < (TIMEOUT_MILLIS + 500) * 1_000_000L,
+                "p99延迟超过超时时间加500ms");
+    }
+
+    private static String millis(long[] sorted, double quantile) {
+        long nanos = sorted[(int) ((sorted.length - 1) * quantile)];
+        return String.format(java.util.Locale.ROOT, "%.2f", nanos / 1_000_000.0);
+    }
+
+    private static ThreadFactory named(final String name) {
+        return new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, name);
+                thread.setDaemon(true);
+                return thread;
+            }
+        };
+    }
+
+    private static long usedHeapAfterGc() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+            try {
+                Thread.sleep(50);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    private static void check(boolean condition, String message) {
+        if (!condition) {
+            failures++;
+            System.out.println("失败: " + message);
+        }
+    }
+
+    /**
+     * 压测用的订单和授权参数
+     */
+    private static final class BenchmarkOrders {
+        static final String AUTH_INFO = "apiname=com.alipay.account.auth&app_id=2021000000000000"
+                + "&pid=2088000000000000&scope=kuaijie&target_id=STRESS&sign=c2lnbg%3D%3D";
+
+        static String order(int i) {
+            return "app_id=2021000000000000&biz_content=%7B%22out_trade_no%22%3A%22STRESS" + i
+                    + "%22%2C%22total_amount%22%3A%220.01%22%7D&method=alipay.trade.app.pay&sign=c2lnbg%3D%3D";
+        }
+    }
+}
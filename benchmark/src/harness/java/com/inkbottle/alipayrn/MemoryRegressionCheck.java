@@ -0,0 +1,293 @@
+package com.inkbottle.alipayrn;
+
+import java.io.File;
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+
+/**
+ * 离线内存回归检查: gradle memoryCheck
+ * 模拟主线程消息队列积压和SDK长时间不返回，确认排队中的任务不会持有模块（及其Activity），
+ * 支付线程池中排队的PayJob/AuthJob在模块销毁后不会持有模块和Activity、之后执行时也不再调用SDK，
+ * 模块销毁时登记的Promise全部被取出，反复支付不会让登记表增长。
+ * 任一检查失败时以非0退出码结束。
+ */
+public final class MemoryRegressionCheck {
+    private static final int MODULES = 200;
+    private static final int ACTIVITY_BYTES = 256 * 1024;
+    private static final int CYCLES = 200_000;
+    private static final int FLOW_MODULES = 50;
+    private static final long FLOW_TIMEOUT_MILLIS = 60_000;
+
+    /**
+     * 模拟模块，持有一个较大的"Activity"
+     */
+    private static final class FakeModule {
+        final byte[] activity = new byte[ACTIVITY_BYTES];
+        int delivered;
+    }
+
+    private static final class FakeActivity {
+        final byte[] bytes = new byte[ACTIVITY_BYTES];
+    }
+
+    /**
+     * 模拟AlipayModule：持有Activity和支付流程，自身作为流程的宿主
+     */
+    private static final class FlowModule implements PaymentFlow.Host<FakeActivity, Object> {
+        final FakeActivity activity = new FakeActivity();
+        PaymentFlow<FakeActivity, Object> flow;
+        int rejected;
+
+        @Override
+        public FakeActivity resolveHost(FakeActivity queued) {
+            return queued;
+        }
+
+        @Override
+        public void onPaymentLaunched(String paymentId, String outTradeNo) {
+        }
+
+        @Override
+        public void onPaymentResult(Object promise, String paymentId, AlipayResult result) {
+        }
+
+        @Override
+        public void resolvePayment(Object promise, String paymentId, AlipayResult result, boolean fromCache) {
+        }
+
+        @Override
+        public void onPaymentRecovered(String paymentId, AlipayResult result) {
+        }
+
+        @Override
+        public void resolveAuth(Object promise, Map<String, String> result, boolean fromCache) {
+        }
+
+        @Override
+        public void reject(Object promise, String code, String message) {
+            rejected++;
+        }
+    }
+
+    /**
+     * 模拟积压的主线程消息队列，只入队不执行
+     */
+    private static final class StalledLooper implements Executor {
+        final List<Runnable> queue = new ArrayList<>();
+
+        @Override
+        public void execute(Runnable command) {
+            queue.add(command);
+        }
+    }
+
+    private static final MainThreadDispatcher.Action<FakeModule> DELIVER = new MainThreadDispatcher.Action<FakeModule>() {
+        @Override
+        public void run(FakeModule module) {
+            module.delivered++;
+        }
+    };
+
+    private static int failures = 0;
+
+    public static void main(String[] args) throws Exception {
+        checkQueuedDispatchDoesNotRetainModule();
+        checkQueuedJobsDoNotRetainModule();
+        checkDrainRejectsEverything();
+        checkRegistryDoesNotGrow();
+        if (failures > 0) {
+            System.out.println(failures + " 项检查失败");
+            System.exit(1);
+        }
+        System.out.println("全部检查通过");
+    }
+
+    /**
+     * 主线程积压时销毁模块：排队中的任务不应阻止模块被回收，之后执行时直接丢弃
+     */
+    private static void checkQueuedDispatchDoesNotRetainModule() {
+        StalledLooper looper = new StalledLooper();
+        MainThreadDispatcher dispatcher = new MainThreadDispatcher(looper);
+        List<WeakReference<FakeModule>> refs = new ArrayList<>();
+        for (int i = 0; i < MODULES; i++) {
+            FakeModule module = new FakeModule();
+            WeakReference<FakeModule> ref = new WeakReference<>(module);
+            refs.add(ref);
+            dispatcher.post(ref, DELIVER);
+        }
+
+        int retained = awaitCollected(refs);
+        check(retained == 0, "排队中的任务仍持有模块: " + retained + "/" + MODULES);
+
+        for (Runnable runnable : looper.queue) {
+            runnable.run();
+        }
+        check(dispatcher.getDroppedCount() == MODULES - retained,
+                "丢弃计数不符: " + dispatcher.getDroppedCount());
+    }
+
+    /**
+     * 支付线程被占用时发起支付和授权后销毁模块：排队中的PayJob/AuthJob、超时任务和拒绝回调
+     * 不应阻止模块和Activity被回收；之后任务执行时不再调用SDK
+     */
+    private static void checkQueuedJobsDoNotRetainModule() throws Exception {
+        File journalFile = File.createTempFile("memory_journal", ".bin");
+        PaymentJournal journal = new PaymentJournal(journalFile);
+        journal.open();
+        PaymentExecutor executor = new PaymentExecutor("memory-check-", 1, 1, FLOW_MODULES * 2 + 1);
+        DeadlineScheduler deadlines = new DeadlineScheduler();
+        StalledLooper looper = new StalledLooper();
+        MainThreadDispatcher dispatcher = new MainThreadDispatcher(looper);
+        FakeAlipayGateway<FakeActivity> gateway = new FakeAlipayGateway<>(0, 0, new String[]{"9000"}, 0, 0, 1);
+        final CountDownLatch release = new CountDownLatch(1);
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }, new PaymentExecutor.RejectionListener() {
+            @Override
+            public void onRejected(String reason) {
+                check(false, "占用支付线程的任务被拒绝: " + reason);
+            }
+        });
+
+        List<WeakReference<?>> refs = new ArrayList<>();
+        int rejected = 0;
+        for (int i = 0; i < FLOW_MODULES; i++) {
+            FlowModule module = new FlowModule();
+            module.flow = new PaymentFlow<>(module, executor, deadlines, journal, dispatcher, gateway);
+            module.flow.pay(module.activity, "app_id=2021000000000000&biz_content=%7B%22out_trade_no%22%3A%22MEMORY"
+                    + i + "%22%7D&sign=c2lnbg%3D%3D", FLOW_TIMEOUT_MILLIS, new Object(), System.nanoTime());
+            module.flow.auth(module.activity, "app_id=2021000000000000&target_id=MEMORY" + i, FLOW_TIMEOUT_MILLIS,
+                    false, null, 0, new Object(), System.nanoTime());
+            module.flow.invalidate();
+            rejected += module.rejected;
+            refs.add(new WeakReference<>(module));
+            refs.add(new WeakReference<>(module.activity));
+        }
+        check(rejected == FLOW_MODULES * 2, "销毁时未完成的Promise数不符: " + rejected);
+        check(executor.getQueuedCount() == FLOW_MODULES * 2, "排队中的任务数不符: " + executor.getQueuedCount());
+
+        int retained = awaitCollected(refs);
+        check(retained == 0, "排队中的支付/授权任务仍持有模块或Activity: " + retained + "/" + refs.size());
+
+        release.countDown();
+        long deadline = System.currentTimeMillis() + 10_000;
+        while ((executor.getActiveCount() > 0 || executor.getQueuedCount() > 0)
+                && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        for (Runnable runnable : looper.queue) {
+            runnable.run();
+        }
+        check(gateway.getPayCount() == 0 && gateway.getAuthCount() == 0,
+                "模块销毁后仍调用了SDK: pay=" + gateway.getPayCount() + ", auth=" + gateway.getAuthCount());
+
+        deadlines.cancelAll();
+        executor.shutdown();
+        journal.close();
+        journalFile.delete();
+    }
+
+    /**
+     * 模块销毁时drain取出全部未完成的Promise，之后不再接受登记
+     */
+    private static void checkDrainRejectsEverything() {
+        PendingPromiseRegistry<Object> registry = new PendingPromiseRegistry<>();
+        for (int i = 0; i < 10_000; i++) {
+            registry.register("auth_" + i, new Object());
+        }
+        for (int i = 0; i < 10_000; i += 2) {
+            registry.take("auth_" + i);
+        }
+        int drained = registry.drain().size();
+        check(drained == 5_000, "drain数量不符: " + drained);
+        check(registry.size() == 0, "drain后仍有登记: " + registry.size());
+        check(!registry.register("late", new Object()), "drain后仍能登记");
+        check(registry.take("auth_1") == null, "drain后仍能取出");
+    }
+
+    /**
+     * 反复登记、分发、取出后，登记表为空且堆没有随次数增长
+     */
+    private static void checkRegistryDoesNotGrow() {
+        PendingPromiseRegistry<Object> registry = new PendingPromiseRegistry<>();
+        MainThreadDispatcher dispatcher = new MainThreadDispatcher(new Executor() {
+            @Override
+            public void execute(Runnable command) {
+                command.run();
+            }
+        });
+        FakeModule module = new FakeModule();
+        WeakReference<FakeModule> ref = new WeakReference<>(module);
+
+        runCycles(registry, dispatcher, ref, CYCLES / 10);
+        long before = usedHeapAfterGc();
+        runCycles(registry, dispatcher, ref, CYCLES);
+        long growth = usedHeapAfterGc() - before;
+
+        check(registry.size() == 0, "登记表未清空: " + registry.size());
+        check(module.delivered == CYCLES / 10 + CYCLES, "分发次数不符: " + module.delivered);
+        check(growth < 2 * 1024 * 1024, "堆增长过多: " + growth / 1024 + "KB");
+        System.out.println("  " + CYCLES + "次循环后堆增长: " + growth / 1024 + "KB");
+    }
+
+    private static void runCycles(PendingPromiseRegistry<Object> registry, MainThreadDispatcher dispatcher,
+                                  WeakReference<FakeModule> ref, int cycles) {
+        for (int i = 0; i < cycles; i++) {
+            String id = "auth_" + i;
+            registry.register(id, new Object());
+            dispatcher.post(ref, DELIVER);
+            registry.take(id);
+        }
+    }
+
+    private static int awaitCollected(List<? extends WeakReference<?>> refs) {
+        int retained = refs.size();
+        for (int attempt = 0; attempt < 20 && retained > 0; attempt++) {
+            System.gc();
+            try {
+                Thread.sleep(50);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+            retained = 0;
+            for (WeakReference<?> ref : refs) {
+                if (ref.get() != null) {
+                    retained++;
+                }
+            }
+        }
+        return retained;
+    }
+
+    private static long usedHeapAfterGc() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+            try {
+                Thread.sleep(50);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    private static void check(boolean condition, String message) {
+        if (!condition) {
+            failures++;
+            System.out.println("失败: " + message);
+        }
+    }
+}
@@ -0,0 +1,42 @@
+package com.inkbottle.alipayrn;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 基准测试共用的样例数据
+ */
+final class BenchmarkData {
+    static final String TRADE_RESPONSE = "{\"alipay_trade_app_pay_response\":{"
+            + "\"code\":\"10000\",\"msg\":\"Success\",\"app_id\":\"2021000000000000\","
+            + "\"auth_app_id\":\"2021000000000000\",\"charset\":\"utf-8\","
+            + "\"timestamp\":\"2024-01-01 12:00:00\",\"out_trade_no\":\"ORDER202401010001\","
+            + "\"total_amount\":\"88.00\",\"trade_no\":\"2024010122001400000000000001\","
+            + "\"seller_id\":\"2088000000000000\"},"
+            + "\"sign\":\"QmFzZTY0U2lnbmF0dXJlUGxhY2Vob2xkZXJRbUZ6WlRZMFUybG5ibUYwZFhKbA==\","
+            + "\"sign_type\":\"RSA2\"}";
+
+    static final String RESULT_STRING = "resultStatus={9000};memo={};result={" + TRADE_RESPONSE + "}";
+
+    static final String ORDER_STRING = "app_id=2021000000000000"
+            + "&biz_content=%7B%22out_trade_no%22%3A%22ORDER202401010001%22%2C%22total_amount%22%3A%2288.00%22"
+            + "%2C%22subject%22%3A%22test%22%2C%22product_code%22%3A%22QUICK_MSECURITY_PAY%22%7D"
+            + "&charset=utf-8&format=json&method=alipay.trade.app.pay"
+            + "&notify_url=https%3A%2F%2Fexample.com%2Fnotify&sign_type=RSA2"
+            + "&timestamp=2024-01-01+12%3A00%3A00&version=1.0"
+            + "&sign=QmFzZTY0U2lnbmF0dXJlUGxhY2Vob2xkZXJRbUZ6WlRZMFUybG5ibUYwZFhKbA%3D%3D";
+
+    private BenchmarkData() {
+    }
+
+    /**
+     * payV2返回的原始Map
+     */
+    static Map<String, String> sdkResultMap() {
+        Map<String, String> map = new HashMap<>();
+        map.put("resultStatus", "9000");
+        map.put("memo", "");
+        map.put("result", TRADE_RESPONSE);
+        return map;
+    }
+}
@@ -0,0 +1,47 @@
+package com.inkbottle.alipayrn;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 订单字符串必填参数校验
+ * legacy为JS层 validateOrderInfo 的 includes(field + '=') 实现在JVM上的等价写法，
+ * fullValidation为pay预校验使用的完整校验（含biz_content的JSON检查和过期判断）
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class OrderValidationBenchmark {
+    private final String orderInfo = BenchmarkData.ORDER_STRING;
+    // 样例订单timestamp之后一分钟，保证走完全部检查
+    private final long nowMillis = OrderValidator.parseBeijingTime("2024-01-01 12:01:00");
+
+    @Benchmark
+    public List<String> legacyContainsScan() {
+        List<String> missing = new ArrayList<>();
+        for (String field : OrderValidator.REQUIRED_FIELDS) {
+            if (!orderInfo.contains(field + "=")) {
+                missing.add(field);
+            }
+        }
+        return missing;
+    }
+
+    @Benchmark
+    public int singlePassMask() {
+        return OrderValidator.missingFieldMask(orderInfo);
+    }
+
+    @Benchmark
+    public OrderValidator.Result fullValidation() {
+        return OrderValidator.validate(orderInfo, nowMillis);
+    }
+}
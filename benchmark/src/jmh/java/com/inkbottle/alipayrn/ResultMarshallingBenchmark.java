@@ -0,0 +1,74 @@
+package com.inkbottle.alipayrn;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 支付结果序列化
+ * 用HashMap模拟WritableMap；legacy为重构前分别为事件和Promise各复制一次原始Map的实现
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class ResultMarshallingBenchmark {
+    private final Map<String, String> sdkResult = BenchmarkData.sdkResultMap();
+    private final AlipayResult parsed = AlipayResultParser.fromMap(sdkResult);
+
+    @Benchmark
+    public void legacyDoubleCopy(Blackhole bh) {
+        Map<String, String> eventMap = new HashMap<>();
+        for (Map.Entry<String, String> entry : sdkResult.entrySet()) {
+            eventMap.put(entry.getKey(), entry.getValue());
+        }
+        Map<String, String> promiseMap = new HashMap<>();
+        for (Map.Entry<String, String> entry : sdkResult.entrySet()) {
+            promiseMap.put(entry.getKey(), entry.getValue());
+        }
+        bh.consume(eventMap);
+        bh.consume(promiseMap);
+    }
+
+    @Benchmark
+    public void typedWriteAndCopy(Blackhole bh) {
+        final Map<String, Object> promiseMap = new HashMap<>();
+        ResultMarshaller.write(parsed, "pay_bench_1", new ResultWriter() {
+            @Override
+            public void putString(String key, String value) {
+                promiseMap.put(key, value);
+            }
+
+            @Override
+            public void putBoolean(String key, boolean value) {
+                promiseMap.put(key, value);
+            }
+        });
+        bh.consume(new HashMap<>(promiseMap));
+        bh.consume(promiseMap);
+    }
+
+    @Benchmark
+    public void parseAndWrite(Blackhole bh) {
+        final Map<String, Object> promiseMap = new HashMap<>();
+        ResultMarshaller.write(AlipayResultParser.fromMap(sdkResult), "pay_bench_1", new ResultWriter() {
+            @Override
+            public void putString(String key, String value) {
+                promiseMap.put(key, value);
+            }
+
+            @Override
+            public void putBoolean(String key, boolean value) {
+                promiseMap.put(key, value);
+            }
+        });
+        bh.consume(promiseMap);
+    }
+}
@@ -0,0 +1,51 @@
+package com.inkbottle.alipayrn;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 支付结果解析
+ * legacy* 为重构前 onActivityResult 中 contains/indexOf/substring 的实现
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class ResultParsingBenchmark {
+    private final String resultString = BenchmarkData.RESULT_STRING;
+    private final Map<String, String> sdkResult = BenchmarkData.sdkResultMap();
+
+    @Benchmark
+    public String legacyStatusExtraction() {
+        String resultStatus = null;
+        if (resultString.contains("resultStatus={")) {
+            int start = resultString.indexOf("resultStatus={") + 13;
+            int end = resultString.indexOf("}", start);
+            if (end > start) {
+                resultStatus = resultString.substring(start, end);
+            }
+        }
+        return resultStatus;
+    }
+
+    @Benchmark
+    public AlipayResult parseResultString() {
+        return AlipayResultParser.fromResultString(resultString);
+    }
+
+    @Benchmark
+    public AlipayResult parseSdkResultMap() {
+        return AlipayResultParser.fromMap(sdkResult);
+    }
+
+    @Benchmark
+    public int parseStatusOnly() {
+        return AlipayResultParser.parseStatus("9000");
+    }
+}
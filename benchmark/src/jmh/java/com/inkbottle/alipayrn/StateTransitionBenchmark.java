@@ -0,0 +1,57 @@
+package com.inkbottle.alipayrn;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 支付状态机
+ * 单线程测量一次完整支付的状态流转开销，多线程组测量并发抢占时的CAS竞争
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class StateTransitionBenchmark {
+    private final PaymentStateMachine stateMachine = new PaymentStateMachine();
+    private final PaymentResultCoordinator<Object> coordinator = new PaymentResultCoordinator<>();
+    private final AlipayResult result = AlipayResultParser.fromMap(BenchmarkData.sdkResultMap());
+    private final Object receiver = new Object();
+
+    @Benchmark
+    public boolean fullPaymentCycle() {
+        String paymentId = stateMachine.begin();
+        if (paymentId == null) {
+            return false;
+        }
+        stateMachine.transition(paymentId, PaymentStateMachine.State.LAUNCHING, PaymentStateMachine.State.IN_SDK);
+        stateMachine.transition(paymentId, PaymentStateMachine.State.IN_SDK, PaymentStateMachine.State.RESOLVING);
+        return stateMachine.finish(paymentId);
+    }
+
+    @Benchmark
+    public boolean cycleWithResultCoordination() {
+        String paymentId = stateMachine.begin();
+        if (paymentId == null) {
+            return false;
+        }
+        coordinator.register(paymentId, receiver, System.nanoTime());
+        stateMachine.transition(paymentId, PaymentStateMachine.State.LAUNCHING, PaymentStateMachine.State.IN_SDK);
+        coordinator.offer(paymentId, result, PaymentResultCoordinator.Source.ACTIVITY_RESULT);
+        coordinator.offer(paymentId, result, PaymentResultCoordinator.Source.SDK_RETURN);
+        return stateMachine.finish(paymentId);
+    }
+
+    @Benchmark
+    @Group("contended")
+    @GroupThreads(4)
+    public boolean contendedCycle() {
+        return fullPaymentCycle();
+    }
+}
@@ -0,0 +1,18 @@
+package android.os;
+
+/**
+ * 在JVM上编译PaymentTrace所需的最小android.os.Process
+ * 仅用于benchmark模块，不会打包进库
+ */
+public final class Process {
+    private Process() {
+    }
+
+    public static int myPid() {
+        return 0;
+    }
+
+    public static int myTid() {
+        return (int) Thread.currentThread().getId();
+    }
+}
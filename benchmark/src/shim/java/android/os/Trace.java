@@ -0,0 +1,16 @@
+package android.os;
+
+/**
+ * 在JVM上编译PaymentTrace所需的最小android.os.Trace，区间不输出到系统跟踪（仍会写入PaymentTrace的环形缓冲区）
+ * 仅用于benchmark模块，不会打包进库
+ */
+public final class Trace {
+    private Trace() {
+    }
+
+    public static void beginSection(String sectionName) {
+    }
+
+    public static void endSection() {
+    }
+}
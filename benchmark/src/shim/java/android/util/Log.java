@@ -0,0 +1,20 @@
+package android.util;
+
+/**
+ * 在JVM上编译AlipayLog所需的最小android.util.Log，直接丢弃输出（日志仍会写入AlipayLog的环形缓冲区）
+ * 仅用于benchmark模块，不会打包进库
+ */
+public final class Log {
+    public static final int VERBOSE = 2;
+    public static final int DEBUG = 3;
+    public static final int INFO = 4;
+    public static final int WARN = 5;
+    public static final int ERROR = 6;
+
+    private Log() {
+    }
+
+    public static int println(int priority, String tag, String msg) {
+        return 0;
+    }
+}
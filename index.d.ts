@@ -6,6 +6,7 @@ declare module 'react-native-alipay-payment' {
     SUCCESS: string;      // 支付成功
     PROCESSING: string;   // 处理中
     FAILED: string;       // 支付失败
+    REPEAT_REQUEST: string; // 重复请求
     CANCEL: string;       // 用户取消
     NETWORK_ERROR: string; // 网络错误
     UNKNOWN: string;      // 未知错误
@@ -26,16 +27,113 @@ declare module 'react-native-alipay-payment' {
     [errorCode: string]: AlipayErrorCodeInfo;
   }
   
+  /**
+   * 支付结果状态名，与STATUS_CODES的键一致
+   */
+  export type AlipayPayStatus =
+    | 'SUCCESS'
+    | 'PROCESSING'
+    | 'FAILED'
+    | 'REPEAT_REQUEST'
+    | 'CANCEL'
+    | 'NETWORK_ERROR'
+    | 'UNKNOWN';
+  
   /**
    * 原始支付结果
    */
   export interface AlipayPayResult {
     resultStatus: string;    // 支付结果状态码
-    result?: string;         // 支付结果数据
+    status?: AlipayPayStatus; // 原生层分类后的状态名（Android）
+    success?: boolean;       // 是否支付成功（Android）
+    processing?: boolean;    // 是否处理中（Android）
+    cancelled?: boolean;     // 是否用户取消（Android）
+    message?: string;        // 按系统语言生成的提示信息（Android）
+    result?: string;         // 支付结果数据，configureResults({ includeRawResult: false })时省略
     memo?: string;           // 支付结果备注
+    paymentId?: string;      // 本次支付的ID，事件与Promise结果一致
+    outTradeNo?: string;     // 商户订单号（从result中解析）
+    tradeNo?: string;        // 支付宝交易号（从result中解析）
+    totalAmount?: string;    // 订单金额（从result中解析）
+    fromCache?: boolean;     // 是否为同一订单缓存的结果（未重新拉起支付宝）
+    sequence?: number;       // AlipayPaymentResult事件的序号，重发的暂存事件序号不变
+    recovered?: boolean;     // 是否为之前进程发起的支付（进程在支付宝中被杀死），只通过事件返回
     [key: string]: any;      // 其他可能的字段
   }
   
+  /**
+   * AlipayPaymentLaunched事件，支付开始时发送，paymentId可用于cancelPayment
+   */
+  export interface AlipayPaymentLaunchedEvent {
+    paymentId: string;
+    outTradeNo?: string;     // 商户订单号（从订单中解析）
+    sequence?: number;       // 与AlipayPaymentResult事件共用的序号
+  }
+  
+  /**
+   * 待确认的支付
+   */
+  export interface AlipayPendingPayment {
+    paymentId: string;
+    outTradeNo?: string;      // 商户订单号（从订单中解析）
+    launchedAt: number;       // 拉起支付宝的时间（毫秒）
+    previousSession: boolean; // 是否由之前的进程发起（进程在支付期间被杀死）
+  }
+  
+  /**
+   * 本地观察到的订单结果
+   */
+  export interface AlipayOrderRecord {
+    state: 'PENDING' | 'COMPLETED' | 'ABORTED' | 'UNKNOWN';
+    paymentId?: string;
+    resultStatus?: string;   // 仅COMPLETED时存在
+    errorCode?: string;      // 仅ABORTED时存在，例如ERR_PAYMENT_TIMEOUT
+    tradeNo?: string;        // 支付宝交易号
+    totalAmount?: string;    // 订单金额
+    updatedAt?: number;      // 最后更新时间（毫秒）
+  }
+  
+  /**
+   * 支付选项
+   */
+  export interface AlipayPayOptions {
+    timeoutMs?: number;      // 超时时间（毫秒），超时后以ERR_PAYMENT_TIMEOUT失败
+    validate?: boolean;      // 拉起支付宝前先校验订单，不合法时以ERR_ORDER_*失败（缺省false）
+  }
+  
+  /**
+   * 模拟支付宝SDK的脚本
+   */
+  export interface AlipayFakeGatewayOptions {
+    latencyMs?: number;        // 每次调用的耗时（毫秒）
+    jitterMs?: number;         // 耗时的随机增减范围（毫秒）
+    resultStatuses?: string[]; // 循环返回的resultStatus，默认全部9000
+    dropRate?: number;         // 模拟丢失回调的概率（0～1），丢失时阻塞dropHoldMs后返回6004
+    dropHoldMs?: number;       // 丢失回调时阻塞的时间（毫秒），默认30秒
+    seed?: number;             // 随机种子，相同脚本和种子得到相同的耗时和丢失序列
+  }
+  
+  /**
+   * 授权选项
+   */
+  export interface AlipayAuthOptions {
+    timeoutMs?: number;      // 超时时间（毫秒），超时后以ERR_AUTH_TIMEOUT失败
+    cache?: boolean;         // 是否使用授权结果缓存，命中时不拉起支付宝（缺省false）
+    cacheTtlMs?: number;     // 结果的缓存时间（毫秒），缺省60秒
+    userKey?: string;        // 当前用户的标识，缓存按用户区分，缺省使用授权参数中的target_id
+  }
+  
+  /**
+   * H5支付链接拦截结果
+   */
+  export interface AlipayH5InterceptResult {
+    intercepted: boolean;    // 是否为H5收银台链接并已改为拉起支付宝App
+    resultCode?: string;     // 被拦截时的支付结果状态码，与resultStatus相同
+    returnUrl?: string;      // 被拦截时商户的同步跳转地址，不为空时WebView应加载该地址
+    fromCache?: boolean;     // 是否命中非支付链接缓存
+    busy?: boolean;          // 拦截线程繁忙，未交给SDK判断直接放行
+  }
+  
   /**
    * 格式化后的支付结果
    */
@@ -71,12 +169,190 @@ declare module 'react-native-alipay-payment' {
     sandboxMode: boolean;    // 是否沙箱模式
     paymentInProgress: boolean; // 是否支付进行中
     lastPaymentTime: number; // 上次支付时间
+    paymentState?: 'IDLE' | 'LAUNCHING' | 'IN_SDK' | 'RESOLVING'; // 支付状态机当前状态
+    paymentId?: string;      // 进行中支付的ID
+    snapshotVersion: number; // 调试信息快照版本，用于getDebugInfoDelta
+    sdkPrewarmed?: boolean;  // SDK是否已完成预热
+    prewarmDurationMs?: number; // SDK预热耗时（毫秒）
     alipayInstalled?: boolean; // 是否安装支付宝
     alipayVersion?: string;  // 支付宝版本
+    alipayProbeCacheHits?: number; // 安装/版本查询命中缓存的次数
+    alipayProbeCount?: number; // 实际探测的次数
     appInfoError?: string;   // 应用信息错误
     alipayError?: string;    // 支付宝相关错误
   }
   
+  /**
+   * 批量写入的日志记录
+   */
+  export interface AlipayLogEntry {
+    level: 'debug' | 'info' | 'warn' | 'error';
+    message: string;
+    timestamp?: number; // 记录时间（毫秒），缺省时使用写入时间
+  }
+  
+  /**
+   * 原生日志记录
+   */
+  export interface AlipayLogRecord {
+    timestamp: number;  // 记录时间（毫秒）
+    level: 'debug' | 'info' | 'warn' | 'error' | 'verbose';
+    message: string;
+  }
+  
+  export interface AlipayRecentLogs {
+    logs: AlipayLogRecord[]; // 按时间顺序排列
+    dropped: number;         // 因缓冲区已满被覆盖的记录数
+  }
+  
+  /**
+   * 导出的跟踪文件
+   */
+  export interface AlipayTraceDump {
+    path: string;            // Chrome Trace Event JSON文件路径（应用缓存目录）
+    spans: number;           // 写出的区间数
+    dropped: number;         // 因缓冲区已满被覆盖的区间数
+  }
+  
+  /**
+   * 调试信息增量
+   */
+  export interface AlipayDebugInfoDelta {
+    snapshotVersion: number;          // 当前快照版本
+    changed: Partial<AlipayDebugInfo>; // sinceVersion之后变化过的字段
+    removed: string[];                // sinceVersion之后不再上报的字段
+  }
+  
+  /**
+   * 支付线程池配置
+   */
+  export interface AlipayExecutorConfig {
+    corePoolSize?: number;   // 核心线程数
+    maxPoolSize?: number;    // 最大线程数
+    queueCapacity?: number;  // 等待队列容量
+    rejectionPolicy?: 'abort' | 'discardOldest'; // 队列已满时的拒绝策略
+  }
+  
+  /**
+   * SDK预热结果
+   */
+  export interface AlipayPrewarmResult {
+    durationMs: number;            // 预热耗时（毫秒）
+    alipayVersion: string | null;  // 预热时查询到的版本号
+    payTaskCreated: boolean;       // 是否已构造PayTask（没有Activity时只完成环境设置）
+    cached: boolean;               // 是否为之前已完成的预热结果
+  }
+  
+  /**
+   * 单个阶段的延迟统计（毫秒）
+   */
+  export interface AlipayPhaseMetrics {
+    count: number;           // 样本数
+    mean: number;            // 平均耗时
+    p50: number;             // 50分位
+    p90: number;             // 90分位
+    p99: number;             // 99分位
+    max: number;             // 最大耗时
+  }
+  
+  /**
+   * 支付或授权操作的统计
+   */
+  export interface AlipayOperationMetrics {
+    phases: {
+      queueWait: AlipayPhaseMetrics;     // 进入模块 → 工作线程开始执行
+      taskInit: AlipayPhaseMetrics;      // 构造PayTask/AuthTask
+      sdkCall: AlipayPhaseMetrics;       // payV2/authV2耗时
+      mainThreadHop: AlipayPhaseMetrics; // 工作线程 → 主线程
+      resolve: AlipayPhaseMetrics;       // 构建结果并resolve
+      total: AlipayPhaseMetrics;         // 进入模块 → Promise完成
+    };
+    statusCounts: { [resultStatus: string]: number }; // 按resultStatus计数，未知状态计入other
+  }
+  
+  /**
+   * 延迟统计
+   */
+  export interface AlipayMetrics {
+    pay: AlipayOperationMetrics;
+    auth: AlipayOperationMetrics;
+    orderCache: AlipayOrderCacheMetrics;
+    authCache: AlipayAuthCacheMetrics;
+    events: AlipayEventMetrics;
+    h5Intercept: AlipayH5InterceptMetrics;
+    timeouts: number;        // 因超时结束的支付/授权次数（自模块创建起累计）
+    since: number;           // 统计开始时间（上次重置）
+  }
+  
+  /**
+   * 订单幂等缓存统计（自模块创建起累计）
+   */
+  export interface AlipayOrderCacheMetrics {
+    hits: number;            // 直接返回缓存结果的次数
+    misses: number;          // 未命中缓存的次数
+    coalesced: number;       // 合并到进行中同一订单的次数
+    expired: number;         // 因过期被移除的结果数
+    size: number;            // 当前缓存的订单数
+  }
+  
+  /**
+   * 授权结果缓存统计（自模块创建起累计）
+   */
+  export interface AlipayAuthCacheMetrics {
+    roundTripsAvoided: number; // 命中缓存、因此省去的SDK调用次数
+    misses: number;          // 未命中缓存的次数
+    expired: number;         // 因过期被移除的结果数
+    invalidated: number;     // 通过invalidateAuthCache移除的结果数
+    size: number;            // 当前缓存的结果数
+  }
+  
+  /**
+   * 支付结果事件统计（自进程启动起累计）
+   */
+  export interface AlipayEventMetrics {
+    queued: number;          // 产生的事件数
+    delivered: number;       // 已发送到JS的事件数
+    overflow: number;        // 队列已满被丢弃的事件数
+    failedEmits: number;     // 发送失败、留待重发的次数
+    pending: number;         // 当前暂存的事件数
+    lastSequence: number;    // 最近分配的事件序号
+  }
+  
+  /**
+   * H5支付链接拦截统计（自模块创建起累计）
+   */
+  export interface AlipayH5InterceptMetrics {
+    intercepted: number;     // 被拦截、改为App支付的链接数
+    negativeHits: number;    // 命中非支付链接缓存的次数
+    sdkChecks: number;       // 交给SDK判断的次数
+    size: number;            // 当前缓存的非支付链接数
+    busy: number;            // 拦截线程繁忙时直接放行的次数
+  }
+  
+  /**
+   * 支付结果内容配置
+   */
+  export interface AlipayResultConfig {
+    includeRawResult?: boolean; // 是否包含原始的result字段（完整响应JSON），缺省true
+  }
+  
+  /**
+   * 支付结果事件队列配置
+   */
+  export interface AlipayEventBufferConfig {
+    capacity?: number;       // 最多暂存的事件数
+    overflowPolicy?: 'dropOldest' | 'dropNewest'; // 队列已满时丢弃最早的事件或新事件
+  }
+  
+  /**
+   * 订单结果缓存配置
+   */
+  export interface AlipayOrderCacheConfig {
+    capacity?: number;       // 缓存订单数，0表示不缓存结果
+    ttlMs?: number;          // 结果有效期（毫秒）
+    clear?: boolean;         // 是否同时清空已缓存的结果
+  }
+  
   /**
    * 订单验证结果
    */
@@ -85,6 +361,28 @@ declare module 'react-native-alipay-payment' {
     missingFields: string[]; // 缺失字段列表
   }
   
+  /**
+   * 原生订单校验错误码
+   */
+  export type AlipayOrderErrorCode =
+    | 'ERR_ORDER_MISSING_FIELD'   // 缺少必填参数
+    | 'ERR_ORDER_BAD_ENCODING'    // 参数值的URL编码不合法
+    | 'ERR_ORDER_BAD_BIZ_CONTENT' // 缺少biz_content或不是合法的JSON对象
+    | 'ERR_ORDER_BAD_TIMESTAMP'   // timestamp不是yyyy-MM-dd HH:mm:ss
+    | 'ERR_ORDER_BAD_TIMEOUT'     // timeout_express/time_expire不合法
+    | 'ERR_ORDER_EXPIRED';        // 订单已过期
+  
+  /**
+   * 原生订单校验结果
+   */
+  export interface AlipayOrderValidation {
+    valid: boolean;
+    code?: AlipayOrderErrorCode;
+    message?: string;
+    missingFields: string[];
+    expiresAt?: number;      // 订单失效时间（毫秒），校验通过时返回
+  }
+  
   /**
    * 支付结果响应
    */
@@ -145,6 +443,17 @@ declare module 'react-native-alipay-payment' {
      */
     removeEventListener(): void;
     
+    /**
+     * 获取进行中支付的ID（来自AlipayPaymentLaunched事件），支付结束后为null
+     */
+    getCurrentPaymentId(): string | null;
+    
+    /**
+     * 取消进行中的支付
+     * @returns 是否取消成功，没有进行中的支付时返回false
+     */
+    cancelPayment(): Promise<boolean>;
+    
     /**
      * 清理资源
      */
@@ -155,9 +464,66 @@ declare module 'react-native-alipay-payment' {
     /**
      * 发起支付宝支付
      * @param orderInfo 完整的支付宝订单信息字符串
+     * @param options 支付选项
      * @returns 支付结果
      */
-    pay(orderInfo: string): Promise<AlipayPayResult>;
+    pay(orderInfo: string, options?: AlipayPayOptions): Promise<AlipayPayResult>;
+
+    /**
+     * 取消一笔进行中的支付
+     * @param paymentId 支付ID，由发起支付时的AlipayPaymentLaunched事件给出
+     * @returns 是否取消成功
+     */
+    cancelPayment(paymentId: string): Promise<boolean>;
+
+    /**
+     * 获取已拉起支付宝但没有拿到结果的支付
+     * @returns 待确认的支付
+     */
+    getPendingPayments(): Promise<AlipayPendingPayment[]>;
+
+    /**
+     * 将已确认结果的支付从待确认列表中移除
+     * @param paymentIds 支付ID数组
+     * @returns 实际移除的数量
+     */
+    acknowledgePendingPayments(paymentIds: string[]): Promise<number>;
+
+    /**
+     * 批量查询本地观察到的订单结果
+     * @param outTradeNos 商户订单号数组
+     * @returns 以商户订单号为键的查询结果
+     */
+    queryOrders(outTradeNos: string[]): Promise<{ [outTradeNo: string]: AlipayOrderRecord }>;
+
+    /**
+     * 发起支付宝授权
+     * @param authInfo 授权参数字符串
+     * @param options 授权选项
+     * @returns 授权结果
+     */
+    auth(authInfo: string, options?: AlipayAuthOptions): Promise<{ [key: string]: string }>;
+
+    /**
+     * 使授权结果缓存失效
+     * @param scope 只移除该scope的结果，不传时全部移除
+     * @returns 移除的条数
+     */
+    invalidateAuthCache(scope?: string): Promise<number>;
+
+    /**
+     * 用户退出登录时移除该用户的授权结果缓存
+     * @param userKey 授权时传入的userKey，不传时全部移除
+     * @returns 移除的条数
+     */
+    clearAuthCacheOnLogout(userKey?: string): Promise<number>;
+
+    /**
+     * 拦截WebView中的H5支付链接，是支付宝H5收银台链接时改为拉起支付宝App支付
+     * @param url WebView将要加载的链接
+     * @returns 拦截结果，被拦截时在支付完成后返回；5分钟内没有结果时以ERR_H5_INTERCEPT_TIMEOUT失败
+     */
+    interceptH5Url(url: string): Promise<AlipayH5InterceptResult>;
 
     /**
      * 设置是否使用沙箱模式
@@ -172,12 +538,66 @@ declare module 'react-native-alipay-payment' {
      */
     isSandboxEnabled(): Promise<boolean>;
 
+    /**
+     * 同步获取当前沙箱模式状态
+     * @returns 是否处于沙箱模式
+     */
+    isSandboxEnabledSync(): boolean;
+
+    /**
+     * 用本地模拟的支付宝SDK替换支付和授权（仅沙箱模式可用）
+     * @param options 模拟脚本，传null恢复真实SDK
+     * @returns 当前是否使用模拟SDK
+     */
+    useFakeGateway(options: AlipayFakeGatewayOptions | null): Promise<boolean>;
+
     /**
      * 重置支付状态(解决可能的状态卡住问题)
      * @returns 操作结果
      */
     resetPaymentState(): Promise<boolean>;
 
+    /**
+     * 配置原生支付线程池
+     * @param options 线程池配置
+     * @returns 生效后的配置
+     */
+    configureExecutor(options?: AlipayExecutorConfig): Promise<Required<AlipayExecutorConfig> | null>;
+
+    /**
+     * 配置订单结果缓存
+     * @param options 缓存配置
+     * @returns 生效后的配置
+     */
+    configureOrderCache(options?: AlipayOrderCacheConfig): Promise<{ capacity: number; ttlMs: number } | null>;
+
+    /**
+     * 配置JS未就绪时暂存支付结果事件的队列
+     * @param options 队列配置
+     * @returns 生效后的配置
+     */
+    configureEventBuffer(options?: AlipayEventBufferConfig): Promise<Required<AlipayEventBufferConfig> | null>;
+
+    /**
+     * 配置支付结果的内容
+     * @param options 结果配置
+     * @returns 生效后的配置
+     */
+    configureResults(options?: AlipayResultConfig): Promise<Required<AlipayResultConfig> | null>;
+
+    /**
+     * 立即发送JS未就绪期间暂存的支付结果事件
+     * JS重新加载后、应用回到前台前的事件会暂存，订阅后调用可立即取回；PaymentService会自动调用
+     * @returns 发送的事件数
+     */
+    flushPendingEvents(): Promise<number>;
+
+    /**
+     * 在后台预热支付宝SDK，减少首次支付的初始化耗时
+     * @returns 预热结果
+     */
+    prewarm(): Promise<AlipayPrewarmResult | null>;
+
     /**
      * 检查支付宝是否已安装
      * @returns 是否安装
@@ -228,9 +648,10 @@ declare module 'react-native-alipay-payment' {
     /**
      * 发起支付并返回格式化的结果
      * @param orderInfo 支付宝订单信息字符串
+     * @param options 支付选项
      * @returns 格式化的支付结果
      */
-    payWithResult(orderInfo: string): Promise<AlipayFormattedResult>;
+    payWithResult(orderInfo: string, options?: AlipayPayOptions): Promise<AlipayFormattedResult>;
 
     /**
      * 格式化错误对象
@@ -260,6 +681,13 @@ declare module 'react-native-alipay-payment' {
      */
     validateOrderInfo(orderInfo: string): OrderValidationResult;
 
+    /**
+     * 在原生层完整校验订单，不拉起支付宝
+     * @param orderInfo 订单信息
+     * @returns 校验结果
+     */
+    validateOrder(orderInfo: string): Promise<AlipayOrderValidation>;
+
     /**
      * 获取网络错误详情
      * @param error 错误对象
@@ -287,6 +715,25 @@ declare module 'react-native-alipay-payment' {
      */
     getDebugInfo(): Promise<AlipayDebugInfo>;
 
+    /**
+     * 增量获取调试信息
+     * @param sinceVersion 上次返回的snapshotVersion，传0返回全部字段
+     * @returns 变化过的字段
+     */
+    getDebugInfoDelta(sinceVersion?: number): Promise<AlipayDebugInfoDelta>;
+
+    /**
+     * 获取支付/授权各阶段的延迟统计和结果状态计数
+     * @returns 统计数据
+     */
+    getMetrics(): Promise<AlipayMetrics | null>;
+
+    /**
+     * 清空延迟统计和结果状态计数
+     * @returns 操作结果
+     */
+    resetMetrics(): Promise<boolean>;
+
     /**
      * 记录调试日志
      * @param level 日志级别
@@ -295,6 +742,32 @@ declare module 'react-native-alipay-payment' {
      */
     logDebugInfo(level: 'debug' | 'info' | 'warn' | 'error', message: string): Promise<boolean>;
 
+    /**
+     * 批量记录调试日志
+     * @param entries 日志记录
+     * @returns 实际写入的条数
+     */
+    logDebugInfoBatch(entries: AlipayLogEntry[]): Promise<number>;
+
+    /**
+     * 导出原生层最近的日志记录
+     * @returns 日志记录
+     */
+    getRecentLogs(): Promise<AlipayRecentLogs | null>;
+
+    /**
+     * 开启或关闭支付流程跟踪，开启时清空之前的记录
+     * @param enabled 是否开启
+     * @returns 是否开启
+     */
+    setTraceEnabled(enabled: boolean): Promise<boolean>;
+
+    /**
+     * 将记录的跟踪区间写为Chrome Trace Event JSON（可在Perfetto中打开）
+     * @returns 文件路径和区间数
+     */
+    dumpTrace(): Promise<AlipayTraceDump | null>;
+
     /** 支付状态码常量 */
     STATUS_CODES: AlipayStatusCodes;
 
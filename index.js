@@ -1,6 +1,8 @@
 import { NativeModules, Platform } from 'react-native';
+import NativeAlipayModule from './lib/NativeAlipayModule';
 
-const { AlipayModule } = NativeModules;
+// 新架构下为TurboModule，旧架构下回退到桥接模块
+const AlipayModule = NativeAlipayModule || NativeModules.AlipayModule;
 
 // 检查原生模块是否正确加载
 if (!AlipayModule) {
@@ -12,6 +14,7 @@ const STATUS_CODES = {
   SUCCESS: '9000', // 支付成功
   PROCESSING: '8000', // 支付结果确认中
   FAILED: '4000', // 支付失败
+  REPEAT_REQUEST: '5000', // 重复请求
   CANCEL: '6001', // 用户取消
   NETWORK_ERROR: '6002', // 网络连接出错
   UNKNOWN: '6004', // 未知错误
@@ -23,6 +26,7 @@ const ERROR_CODE_MAP = {
   '9000': { type: 'SUCCESS', message: '支付成功' },
   '8000': { type: 'PROCESSING', message: '正在处理中，支付结果未知' },
   '4000': { type: 'BUSINESS_ERROR', message: '支付失败，订单或参数错误' },
+  '5000': { type: 'REPEAT_REQUEST', message: '重复请求' },
   '6001': { type: 'USER_CANCEL', message: '用户取消支付操作' },
   '6002': { type: 'NETWORK_ERROR', message: '网络连接错误' },
   '6004': { type: 'UNKNOWN', message: '支付结果未知，请稍后查询' },
@@ -45,9 +49,12 @@ const AlipayPayment = {
   /**
    * 发起支付宝支付
    * @param {string} orderInfo - 支付宝订单信息字符串
+   * @param {Object} [options] - 支付选项
+   * @param {number} [options.timeoutMs] - 超时时间，超时后以ERR_PAYMENT_TIMEOUT失败
+   * @param {boolean} [options.validate] - 拉起支付宝前先在原生层校验订单，不合法时以ERR_ORDER_*失败
    * @returns {Promise<Object>} - 支付结果
    */
-  async pay(orderInfo) {
+  async pay(orderInfo, options) {
     // 增强参数校验
     if (!orderInfo) {
       throw new Error('支付参数不能为空');
@@ -63,6 +70,9 @@ const AlipayPayment = {
     }
     
     try {
+      if (options) {
+        return await AlipayModule.payWithOptions(orderInfo, options);
+      }
       return await AlipayModule.pay(orderInfo);
     } catch (error) {
       const formattedError = this.formatError(error);
@@ -70,6 +80,109 @@ const AlipayPayment = {
     }
   },
   
+  /**
+   * 取消一笔进行中的支付，无法关闭已打开的支付宝界面，之后返回的结果会被忽略
+   * @param {string} paymentId - 支付ID
+   * @returns {Promise<boolean>} - 是否取消成功，支付已结束时为false
+   */
+  async cancelPayment(paymentId) {
+    if (Platform.OS === 'android') {
+      return await AlipayModule.cancelPayment(paymentId);
+    }
+    return false;
+  },
+  
+  /**
+   * 获取已拉起支付宝但没有拿到结果的支付（包括之前进程被杀死时未完成的支付）
+   * 这些支付需要向服务端查询结果，确认后调用acknowledgePendingPayments移除
+   * @returns {Promise<Array<Object>>} - [{ paymentId, outTradeNo, launchedAt, previousSession }]
+   */
+  async getPendingPayments() {
+    if (Platform.OS === 'android') {
+      return await AlipayModule.getPendingPayments();
+    }
+    return [];
+  },
+  
+  /**
+   * 将已确认结果的支付从待确认列表中移除
+   * @param {string[]} paymentIds - 支付ID数组
+   * @returns {Promise<number>} - 实际移除的数量
+   */
+  async acknowledgePendingPayments(paymentIds) {
+    if (Platform.OS === 'android' && paymentIds && paymentIds.length > 0) {
+      return await AlipayModule.acknowledgePendingPayments(paymentIds);
+    }
+    return 0;
+  },
+  
+  /**
+   * 批量查询本地观察到的订单结果（最近256个订单），一次桥接调用返回
+   * @param {string[]} outTradeNos - 商户订单号数组
+   * @returns {Promise<Object>} - 以商户订单号为键，state为PENDING/COMPLETED/ABORTED/UNKNOWN
+   */
+  async queryOrders(outTradeNos) {
+    if (Platform.OS === 'android' && outTradeNos && outTradeNos.length > 0) {
+      return await AlipayModule.queryOrders(outTradeNos);
+    }
+    return {};
+  },
+  
+  /**
+   * 发起支付宝授权
+   * @param {string} authInfo - 授权参数字符串
+   * @param {Object} [options] - 授权选项
+   * @param {number} [options.timeoutMs] - 超时时间，超时后以ERR_AUTH_TIMEOUT失败
+   * @param {boolean} [options.cache] - 是否使用授权结果缓存，命中时不拉起支付宝
+   * @param {number} [options.cacheTtlMs] - 结果的缓存时间，默认60秒
+   * @param {string} [options.userKey] - 当前用户的标识，缓存按用户区分，默认使用授权参数中的target_id
+   * @returns {Promise<Object>} - 授权结果，命中缓存时fromCache为true
+   */
+  async auth(authInfo, options) {
+    if (options) {
+      return await AlipayModule.authWithOptions(authInfo, options);
+    }
+    return await AlipayModule.auth(authInfo);
+  },
+  
+  /**
+   * 使授权结果缓存失效
+   * @param {string} [scope] - 只移除该scope的结果，不传时全部移除
+   * @returns {Promise<number>} - 移除的条数
+   */
+  async invalidateAuthCache(scope) {
+    if (Platform.OS === 'android') {
+      return await AlipayModule.invalidateAuthCache(scope || null);
+    }
+    return 0;
+  },
+  
+  /**
+   * 用户退出登录时移除该用户的授权结果缓存
+   * @param {string} [userKey] - 授权时传入的userKey，不传时全部移除
+   * @returns {Promise<number>} - 移除的条数
+   */
+  async clearAuthCacheOnLogout(userKey) {
+    if (Platform.OS === 'android') {
+      return await AlipayModule.clearAuthCacheOnLogout(userKey || null);
+    }
+    return 0;
+  },
+  
+  /**
+   * 拦截WebView中的H5支付链接，是支付宝H5收银台链接时改为拉起支付宝App支付
+   * 可在每次WebView跳转时调用，非支付链接会被缓存，重复判断几乎没有开销
+   * @param {string} url - WebView将要加载的链接
+   * @returns {Promise<Object>} - {intercepted, resultCode, returnUrl, busy}，被拦截时在支付完成后返回，
+   *                              5分钟内没有结果时以ERR_H5_INTERCEPT_TIMEOUT失败
+   */
+  async interceptH5Url(url) {
+    if (Platform.OS === 'android') {
+      return await AlipayModule.interceptH5Url(url);
+    }
+    return { intercepted: false };
+  },
+  
   /**
    * 设置是否使用沙箱环境(仅开发测试时使用)
    * @param {boolean} enabled - 是否启用沙箱模式
@@ -87,6 +200,32 @@ const AlipayPayment = {
     return await AlipayModule.isSandboxEnabled();
   },
   
+  /**
+   * 同步获取当前沙箱模式状态（读取原生缓存值，不经过异步桥接）
+   * @returns {boolean} - 是否处于沙箱模式
+   */
+  isSandboxEnabledSync() {
+    return AlipayModule.isSandboxEnabledSync();
+  },
+  
+  /**
+   * 用本地模拟的支付宝SDK替换支付和授权，不拉起支付宝，用于压测支付流程（仅沙箱模式可用）
+   * @param {Object|null} options - 模拟脚本，传null恢复真实SDK
+   * @param {number} [options.latencyMs] - 每次调用的耗时
+   * @param {number} [options.jitterMs] - 耗时的随机增减范围
+   * @param {string[]} [options.resultStatuses] - 循环返回的resultStatus，默认全部9000
+   * @param {number} [options.dropRate] - 模拟丢失回调的概率（0～1）
+   * @param {number} [options.dropHoldMs] - 丢失回调时阻塞的时间，默认30秒
+   * @param {number} [options.seed] - 随机种子
+   * @returns {Promise<boolean>} - 当前是否使用模拟SDK
+   */
+  async useFakeGateway(options) {
+    if (Platform.OS === 'android') {
+      return await AlipayModule.useFakeGateway(options || null);
+    }
+    return false;
+  },
+  
   /**
    * 重置支付状态(解决可能的支付状态卡住问题)
    * @returns {Promise<boolean>}
@@ -95,6 +234,89 @@ const AlipayPayment = {
     return await AlipayModule.resetPaymentState();
   },
   
+  /**
+   * 配置原生支付线程池
+   * @param {Object} options - 配置项
+   * @param {number} [options.corePoolSize] - 核心线程数
+   * @param {number} [options.maxPoolSize] - 最大线程数
+   * @param {number} [options.queueCapacity] - 等待队列容量
+   * @param {string} [options.rejectionPolicy] - 队列已满时的拒绝策略: 'abort' | 'discardOldest'
+   * @returns {Promise<Object>} - 生效后的配置
+   */
+  async configureExecutor(options = {}) {
+    if (Platform.OS === 'android') {
+      return await AlipayModule.configureExecutor(options);
+    }
+    return null;
+  },
+  
+  /**
+   * 配置订单结果缓存
+   * 同一订单（按out_trade_no）已成功或处理中时，有效期内重复支付直接返回缓存结果
+   * @param {Object} options - 配置项
+   * @param {number} [options.capacity] - 缓存订单数，0表示不缓存结果
+   * @param {number} [options.ttlMs] - 结果有效期（毫秒）
+   * @param {boolean} [options.clear] - 是否同时清空已缓存的结果
+   * @returns {Promise<Object>} - 生效后的配置
+   */
+  async configureOrderCache(options = {}) {
+    if (Platform.OS === 'android') {
+      return await AlipayModule.configureOrderCache(options);
+    }
+    return null;
+  },
+  
+  /**
+   * 配置JS未就绪时暂存支付结果事件的队列
+   * @param {Object} options - 配置项
+   * @param {number} [options.capacity] - 最多暂存的事件数
+   * @param {string} [options.overflowPolicy] - 队列已满时的策略: 'dropOldest' | 'dropNewest'
+   * @returns {Promise<Object>} - 生效后的配置
+   */
+  async configureEventBuffer(options = {}) {
+    if (Platform.OS === 'android') {
+      return await AlipayModule.configureEventBuffer(options);
+    }
+    return null;
+  },
+  
+  /**
+   * 配置支付结果的内容，结果始终包含原生层分类好的status、success、processing、cancelled、message和交易字段
+   * @param {Object} options - 配置项
+   * @param {boolean} [options.includeRawResult] - 是否包含原始的result字段（完整响应JSON），缺省true
+   * @returns {Promise<Object>} - 生效后的配置
+   */
+  async configureResults(options = {}) {
+    if (Platform.OS === 'android') {
+      return await AlipayModule.configureResults(options);
+    }
+    return null;
+  },
+  
+  /**
+   * 立即发送JS未就绪期间暂存的支付结果事件，订阅AlipayPaymentResult后调用
+   * JS重新加载后、应用回到前台前的事件会暂存，订阅后调用可立即取回；PaymentService会自动调用
+   * @returns {Promise<number>} - 发送的事件数
+   */
+  async flushPendingEvents() {
+    if (Platform.OS === 'android') {
+      return await AlipayModule.flushPendingEvents();
+    }
+    return 0;
+  },
+  
+  /**
+   * 在后台预热支付宝SDK，减少首次支付的初始化耗时
+   * 可在应用启动后或进入收银台页面前调用，重复调用直接返回首次预热的结果
+   * @returns {Promise<Object|null>} - { durationMs, alipayVersion, payTaskCreated, cached }
+   */
+  async prewarm() {
+    if (Platform.OS === 'android') {
+      return await AlipayModule.prewarm();
+    }
+    return null;
+  },
+  
   /**
    * 检查支付宝是否已安装
    * @returns {Promise<boolean>}
@@ -170,9 +392,11 @@ const AlipayPayment = {
    * @returns {Object} - 格式化后的结果对象
    */
   formatPayResult(payResult) {
-    const success = this.isPaymentSuccess(payResult.resultStatus);
-    const processing = this.isPaymentProcessing(payResult.resultStatus);
-    const cancelled = this.isPaymentCancelled(payResult.resultStatus);
+    // Android原生层已给出分类结果，直接使用
+    const classified = typeof payResult.success === 'boolean';
+    const success = classified ? payResult.success : this.isPaymentSuccess(payResult.resultStatus);
+    const processing = classified ? payResult.processing : this.isPaymentProcessing(payResult.resultStatus);
+    const cancelled = classified ? payResult.cancelled : this.isPaymentCancelled(payResult.resultStatus);
     
     return {
       success,
@@ -192,9 +416,9 @@ const AlipayPayment = {
    * @param {string} orderInfo - 支付宝订单信息字符串
    * @returns {Promise<Object>} - 格式化的支付结果
    */
-  async payWithResult(orderInfo) {
+  async payWithResult(orderInfo, options) {
     try {
-      const payResult = await this.pay(orderInfo);
+      const payResult = await this.pay(orderInfo, options);
       return {
         ...this.formatPayResult(payResult),
         timestamp: new Date().getTime(),
@@ -244,6 +468,22 @@ const AlipayPayment = {
     };
   },
   
+  /**
+   * 在原生层完整校验订单：必填参数、biz_content的JSON格式、timestamp格式和订单是否已过期
+   * 非Android平台只检查必填参数
+   * @param {string} orderInfo - 支付宝订单信息字符串
+   * @returns {Promise<Object>} - { valid, code, message, missingFields, expiresAt }
+   */
+  async validateOrder(orderInfo) {
+    if (Platform.OS === 'android') {
+      return await AlipayModule.validateOrder(orderInfo || '');
+    }
+    const { isValid, missingFields } = this.validateOrderInfo(orderInfo || '');
+    return isValid
+      ? { valid: true, missingFields }
+      : { valid: false, code: 'ERR_ORDER_MISSING_FIELD', message: '订单缺少必填参数: ' + missingFields.join(', '), missingFields };
+  },
+  
   /**
    * 设置调试模式
    * @param {boolean} enabled - 是否启用调试模式
@@ -272,6 +512,41 @@ const AlipayPayment = {
     }
   },
   
+  /**
+   * 增量获取调试信息，只返回指定版本之后变化过的字段，适合轮询
+   * @param {number} [sinceVersion=0] - 上次返回的snapshotVersion，传0返回全部字段
+   * @returns {Promise<Object>} - { snapshotVersion, changed, removed }
+   */
+  async getDebugInfoDelta(sinceVersion = 0) {
+    if (Platform.OS === 'android') {
+      return await AlipayModule.getDebugInfoDelta(sinceVersion);
+    } else {
+      throw new Error('获取调试信息功能仅支持Android平台');
+    }
+  },
+  
+  /**
+   * 获取支付/授权各阶段的延迟统计和结果状态计数
+   * @returns {Promise<Object>} - { pay, auth, since }，每个阶段包含count/mean/p50/p90/p99/max(毫秒)
+   */
+  async getMetrics() {
+    if (Platform.OS === 'android') {
+      return await AlipayModule.getMetrics();
+    }
+    return null;
+  },
+  
+  /**
+   * 清空延迟统计和结果状态计数
+   * @returns {Promise<boolean>}
+   */
+  async resetMetrics() {
+    if (Platform.OS === 'android') {
+      return await AlipayModule.resetMetrics();
+    }
+    return false;
+  },
+  
   /**
    * 记录调试日志
    * @param {string} level - 日志级别 ("debug", "info", "warn", "error")
@@ -285,6 +560,52 @@ const AlipayPayment = {
     return false;
   },
   
+  /**
+   * 批量记录调试日志，一次桥接调用写入多条
+   * @param {Array<{level: string, message: string, timestamp?: number}>} entries - 日志记录
+   * @returns {Promise<number>} - 实际写入的条数，调试模式关闭时为0
+   */
+  async logDebugInfoBatch(entries) {
+    if (Platform.OS === 'android' && entries && entries.length > 0) {
+      return await AlipayModule.logDebugInfoBatch(entries);
+    }
+    return 0;
+  },
+  
+  /**
+   * 导出原生层最近的日志记录（最多256条），调试模式关闭时只包含warn及以上级别
+   * @returns {Promise<Object|null>} - { logs: [{ timestamp, level, message }], dropped }
+   */
+  async getRecentLogs() {
+    if (Platform.OS === 'android') {
+      return await AlipayModule.getRecentLogs();
+    }
+    return null;
+  },
+  
+  /**
+   * 开启或关闭支付流程跟踪（JS模块线程、支付线程、主线程中的各阶段），关闭时没有开销
+   * @param {boolean} enabled - 是否开启，开启时清空之前的记录
+   * @returns {Promise<boolean>}
+   */
+  async setTraceEnabled(enabled) {
+    if (Platform.OS === 'android') {
+      return await AlipayModule.setTraceEnabled(enabled);
+    }
+    return false;
+  },
+  
+  /**
+   * 将记录的跟踪区间写为Chrome Trace Event JSON，可在Perfetto中打开
+   * @returns {Promise<Object|null>} - { path, spans, dropped }
+   */
+  async dumpTrace() {
+    if (Platform.OS === 'android') {
+      return await AlipayModule.dumpTrace();
+    }
+    return null;
+  },
+  
   /**
    * 格式化错误对象，统一错误处理
    * @param {Error|Object} error - 错误对象
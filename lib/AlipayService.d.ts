@@ -1,14 +1,27 @@
 export type PaymentCallback = (result: PaymentResponse) => void;
+export type LogLevel = 'debug' | 'info' | 'warn' | 'error';
+export interface LogEntry {
+    level: LogLevel;
+    message: string;
+    timestamp: number;
+}
+export type PaymentStatus = 'SUCCESS' | 'PROCESSING' | 'FAILED' | 'REPEAT_REQUEST' | 'CANCEL' | 'NETWORK_ERROR' | 'UNKNOWN';
 interface PaymentResponse {
     success: boolean;
     processing?: boolean;
     cancelled?: boolean;
+    status?: PaymentStatus;
     message?: string;
     resultStatus?: string;
     orderSn?: string;
     result?: string;
     memo?: string;
+    paymentId?: string;
+    outTradeNo?: string;
+    tradeNo?: string;
+    totalAmount?: string;
     rawResult?: any;
+    sequence?: number;
 }
 /**
  * 支付宝支付服务，处理业务层面的支付逻辑
@@ -16,7 +29,13 @@ interface PaymentResponse {
 export declare class PaymentService {
     private useSandbox;
     private eventListener;
+    private launchListener;
+    private currentPaymentId;
     private paymentCallbacks;
+    private debugLogging;
+    private logBuffer;
+    private logFlushTimer;
+    private lastEventSequence;
     /**
      * 支付服务构造函数
      * @param config - 服务器支付配置
@@ -27,10 +46,28 @@ export declare class PaymentService {
      * 设置支付宝支付结果事件监听
      */
     private setupEventListener;
+    /**
+     * 判断是否为已处理过的事件
+     * 两种事件共用原生层的序号，重发暂存事件时跳过序号不大于已处理的
+     * @param event - 原生层发送的事件
+     */
+    private isReplayedEvent;
     /**
      * 移除事件监听器
      */
     removeEventListener(): void;
+    /**
+     * 获取进行中支付的ID
+     * 原生层开始支付时通过AlipayPaymentLaunched事件给出，支付结束后为null
+     * @returns 支付ID
+     */
+    getCurrentPaymentId(): string | null;
+    /**
+     * 取消进行中的支付
+     * payWithOrderString以ERR_PAYMENT_CANCELLED的错误信息结束，已打开的支付宝界面不会关闭
+     * @returns Promise<boolean> - 是否取消成功，没有进行中的支付时返回false
+     */
+    cancelPayment(): Promise<boolean>;
     /**
      * 添加支付结果回调
      * @param callback - 支付结果回调函数
@@ -48,8 +85,9 @@ export declare class PaymentService {
     private notifyCallbacks;
     /**
      * 格式化支付结果
-     * @param result - 原始支付结果
-     * @returns 格式化后的支付结果
+     * 原生层已完成分类（status、success、processing、cancelled、message及交易字段），直接使用
+     * @param result - 原生层返回的支付结果
+     * @returns 支付结果
      */
     private formatPaymentResult;
     /**
@@ -65,11 +103,25 @@ export declare class PaymentService {
      */
     payWithOrderString(orderString: string, callback?: PaymentCallback): Promise<PaymentResponse>;
     /**
-     * 获取支付结果消息
-     * @param resultStatus - 结果状态码
-     * @returns string - 提示消息
+     * 开启或关闭调试日志，同时切换原生层的调试模式
+     * 关闭时直接丢弃日志，不产生任何桥接调用
+     * @param enabled - 是否开启
+     * @returns Promise<boolean>
+     */
+    setDebugLogging(enabled: boolean): Promise<boolean>;
+    /**
+     * 记录一条调试日志
+     * 日志先缓存在JS层，达到LOG_BATCH_SIZE条或等待LOG_FLUSH_INTERVAL_MS后批量写入原生层
+     * @param level - 日志级别
+     * @param message - 日志内容
+     */
+    log(level: LogLevel, message: string): void;
+    /**
+     * 立即将缓存的日志写入原生层
+     * @returns Promise<number> - 原生层实际写入的条数
      */
-    private getPaymentMessage;
+    flushLogs(): Promise<number>;
+    private clearLogFlushTimer;
     /**
      * 清理资源
      * 在组件卸载时调用此方法
@@ -80,6 +132,7 @@ export declare const AlipayConstants: {
     SUCCESS: string;
     PROCESSING: string;
     FAILED: string;
+    REPEAT_REQUEST: string;
     CANCEL: string;
     NETWORK_ERROR: string;
     UNKNOWN: string;
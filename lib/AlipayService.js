@@ -9,12 +9,20 @@ var __awaiter = (this && this.__awaiter) || function (thisArg, _arguments, P, ge
         step((generator = generator.apply(thisArg, _arguments || [])).next());
     });
 };
+var __importDefault = (this && this.__importDefault) || function (mod) {
+    return (mod && mod.__esModule) ? mod : { "default": mod };
+};
 Object.defineProperty(exports, "__esModule", { value: true });
 exports.AlipayConstants = exports.PaymentService = void 0;
 // 使用NativeModules和DeviceEventEmitter
 const react_native_1 = require("react-native");
-// 直接使用NativeModules
-const AlipayModule = react_native_1.NativeModules.AlipayModule;
+const NativeAlipayModule_1 = __importDefault(require("./NativeAlipayModule"));
+// 新架构下为TurboModule，旧架构下回退到NativeModules
+const AlipayModule = NativeAlipayModule_1.default || react_native_1.NativeModules.AlipayModule;
+// 日志缓冲达到该条数时立即写入原生层
+const LOG_BATCH_SIZE = 20;
+// 缓冲中最早一条日志最多等待的时间
+const LOG_FLUSH_INTERVAL_MS = 1000;
 /**
  * 支付宝支付服务，处理业务层面的支付逻辑
  */
@@ -26,7 +34,15 @@ class PaymentService {
      */
     constructor(useSandbox = false) {
         this.eventListener = null;
+        this.launchListener = null;
+        // 原生层已开始但还没有结果的支付，来自AlipayPaymentLaunched事件
+        this.currentPaymentId = null;
         this.paymentCallbacks = [];
+        this.debugLogging = false;
+        this.logBuffer = [];
+        this.logFlushTimer = null;
+        // 已处理的最大事件序号，原生层重发暂存事件时跳过已处理过的
+        this.lastEventSequence = 0;
         this.useSandbox = useSandbox;
         // 设置事件监听
         this.setupEventListener();
@@ -40,11 +56,46 @@ class PaymentService {
         // 添加新的事件监听器
         this.eventListener = react_native_1.DeviceEventEmitter.addListener('AlipayPaymentResult', (result) => {
             console.log('收到支付宝支付结果事件:', result);
+            if (this.isReplayedEvent(result)) {
+                return;
+            }
+            if ((result === null || result === void 0 ? void 0 : result.paymentId) === this.currentPaymentId) {
+                this.currentPaymentId = null;
+            }
             // 转换为标准PaymentResponse格式
             const paymentResponse = this.formatPaymentResult(result);
             // 通知所有注册的回调
             this.notifyCallbacks(paymentResponse);
         });
+        // 支付开始时记下paymentId，用于cancelPayment
+        this.launchListener = react_native_1.DeviceEventEmitter.addListener('AlipayPaymentLaunched', (event) => {
+            var _a;
+            if (this.isReplayedEvent(event)) {
+                return;
+            }
+            this.currentPaymentId = (_a = event === null || event === void 0 ? void 0 : event.paymentId) !== null && _a !== void 0 ? _a : null;
+        });
+        // 订阅后取回JS未就绪期间原生层暂存的结果
+        if (AlipayModule === null || AlipayModule === void 0 ? void 0 : AlipayModule.flushPendingEvents) {
+            AlipayModule.flushPendingEvents().catch((error) => {
+                console.warn('发送暂存的支付结果事件失败:', error);
+            });
+        }
+    }
+    /**
+     * 判断是否为已处理过的事件
+     * 两种事件共用原生层的序号，重发暂存事件时跳过序号不大于已处理的
+     * @param event - 原生层发送的事件
+     */
+    isReplayedEvent(event) {
+        if (typeof (event === null || event === void 0 ? void 0 : event.sequence) !== 'number') {
+            return false;
+        }
+        if (event.sequence <= this.lastEventSequence) {
+            return true;
+        }
+        this.lastEventSequence = event.sequence;
+        return false;
     }
     /**
      * 移除事件监听器
@@ -54,6 +105,32 @@ class PaymentService {
             this.eventListener.remove();
             this.eventListener = null;
         }
+        if (this.launchListener) {
+            this.launchListener.remove();
+            this.launchListener = null;
+        }
+    }
+    /**
+     * 获取进行中支付的ID
+     * 原生层开始支付时通过AlipayPaymentLaunched事件给出，支付结束后为null
+     * @returns 支付ID
+     */
+    getCurrentPaymentId() {
+        return this.currentPaymentId;
+    }
+    /**
+     * 取消进行中的支付
+     * payWithOrderString以ERR_PAYMENT_CANCELLED的错误信息结束，已打开的支付宝界面不会关闭
+     * @returns Promise<boolean> - 是否取消成功，没有进行中的支付时返回false
+     */
+    cancelPayment() {
+        return __awaiter(this, void 0, void 0, function* () {
+            const paymentId = this.currentPaymentId;
+            if (!paymentId) {
+                return false;
+            }
+            return yield AlipayModule.cancelPayment(paymentId);
+        });
     }
     /**
      * 添加支付结果回调
@@ -88,24 +165,12 @@ class PaymentService {
     }
     /**
      * 格式化支付结果
-     * @param result - 原始支付结果
-     * @returns 格式化后的支付结果
+     * 原生层已完成分类（status、success、processing、cancelled、message及交易字段），直接使用
+     * @param result - 原生层返回的支付结果
+     * @returns 支付结果
      */
     formatPaymentResult(result) {
-        const resultStatus = result.resultStatus;
-        const success = resultStatus === '9000';
-        const processing = resultStatus === '8000';
-        const cancelled = resultStatus === '6001';
-        return {
-            success,
-            processing,
-            cancelled,
-            message: this.getPaymentMessage(resultStatus),
-            resultStatus: resultStatus,
-            result: result.result,
-            memo: result.memo,
-            rawResult: result
-        };
+        return result;
     }
     /**
      * 初始化支付环境
@@ -124,6 +189,7 @@ class PaymentService {
             }
             catch (error) {
                 console.error("支付宝初始化异常:", error);
+                this.log('error', `支付宝初始化异常: ${error === null || error === void 0 ? void 0 : error.message}`);
                 return false;
             }
         });
@@ -147,6 +213,9 @@ class PaymentService {
                 return this.formatPaymentResult(result);
             }
             catch (error) {
+                // 超时、取消等失败不会发送结果事件，在这里结束
+                this.currentPaymentId = null;
+                this.log('error', `支付异常: ${error === null || error === void 0 ? void 0 : error.message}`);
                 const errorResponse = {
                     success: false,
                     message: (error === null || error === void 0 ? void 0 : error.message) || '支付过程出错'
@@ -164,25 +233,59 @@ class PaymentService {
         });
     }
     /**
-     * 获取支付结果消息
-     * @param resultStatus - 结果状态码
-     * @returns string - 提示消息
-     */
-    getPaymentMessage(resultStatus) {
-        switch (resultStatus) {
-            case '9000':
-                return '支付成功';
-            case '8000':
-                return '支付结果确认中';
-            case '4000':
-                return '支付失败';
-            case '6001':
-                return '用户取消支付';
-            case '6002':
-                return '网络连接错误';
-            case '6004':
-            default:
-                return '未知错误';
+     * 开启或关闭调试日志，同时切换原生层的调试模式
+     * 关闭时直接丢弃日志，不产生任何桥接调用
+     * @param enabled - 是否开启
+     * @returns Promise<boolean>
+     */
+    setDebugLogging(enabled) {
+        return __awaiter(this, void 0, void 0, function* () {
+            this.debugLogging = enabled;
+            if (!enabled) {
+                this.clearLogFlushTimer();
+                this.logBuffer = [];
+            }
+            return yield AlipayModule.setDebugMode(enabled);
+        });
+    }
+    /**
+     * 记录一条调试日志
+     * 日志先缓存在JS层，达到LOG_BATCH_SIZE条或等待LOG_FLUSH_INTERVAL_MS后批量写入原生层
+     * @param level - 日志级别
+     * @param message - 日志内容
+     */
+    log(level, message) {
+        if (!this.debugLogging) {
+            return;
+        }
+        this.logBuffer.push({ level, message, timestamp: Date.now() });
+        if (this.logBuffer.length >= LOG_BATCH_SIZE) {
+            this.flushLogs();
+        }
+        else if (!this.logFlushTimer) {
+            this.logFlushTimer = setTimeout(() => {
+                this.logFlushTimer = null;
+                this.flushLogs();
+            }, LOG_FLUSH_INTERVAL_MS);
+        }
+    }
+    /**
+     * 立即将缓存的日志写入原生层
+     * @returns Promise<number> - 原生层实际写入的条数
+     */
+    flushLogs() {
+        this.clearLogFlushTimer();
+        if (this.logBuffer.length === 0) {
+            return Promise.resolve(0);
+        }
+        const entries = this.logBuffer;
+        this.logBuffer = [];
+        return AlipayModule.logDebugInfoBatch(entries).catch(() => 0);
+    }
+    clearLogFlushTimer() {
+        if (this.logFlushTimer) {
+            clearTimeout(this.logFlushTimer);
+            this.logFlushTimer = null;
         }
     }
     /**
@@ -190,6 +293,7 @@ class PaymentService {
      * 在组件卸载时调用此方法
      */
     cleanup() {
+        this.flushLogs();
         this.removeEventListener();
         this.paymentCallbacks = [];
     }
@@ -200,6 +304,7 @@ exports.AlipayConstants = {
     SUCCESS: '9000',
     PROCESSING: '8000',
     FAILED: '4000',
+    REPEAT_REQUEST: '5000',
     CANCEL: '6001',
     NETWORK_ERROR: '6002',
     UNKNOWN: '6004'
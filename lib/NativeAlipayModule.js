@@ -0,0 +1,5 @@
+"use strict";
+// src/NativeAlipayModule.ts
+Object.defineProperty(exports, "__esModule", { value: true });
+const react_native_1 = require("react-native");
+exports.default = react_native_1.TurboModuleRegistry.get('AlipayModule');
@@ -0,0 +1,12 @@
+// 自动链接配置：只注册AlipayPackage，不再链接只包含空模块的RNReactNativeAlipayPaymentPackage
+module.exports = {
+  dependency: {
+    platforms: {
+      android: {
+        packageImportPath: 'import com.inkbottle.alipayrn.AlipayPackage;',
+        packageInstance: 'new AlipayPackage()',
+      },
+      ios: null,
+    },
+  },
+};
@@ -2,24 +2,54 @@
 
 // 使用NativeModules和DeviceEventEmitter
 import { NativeModules, DeviceEventEmitter, EmitterSubscription } from 'react-native';
+import NativeAlipayModule from './NativeAlipayModule';
 
-// 直接使用NativeModules
-const AlipayModule = NativeModules.AlipayModule;
+// 新架构下为TurboModule，旧架构下回退到NativeModules
+const AlipayModule = NativeAlipayModule || NativeModules.AlipayModule;
 
 // 回调函数类型定义
 export type PaymentCallback = (result: PaymentResponse) => void;
 
+// 日志缓冲达到该条数时立即写入原生层
+const LOG_BATCH_SIZE = 20;
+// 缓冲中最早一条日志最多等待的时间
+const LOG_FLUSH_INTERVAL_MS = 1000;
+
+export type LogLevel = 'debug' | 'info' | 'warn' | 'error';
+
+export interface LogEntry {
+  level: LogLevel;
+  message: string;
+  timestamp: number;
+}
+
+
+// 原生层分类后的状态名，与getConstants()中的常量名一致
+export type PaymentStatus =
+  | 'SUCCESS'
+  | 'PROCESSING'
+  | 'FAILED'
+  | 'REPEAT_REQUEST'
+  | 'CANCEL'
+  | 'NETWORK_ERROR'
+  | 'UNKNOWN';
 
 interface PaymentResponse {
   success: boolean;
   processing?: boolean;
   cancelled?: boolean;
+  status?: PaymentStatus;
   message?: string;
   resultStatus?: string;
   orderSn?: string;
-  result?: string;
+  result?: string;       // 原始响应，configureResults({ includeRawResult: false })时省略
   memo?: string;
+  paymentId?: string;
+  outTradeNo?: string;
+  tradeNo?: string;
+  totalAmount?: string;
   rawResult?: any;
+  sequence?: number;
 }
 
 
@@ -29,7 +59,15 @@ interface PaymentResponse {
 export class PaymentService {
   private useSandbox: boolean;
   private eventListener: EmitterSubscription | null = null;
+  private launchListener: EmitterSubscription | null = null;
+  // 原生层已开始但还没有结果的支付，来自AlipayPaymentLaunched事件
+  private currentPaymentId: string | null = null;
   private paymentCallbacks: PaymentCallback[] = [];
+  private debugLogging: boolean = false;
+  private logBuffer: LogEntry[] = [];
+  private logFlushTimer: ReturnType<typeof setTimeout> | null = null;
+  // 已处理的最大事件序号，原生层重发暂存事件时跳过已处理过的
+  private lastEventSequence: number = 0;
   
   /**
    * 支付服务构造函数
@@ -56,6 +94,13 @@ export class PaymentService {
       (result) => {
         console.log('收到支付宝支付结果事件:', result);
         
+        if (this.isReplayedEvent(result)) {
+          return;
+        }
+        if (result?.paymentId === this.currentPaymentId) {
+          this.currentPaymentId = null;
+        }
+        
         // 转换为标准PaymentResponse格式
         const paymentResponse: PaymentResponse = this.formatPaymentResult(result);
         
@@ -63,6 +108,40 @@ export class PaymentService {
         this.notifyCallbacks(paymentResponse);
       }
     );
+    
+    // 支付开始时记下paymentId，用于cancelPayment
+    this.launchListener = DeviceEventEmitter.addListener(
+      'AlipayPaymentLaunched',
+      (event) => {
+        if (this.isReplayedEvent(event)) {
+          return;
+        }
+        this.currentPaymentId = event?.paymentId ?? null;
+      }
+    );
+    
+    // 订阅后取回JS未就绪期间原生层暂存的结果
+    if (AlipayModule?.flushPendingEvents) {
+      AlipayModule.flushPendingEvents().catch((error: any) => {
+        console.warn('发送暂存的支付结果事件失败:', error);
+      });
+    }
+  }
+  
+  /**
+   * 判断是否为已处理过的事件
+   * 两种事件共用原生层的序号，重发暂存事件时跳过序号不大于已处理的
+   * @param event - 原生层发送的事件
+   */
+  private isReplayedEvent(event: any): boolean {
+    if (typeof event?.sequence !== 'number') {
+      return false;
+    }
+    if (event.sequence <= this.lastEventSequence) {
+      return true;
+    }
+    this.lastEventSequence = event.sequence;
+    return false;
   }
   
   /**
@@ -73,6 +152,32 @@ export class PaymentService {
       this.eventListener.remove();
       this.eventListener = null;
     }
+    if (this.launchListener) {
+      this.launchListener.remove();
+      this.launchListener = null;
+    }
+  }
+  
+  /**
+   * 获取进行中支付的ID
+   * 原生层开始支付时通过AlipayPaymentLaunched事件给出，支付结束后为null
+   * @returns 支付ID
+   */
+  public getCurrentPaymentId(): string | null {
+    return this.currentPaymentId;
+  }
+  
+  /**
+   * 取消进行中的支付
+   * payWithOrderString以ERR_PAYMENT_CANCELLED的错误信息结束，已打开的支付宝界面不会关闭
+   * @returns Promise<boolean> - 是否取消成功，没有进行中的支付时返回false
+   */
+  async cancelPayment(): Promise<boolean> {
+    const paymentId = this.currentPaymentId;
+    if (!paymentId) {
+      return false;
+    }
+    return await AlipayModule.cancelPayment(paymentId);
   }
   
   /**
@@ -110,25 +215,12 @@ export class PaymentService {
   
   /**
    * 格式化支付结果
-   * @param result - 原始支付结果
-   * @returns 格式化后的支付结果
+   * 原生层已完成分类（status、success、processing、cancelled、message及交易字段），直接使用
+   * @param result - 原生层返回的支付结果
+   * @returns 支付结果
    */
   private formatPaymentResult(result: any): PaymentResponse {
-    const resultStatus = result.resultStatus;
-    const success = resultStatus === '9000';
-    const processing = resultStatus === '8000';
-    const cancelled = resultStatus === '6001';
-    
-    return {
-      success,
-      processing,
-      cancelled,
-      message: this.getPaymentMessage(resultStatus),
-      resultStatus: resultStatus,
-      result: result.result,
-      memo: result.memo,
-      rawResult: result
-    };
+    return result;
   }
   
   /**
@@ -147,8 +239,9 @@ export class PaymentService {
       const isInstalled = await AlipayModule.isAlipayInstalled();
       
       return isInstalled;
-    } catch (error) {
+    } catch (error: any) {
       console.error("支付宝初始化异常:", error);
+      this.log('error', `支付宝初始化异常: ${error?.message}`);
       return false;
     }
   }
@@ -175,6 +268,9 @@ export class PaymentService {
       // 格式化结果
       return this.formatPaymentResult(result);
     } catch (error: any) {
+      // 超时、取消等失败不会发送结果事件，在这里结束
+      this.currentPaymentId = null;
+      this.log('error', `支付异常: ${error?.message}`);
       const errorResponse: PaymentResponse = {
         success: false,
         message: error?.message || '支付过程出错'
@@ -194,25 +290,59 @@ export class PaymentService {
   }
   
   /**
-   * 获取支付结果消息
-   * @param resultStatus - 结果状态码
-   * @returns string - 提示消息
-   */
-  private getPaymentMessage(resultStatus: string): string {
-    switch (resultStatus) {
-      case '9000':
-        return '支付成功';
-      case '8000':
-        return '支付结果确认中';
-      case '4000':
-        return '支付失败';
-      case '6001':
-        return '用户取消支付';
-      case '6002':
-        return '网络连接错误';
-      case '6004':
-      default:
-        return '未知错误';
+   * 开启或关闭调试日志，同时切换原生层的调试模式
+   * 关闭时直接丢弃日志，不产生任何桥接调用
+   * @param enabled - 是否开启
+   * @returns Promise<boolean>
+   */
+  async setDebugLogging(enabled: boolean): Promise<boolean> {
+    this.debugLogging = enabled;
+    if (!enabled) {
+      this.clearLogFlushTimer();
+      this.logBuffer = [];
+    }
+    return await AlipayModule.setDebugMode(enabled);
+  }
+  
+  /**
+   * 记录一条调试日志
+   * 日志先缓存在JS层，达到LOG_BATCH_SIZE条或等待LOG_FLUSH_INTERVAL_MS后批量写入原生层
+   * @param level - 日志级别
+   * @param message - 日志内容
+   */
+  public log(level: LogLevel, message: string): void {
+    if (!this.debugLogging) {
+      return;
+    }
+    this.logBuffer.push({ level, message, timestamp: Date.now() });
+    if (this.logBuffer.length >= LOG_BATCH_SIZE) {
+      this.flushLogs();
+    } else if (!this.logFlushTimer) {
+      this.logFlushTimer = setTimeout(() => {
+        this.logFlushTimer = null;
+        this.flushLogs();
+      }, LOG_FLUSH_INTERVAL_MS);
+    }
+  }
+  
+  /**
+   * 立即将缓存的日志写入原生层
+   * @returns Promise<number> - 原生层实际写入的条数
+   */
+  public flushLogs(): Promise<number> {
+    this.clearLogFlushTimer();
+    if (this.logBuffer.length === 0) {
+      return Promise.resolve(0);
+    }
+    const entries = this.logBuffer;
+    this.logBuffer = [];
+    return AlipayModule.logDebugInfoBatch(entries).catch(() => 0);
+  }
+  
+  private clearLogFlushTimer(): void {
+    if (this.logFlushTimer) {
+      clearTimeout(this.logFlushTimer);
+      this.logFlushTimer = null;
     }
   }
   
@@ -221,6 +351,7 @@ export class PaymentService {
    * 在组件卸载时调用此方法
    */
   public cleanup(): void {
+    this.flushLogs();
     this.removeEventListener();
     this.paymentCallbacks = [];
   }
@@ -231,6 +362,7 @@ export const AlipayConstants = {
   SUCCESS: '9000',
   PROCESSING: '8000',
   FAILED: '4000',
+  REPEAT_REQUEST: '5000',
   CANCEL: '6001',
   NETWORK_ERROR: '6002',
   UNKNOWN: '6004'
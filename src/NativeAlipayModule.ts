@@ -0,0 +1,61 @@
+// src/NativeAlipayModule.ts
+
+// 新架构(TurboModule)的codegen规范，旧架构下TurboModuleRegistry会回退到NativeModules
+import type { TurboModule } from 'react-native';
+import { TurboModuleRegistry } from 'react-native';
+
+export interface Spec extends TurboModule {
+  // 状态码常量，同步读取
+  getConstants(): {
+    SUCCESS: string;
+    PROCESSING: string;
+    FAILED: string;
+    REPEAT_REQUEST: string;
+    CANCEL: string;
+    NETWORK_ERROR: string;
+    UNKNOWN: string;
+  };
+
+  // 支付与授权
+  pay(orderInfo: string): Promise<Object>;
+  auth(authInfo: string): Promise<Object>;
+  payWithOptions(orderInfo: string, options: Object): Promise<Object>;
+  authWithOptions(authInfo: string, options: Object): Promise<Object>;
+  cancelPayment(paymentId: string): Promise<boolean>;
+  getPendingPayments(): Promise<Object[]>;
+  acknowledgePendingPayments(paymentIds: string[]): Promise<number>;
+  queryOrders(outTradeNos: string[]): Promise<Object>;
+  invalidateAuthCache(scope: string | null): Promise<number>;
+  clearAuthCacheOnLogout(userKey: string | null): Promise<number>;
+  validateOrder(orderInfo: string): Promise<Object>;
+  useFakeGateway(options: Object | null): Promise<boolean>;
+  flushPendingEvents(): Promise<number>;
+  configureEventBuffer(options: Object): Promise<Object>;
+  interceptH5Url(url: string): Promise<Object>;
+  setTraceEnabled(enabled: boolean): Promise<boolean>;
+  dumpTrace(): Promise<Object>;
+  configureResults(options: Object): Promise<Object>;
+
+  // 环境
+  setSandboxMode(enabled: boolean): Promise<boolean>;
+  isSandboxEnabled(): Promise<boolean>;
+  isSandboxEnabledSync(): boolean;
+  isAlipayInstalled(): Promise<boolean>;
+  getAlipayVersion(): Promise<string>;
+  prewarm(): Promise<Object>;
+  resetPaymentState(): Promise<boolean>;
+  configureExecutor(options: Object): Promise<Object>;
+  configureOrderCache(options: Object): Promise<Object>;
+
+  // 调试
+  setDebugMode(enabled: boolean): Promise<boolean>;
+  logDebugInfo(level: string, message: string): Promise<boolean>;
+  logDebugInfoBatch(entries: Object[]): Promise<number>;
+  getRecentLogs(): Promise<Object>;
+  getDebugInfo(): Promise<Object>;
+  getDebugInfoDelta(sinceVersion: number): Promise<Object>;
+  getMetrics(): Promise<Object>;
+  resetMetrics(): Promise<boolean>;
+}
+
+export default TurboModuleRegistry.get<Spec>('AlipayModule');